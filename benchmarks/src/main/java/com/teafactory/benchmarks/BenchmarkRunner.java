@@ -0,0 +1,47 @@
+package com.teafactory.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа набора бенчмарков.
+ * Без аргументов прогоняет весь набор: буферы на 1/2/4/8/16 потоках,
+ * цикл фабрики и создание партий. Результаты — стандартный отчёт JMH
+ * в консоли и JSON (build/jmh-result.json) для сравнения между версиями.
+ * С аргументами работает как обычный JMH CLI (org.openjdk.jmh.Main).
+ */
+public class BenchmarkRunner {
+
+    private static final int[] BUFFER_THREADS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        for (int threads : BUFFER_THREADS) {
+            run(new OptionsBuilder()
+                    .include(BufferBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .result("build/jmh-buffer-" + threads + "t.json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build());
+        }
+
+        run(new OptionsBuilder()
+                .include(FactoryCycleBenchmark.class.getSimpleName())
+                .include(FactoryThroughputBenchmark.class.getSimpleName())
+                .include(TeaBatchBenchmark.class.getSimpleName())
+                .result("build/jmh-result.json")
+                .resultFormat(ResultFormatType.JSON)
+                .build());
+    }
+
+    private static void run(Options options) throws RunnerException {
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.teafactory.benchmarks;
+
+import com.teafactory.buffer.LockingTeaBuffer;
+import com.teafactory.buffer.RingTeaBuffer;
+import com.teafactory.buffer.ShardedTeaBuffer;
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.buffer.TypedTeaBuffer;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+import com.teafactory.orders.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Передача партии через буфер: каждый поток делает put, затем take.
+ * Число потоков задаётся снаружи (-t), BenchmarkRunner прогоняет 1/2/4/8/16.
+ * Симметричная схема не зависает в конце итерации, в отличие от
+ * отдельных групп производителей и потребителей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BufferBenchmark {
+
+    @Param({"LOCKING_FAIR", "LOCKING_UNFAIR", "RING", "SHARDED", "TYPED", "ORDERS"})
+    public String implementation;
+
+    @Param({"4", "64", "1024"})
+    public int capacity;
+
+    private TeaBuffer buffer;
+    private TeaBatch batch;
+
+    @Setup
+    public void setUp() {
+        switch (implementation) {
+            case "LOCKING_FAIR":
+                buffer = new LockingTeaBuffer(capacity, "bench", true);
+                break;
+            case "LOCKING_UNFAIR":
+                buffer = new LockingTeaBuffer(capacity, "bench", false);
+                break;
+            case "RING":
+                buffer = new RingTeaBuffer(capacity, "bench");
+                break;
+            case "SHARDED":
+                buffer = new ShardedTeaBuffer(capacity, "bench");
+                break;
+            case "TYPED":
+                buffer = new TypedTeaBuffer(capacity, "bench");
+                break;
+            case "ORDERS":
+                buffer = new OrderBook(capacity, "bench");
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестная реализация: " + implementation);
+        }
+        batch = new TeaBatch(TeaType.GREEN);
+    }
+
+    @Benchmark
+    public TeaBatch putTake() throws InterruptedException {
+        buffer.put(batch);
+        return buffer.take();
+    }
+}
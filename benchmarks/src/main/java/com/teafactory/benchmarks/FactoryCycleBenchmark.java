@@ -0,0 +1,57 @@
+package com.teafactory.benchmarks;
+
+import com.teafactory.core.RunMode;
+import com.teafactory.core.TeaFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного полного цикла SUPPLY → CONSUME в фазовом режиме
+ * с нулевой задержкой работы — по сути цена четырёх фазовых барьеров.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class FactoryCycleBenchmark {
+
+    private TeaFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        factory = new TeaFactory(null);
+        factory.setRunMode(RunMode.PHASED);
+        factory.setWorkDelay(0, 0);
+        factory.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public int phaseCycle() {
+        int target = factory.getCyclesCompleted() + 1;
+        while (factory.getCyclesCompleted() < target) {
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+}
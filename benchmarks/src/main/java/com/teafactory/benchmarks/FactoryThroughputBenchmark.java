@@ -0,0 +1,67 @@
+package com.teafactory.benchmarks;
+
+import com.teafactory.core.RunMode;
+import com.teafactory.core.TeaFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сквозная производительность работающей фабрики с нулевой задержкой работы:
+ * время на одну купленную партию в каждом режиме.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class FactoryThroughputBenchmark {
+
+    @Param({"PHASED", "PIPELINED"})
+    public RunMode mode;
+
+    private TeaFactory factory;
+    private final AtomicLong purchases = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        factory = new TeaFactory(null);
+        factory.setRunMode(mode);
+        factory.setWorkDelay(0, 0);
+        factory.setPurchaseListener(batch -> purchases.incrementAndGet());
+        factory.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        factory.close();
+    }
+
+    /**
+     * Время до следующей купленной партии
+     */
+    @Benchmark
+    public long purchase() {
+        long target = purchases.get() + 1;
+        while (purchases.get() < target) {
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+}
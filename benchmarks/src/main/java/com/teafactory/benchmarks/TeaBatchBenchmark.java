@@ -0,0 +1,36 @@
+package com.teafactory.benchmarks;
+
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость создания партии (общий счётчик id + случайный тип)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TeaBatchBenchmark {
+
+    // Свой поток случайных чисел, как у поставщика
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Benchmark
+    public TeaBatch create() {
+        return new TeaBatch(TeaType.random(random));
+    }
+}
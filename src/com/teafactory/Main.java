@@ -1,8 +1,11 @@
 package com.teafactory;
 
+import com.teafactory.core.FactoryConfig;
 import com.teafactory.gui.FactoryGUI;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import java.io.IOException;
+import java.nio.file.Paths;
 // test
 public class Main {
 
@@ -15,8 +18,20 @@ public class Main {
             System.err.println("Cannot set system Look and Feel");
         }
 
+        // Необязательный аргумент — файл топологии (.properties)
+        FactoryConfig config = FactoryConfig.defaults();
+        if (args.length > 0) {
+            try {
+                config = FactoryConfig.load(Paths.get(args[0]));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Cannot load config " + args[0] + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        FactoryConfig topology = config;
         SwingUtilities.invokeLater(() -> {
-            FactoryGUI gui = new FactoryGUI();
+            FactoryGUI gui = new FactoryGUI(topology);
             gui.setVisible(true);
         });
     }
@@ -0,0 +1,40 @@
+package com.teafactory.buffer;
+
+import com.teafactory.orders.OrderBook;
+
+/**
+ * Доступные реализации буфера.
+ * Фабрика выбирает реализацию отдельно для каждого буфера.
+ */
+public enum BufferType {
+    LOCKING,
+    RING,
+    SHARDED,
+    TYPED,
+    ORDERS;
+
+    /**
+     * Создать буфер выбранного типа для известного числа потребителей:
+     * ShardedTeaBuffer заводит по шарду на потребителя, остальным это число не нужно
+     */
+    public TeaBuffer create(int capacity, String name, int consumers) {
+        if (this == SHARDED) {
+            return new ShardedTeaBuffer(capacity, name, Math.max(1, consumers));
+        }
+        return create(capacity, name);
+    }
+
+    /**
+     * Создать буфер выбранного типа
+     */
+    public TeaBuffer create(int capacity, String name) {
+        switch (this) {
+            case RING: return new RingTeaBuffer(capacity, name);
+            case SHARDED: return new ShardedTeaBuffer(capacity, name);
+            case TYPED: return new TypedTeaBuffer(capacity, name);
+            case ORDERS: return new OrderBook(capacity, name);
+            case LOCKING:
+            default: return new LockingTeaBuffer(capacity, name);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.teafactory.buffer;
+
+import com.teafactory.model.TeaBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Потокобезопасный буфер с ограниченной ёмкостью на блокировках.
+ * Использует ReentrantLock и Condition для полноценной реализации
+ * механизма "producer-consumer" без synchronized.
+ * ✔ Поддерживает блокирующие операции put() и take()
+ * ✔ Корректно работает с множеством производителей и потребителей
+ *  Предотвращает гонки данных и ложные пробуждения
+ * ✔ Fair-lock гарантирует честный порядок (важно при 3 Buyers!)
+ */
+public class LockingTeaBuffer implements TeaBuffer {
+
+    private final ArrayDeque<TeaBatch> deque;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+
+    private final int capacity;
+    private final String name; // имя буфера для логов (если нужно)
+
+    // Копия размера для чтения без блокировки (пишется только под lock)
+    private volatile int count;
+
+    public LockingTeaBuffer(int capacity, String name) {
+        // fair = true — важен при множестве конкурентов
+        this(capacity, name, true);
+    }
+
+    /**
+     * Буфер с выбором честности блокировки (unfair — быстрее, но без гарантии порядка)
+     */
+    public LockingTeaBuffer(int capacity, String name, boolean fair) {
+        this.capacity = capacity;
+        this.name = name;
+        this.deque = new ArrayDeque<>(capacity);
+
+        this.lock = new ReentrantLock(fair);
+
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * Блокирующее добавление элемента.
+     * Если буфер полон → поток ждёт.
+     */
+    @Override
+    public void put(TeaBatch batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (deque.size() >= capacity) {
+                notFull.await();
+            }
+
+            deque.addLast(batch);
+            count = deque.size();
+
+            // signalAll — лучший выбор при нескольких Consumer
+            notEmpty.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокирующее извлечение элемента.
+     * Если буфер пуст → поток ждёт.
+     */
+    @Override
+    public TeaBatch take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (deque.isEmpty()) {
+                notEmpty.await();
+            }
+
+            TeaBatch batch = deque.removeFirst();
+            count = deque.size();
+
+            // Будим всех, кто ждёт место
+            notFull.signalAll();
+
+            return batch;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Неблокирующее добавление.
+     */
+    @Override
+    public boolean offer(TeaBatch batch) {
+        lock.lock();
+        try {
+            if (deque.size() >= capacity) {
+                return false;
+            }
+
+            deque.addLast(batch);
+            count = deque.size();
+            notEmpty.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Неблокирующее извлечение.
+     */
+    @Override
+    public TeaBatch poll() {
+        lock.lock();
+        try {
+            TeaBatch batch = deque.pollFirst();
+            if (batch != null) {
+                count = deque.size();
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пакетное добавление: одна блокировка и один signalAll на порцию.
+     */
+    @Override
+    public int putAll(Collection<TeaBatch> batches) {
+        Iterator<TeaBatch> iterator = batches.iterator();
+        if (!iterator.hasNext()) {
+            return 0;
+        }
+
+        int added = 0;
+        lock.lock();
+        try {
+            while (iterator.hasNext()) {
+                while (deque.size() >= capacity) {
+                    notFull.await();
+                }
+
+                // Переносим столько, сколько помещается
+                while (iterator.hasNext() && deque.size() < capacity) {
+                    deque.addLast(iterator.next());
+                    added++;
+                }
+                count = deque.size();
+
+                notEmpty.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Неблокирующее пакетное извлечение.
+     */
+    @Override
+    public int drainTo(Collection<? super TeaBatch> target, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("drainTo: max должно быть >= 1, получено " + max);
+        }
+        lock.lock();
+        try {
+            int drained = Math.min(max, deque.size());
+            for (int i = 0; i < drained; i++) {
+                target.add(deque.removeFirst());
+            }
+
+            if (drained > 0) {
+                count = deque.size();
+                notFull.signalAll();
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокирующее пакетное извлечение.
+     */
+    @Override
+    public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+        if (n < 1) {
+            throw new IllegalArgumentException("takeUpTo: n должно быть >= 1, получено " + n);
+        }
+        lock.lock();
+        try {
+            while (deque.isEmpty()) {
+                notEmpty.await();
+            }
+
+            int taken = Math.min(n, deque.size());
+            List<TeaBatch> batches = new ArrayList<>(taken);
+            for (int i = 0; i < taken; i++) {
+                batches.add(deque.removeFirst());
+            }
+            count = deque.size();
+
+            notFull.signalAll();
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Потокобезопасный размер буфера.
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return deque.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Размер без блокировки — для мониторинга (GUI, снимки состояния).
+     * Не встаёт в очередь fair-lock за производителями и потребителями.
+     */
+    @Override
+    public int peekSizeUnsafe() {
+        return count;
+    }
+
+    /**
+     * Вместимость буфера.
+     */
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Имя буфера (RAW / MID / READY)
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + name + ": " + count + "/" + capacity + "]";
+    }
+
+    /**
+     * Удалить все партии и разбудить ждущих производителей
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            deque.clear();
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
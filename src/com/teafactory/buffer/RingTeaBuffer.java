@@ -0,0 +1,286 @@
+package com.teafactory.buffer;
+
+import com.teafactory.model.TeaBatch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free ограниченный кольцевой буфер (MPMC) на массиве.
+ * ✔ Каждая ячейка хранит свой номер последовательности (схема Вьюкова)
+ * ✔ Счётчики head/tail разнесены по разным кэш-линиям
+ * ✔ Поток паркуется только когда буфер действительно полон/пуст
+ * ✔ Пробуждается ровно один ожидающий, без "thundering herd"
+ */
+public class RingTeaBuffer implements TeaBuffer {
+
+    // Сколько раз крутимся перед тем, как запарковать поток
+    private static final int SPIN_LIMIT = 64;
+
+    private final AtomicReferenceArray<TeaBatch> items;
+    private final AtomicLongArray sequences;
+
+    private final PaddedCounter head = new PaddedCounter(); // следующая позиция чтения
+    private final PaddedCounter tail = new PaddedCounter(); // следующая позиция записи
+
+    private final ConcurrentLinkedQueue<Thread> waitingProducers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Thread> waitingConsumers = new ConcurrentLinkedQueue<>();
+
+    private final int capacity;
+    private final String name;
+
+    public RingTeaBuffer(int capacity, String name) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Вместимость должна быть положительной");
+        }
+        this.capacity = capacity;
+        this.name = name;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Неблокирующее добавление. Будит одного ждущего потребителя —
+     * в том числе того, кто ждёт в take(), пока другие кладут через offer().
+     *
+     * @return false если буфер полон
+     */
+    @Override
+    public boolean offer(TeaBatch batch) {
+        long pos = tail.get();
+        while (true) {
+            int index = index(pos);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(index, batch);
+                    // Публикуем ячейку для потребителей
+                    sequences.set(index, pos + 1);
+                    wakeOne(waitingConsumers);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // ячейка ещё не освобождена — буфер полон
+            } else {
+                pos = tail.get(); // другой производитель нас обогнал
+            }
+        }
+    }
+
+    /**
+     * Неблокирующее извлечение. Будит одного ждущего производителя.
+     *
+     * @return null если буфер пуст
+     */
+    @Override
+    public TeaBatch poll() {
+        long pos = head.get();
+        while (true) {
+            int index = index(pos);
+            long diff = sequences.get(index) - (pos + 1);
+
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    TeaBatch batch = items.get(index);
+                    items.set(index, null);
+                    // Освобождаем ячейку для следующего круга
+                    sequences.set(index, pos + capacity);
+                    wakeOne(waitingProducers);
+                    return batch;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null; // ячейка ещё не заполнена — буфер пуст
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    @Override
+    public void put(TeaBatch batch) throws InterruptedException {
+        int spins = 0;
+        while (!offer(batch)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins++ < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Thread current = Thread.currentThread();
+            waitingProducers.add(current);
+            try {
+                // Перепроверяем после регистрации — иначе можно потерять пробуждение
+                if (size() >= capacity) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waitingProducers.remove(current);
+            }
+        }
+    }
+
+    @Override
+    public TeaBatch take() throws InterruptedException {
+        int spins = 0;
+        TeaBatch batch;
+        while ((batch = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins++ < SPIN_LIMIT) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Thread current = Thread.currentThread();
+            waitingConsumers.add(current);
+            try {
+                if (size() == 0) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                waitingConsumers.remove(current);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Пакетное добавление. Блокировок нет, поэтому это просто put() по одной партии:
+     * каждая успешная запись будит не больше одного потребителя.
+     */
+    @Override
+    public int putAll(Collection<TeaBatch> batches) {
+        int added = 0;
+        try {
+            for (TeaBatch batch : batches) {
+                put(batch);
+                added++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return added;
+    }
+
+    @Override
+    public int drainTo(Collection<? super TeaBatch> target, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("drainTo: max должно быть >= 1, получено " + max);
+        }
+        int count = 0;
+        TeaBatch batch;
+        while (count < max && (batch = poll()) != null) {
+            target.add(batch);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+        if (n < 1) {
+            throw new IllegalArgumentException("takeUpTo: n должно быть >= 1, получено " + n);
+        }
+        List<TeaBatch> batches = new ArrayList<>(Math.min(n, capacity));
+        batches.add(take());
+        if (n > 1) {
+            drainTo(batches, n - 1);
+        }
+        return batches;
+    }
+
+    private void wakeOne(ConcurrentLinkedQueue<Thread> waiters) {
+        Thread waiter = waiters.poll();
+        if (waiter != null) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Размер без блокировок: разница счётчиков, обрезанная до [0, capacity]
+     */
+    @Override
+    public int size() {
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        long size = currentTail - currentHead;
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, capacity);
+    }
+
+    @Override
+    public int peekSizeUnsafe() {
+        return size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private int index(long pos) {
+        return (int) (pos % capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + name + ": " + size() + "/" + capacity + "]";
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // Обычный poll: последовательности ячеек остаются согласованными, производители просыпаются
+        }
+    }
+
+    /**
+     * Счётчик, занимающий отдельную кэш-линию (защита от false sharing).
+     * Поля суперкласса лежат в объекте раньше полей подкласса, поэтому отступы
+     * стоят с обеих сторон значения: слева — в LeftPadding, справа — в самом PaddedCounter.
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedCounter extends CounterValue {
+        private long p11, p12, p13, p14, p15, p16, p17;
+
+        long get() {
+            return value;
+        }
+
+        boolean compareAndSet(long expect, long update) {
+            return VALUE.compareAndSet(this, expect, update);
+        }
+    }
+
+    private static class CounterValue extends LeftPadding {
+        static final AtomicLongFieldUpdater<CounterValue> VALUE =
+                AtomicLongFieldUpdater.newUpdater(CounterValue.class, "value");
+
+        volatile long value;
+    }
+
+    @SuppressWarnings("unused")
+    private static class LeftPadding {
+        private long p01, p02, p03, p04, p05, p06, p07;
+    }
+}
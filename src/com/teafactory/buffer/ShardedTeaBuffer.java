@@ -0,0 +1,379 @@
+package com.teafactory.buffer;
+
+import com.teafactory.model.TeaBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Шардированный буфер для множества конкурирующих потребителей.
+ * ✔ Вместимость делится между шардами: у каждого своя очередь, блокировка и счётчик
+ * ✔ Производитель идёт по шардам своим курсором (ThreadLocal), полный шард — пропускает
+ * ✔ У каждого потребителя свой "домашний" шард; пустой — крадёт партии из соседних
+ * ✔ Обычные put/take/offer/poll не трогают общих счётчиков: общая блокировка нужна только тем,
+ *   кто ждёт, и будят их, лишь когда ждущие есть
+ *
+ * Буфер полон, когда полны все шарды, и пуст, когда пусты все; size() — сумма счётчиков шардов.
+ * Фабрика заводит шард на каждого потребителя буфера (но не больше вместимости).
+ */
+public class ShardedTeaBuffer implements TeaBuffer {
+
+    private final Shard[] shards;
+
+    // Курсор производителя и домашний шард потребителя; домашние раздаются по кругу при первом обращении
+    private final AtomicInteger nextHome = new AtomicInteger();
+    private final ThreadLocal<Cursor> cursor;
+
+    // Ожидание, когда все шарды полны или пусты
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition notEmpty = waitLock.newCondition();
+    private final Condition notFull = waitLock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    private final LongAdder steals = new LongAdder();
+
+    private final int capacity;
+    private final String name;
+
+    public ShardedTeaBuffer(int capacity, String name) {
+        this(capacity, name, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param shardCount число шардов (обычно — число потребителей); больше вместимости не бывает
+     */
+    public ShardedTeaBuffer(int capacity, String name, int shardCount) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Вместимость должна быть положительной");
+        }
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Число шардов должно быть положительным");
+        }
+        this.capacity = capacity;
+        this.name = name;
+        int count = Math.min(shardCount, capacity);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.cursor = ThreadLocal.withInitial(() -> new Cursor(Math.floorMod(nextHome.getAndIncrement(), count)));
+    }
+
+    @Override
+    public void put(TeaBatch batch) throws InterruptedException {
+        if (offer(batch)) {
+            return;
+        }
+        waitLock.lockInterruptibly();
+        try {
+            waitingProducers.incrementAndGet();
+            try {
+                // Перепроверяем после регистрации — иначе можно потерять пробуждение
+                while (!offer(batch)) {
+                    notFull.await();
+                }
+            } finally {
+                waitingProducers.decrementAndGet();
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    @Override
+    public TeaBatch take() throws InterruptedException {
+        TeaBatch batch = poll();
+        if (batch != null) {
+            return batch;
+        }
+        waitLock.lockInterruptibly();
+        try {
+            waitingConsumers.incrementAndGet();
+            try {
+                while ((batch = poll()) == null) {
+                    notEmpty.await();
+                }
+            } finally {
+                waitingConsumers.decrementAndGet();
+            }
+        } finally {
+            waitLock.unlock();
+        }
+        return batch;
+    }
+
+    /**
+     * Неблокирующее добавление: шард по курсору производителя, полный — следующий
+     */
+    @Override
+    public boolean offer(TeaBatch batch) {
+        if (!place(batch)) {
+            return false;
+        }
+        wake(waitingConsumers, notEmpty, false);
+        return true;
+    }
+
+    /**
+     * Неблокирующее извлечение: сначала домашний шард, потом кража из соседних
+     */
+    @Override
+    public TeaBatch poll() {
+        int home = cursor.get().home;
+        for (int i = 0; i < shards.length; i++) {
+            TeaBatch batch = shards[(home + i) % shards.length].poll();
+            if (batch != null) {
+                if (i > 0) {
+                    steals.increment();
+                }
+                wake(waitingProducers, notFull, false);
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Пакетное добавление: раскладываем, сколько помещается, и будим потребителей
+     * один раз на порцию; не поместившееся — обычным put()
+     */
+    @Override
+    public int putAll(Collection<TeaBatch> batches) {
+        int added = 0;
+        int placed = 0;
+        try {
+            for (TeaBatch batch : batches) {
+                if (place(batch)) {
+                    placed++;
+                    added++;
+                    continue;
+                }
+                if (placed > 0) {
+                    wake(waitingConsumers, notEmpty, placed > 1);
+                    placed = 0;
+                }
+                put(batch);
+                added++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (placed > 0) {
+            wake(waitingConsumers, notEmpty, placed > 1);
+        }
+        return added;
+    }
+
+    @Override
+    public int drainTo(Collection<? super TeaBatch> target, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("drainTo: max должно быть >= 1, получено " + max);
+        }
+        int home = cursor.get().home;
+        int drained = 0;
+        for (int i = 0; i < shards.length && drained < max; i++) {
+            int taken = shards[(home + i) % shards.length].drainTo(target, max - drained);
+            if (taken > 0 && i > 0) {
+                steals.add(taken);
+            }
+            drained += taken;
+        }
+        if (drained > 0) {
+            wake(waitingProducers, notFull, drained > 1);
+        }
+        return drained;
+    }
+
+    @Override
+    public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+        if (n < 1) {
+            throw new IllegalArgumentException("takeUpTo: n должно быть >= 1, получено " + n);
+        }
+        List<TeaBatch> batches = new ArrayList<>(Math.min(n, capacity));
+        batches.add(take());
+        if (n > 1) {
+            drainTo(batches, n - 1);
+        }
+        return batches;
+    }
+
+    /**
+     * Положить в шард по курсору производителя, полный — в следующий; без пробуждений
+     */
+    private boolean place(TeaBatch batch) {
+        Cursor own = cursor.get();
+        int start = own.next;
+        own.next = (start + 1) % shards.length;
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[(start + i) % shards.length].offer(batch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Разбудить ждущих, если они есть: без ждущих общая блокировка не берётся
+     */
+    private void wake(AtomicInteger waiting, Condition condition, boolean all) {
+        if (waiting.get() == 0) {
+            return;
+        }
+        waitLock.lock();
+        try {
+            if (all) {
+                condition.signalAll();
+            } else {
+                condition.signal();
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Сумма счётчиков шардов
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.count;
+        }
+        return size;
+    }
+
+    @Override
+    public int peekSizeUnsafe() {
+        return size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Сколько партий забрано из чужих шардов
+     */
+    public long getStealCount() {
+        return steals.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + name + ": " + size() + "/" + capacity + ", шардов: " + shards.length + "]";
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+        wake(waitingProducers, notFull, true);
+    }
+
+    /**
+     * Куда поток кладёт следующую партию и откуда берёт в первую очередь (только свой поток)
+     */
+    private static final class Cursor {
+        final int home;
+        int next;
+
+        Cursor(int home) {
+            this.home = home;
+            this.next = home;
+        }
+    }
+
+    /**
+     * Шард: ограниченная очередь со своей блокировкой
+     */
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<TeaBatch> queue;
+        private final int capacity;
+
+        // Копия размера для чтения без блокировки (пишется только под lock)
+        private volatile int count;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            this.queue = new ArrayDeque<>(capacity);
+        }
+
+        boolean offer(TeaBatch batch) {
+            if (count >= capacity) {
+                return false;
+            }
+            lock.lock();
+            try {
+                if (queue.size() >= capacity) {
+                    return false;
+                }
+                queue.addLast(batch);
+                count = queue.size();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        TeaBatch poll() {
+            if (count == 0) {
+                return null;
+            }
+            lock.lock();
+            try {
+                TeaBatch batch = queue.pollFirst();
+                count = queue.size();
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int drainTo(Collection<? super TeaBatch> target, int max) {
+            if (count == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                int drained = Math.min(max, queue.size());
+                for (int i = 0; i < drained; i++) {
+                    target.add(queue.pollFirst());
+                }
+                count = queue.size();
+                return drained;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                queue.clear();
+                count = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -2,123 +2,96 @@ package com.teafactory.buffer;
 
 import com.teafactory.model.TeaBatch;
 
-import java.util.ArrayDeque;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Collection;
+import java.util.List;
 
 /**
- * Потокобезопасный буфер с ограниченной ёмкостью.
- * Использует ReentrantLock и Condition для полноценной реализации
- * механизма "producer-consumer" без synchronized.
- * ✔ Поддерживает блокирующие операции put() и take()
- * ✔ Корректно работает с множеством производителей и потребителей
- *  Предотвращает гонки данных и ложные пробуждения
- * ✔ Fair-lock гарантирует честный порядок (важно при 3 Buyers!)
+ * Общий контракт ограниченного буфера партий чая.
+ * Реализации:
+ * ✔ LockingTeaBuffer — ReentrantLock + Condition (по умолчанию)
+ * ✔ RingTeaBuffer — lock-free кольцевой буфер для множества потоков
+ * ✔ ShardedTeaBuffer — шарды на потребителя с кражей работы
+ * ✔ TypedTeaBuffer — очереди по сортам с общей вместимостью
+ * ✔ OrderBook — книга заявок покупателей (пакет orders)
  */
-public class TeaBuffer {
-
-    private final ArrayDeque<TeaBatch> deque;
-    private final ReentrantLock lock;
-    private final Condition notEmpty;
-    private final Condition notFull;
-
-    private final int capacity;
-    private final String name; // имя буфера для логов (если нужно)
-
-    public TeaBuffer(int capacity, String name) {
-        this.capacity = capacity;
-        this.name = name;
-        this.deque = new ArrayDeque<>(capacity);
-
-        // fair = true — важен при множестве конкурентов
-        this.lock = new ReentrantLock(true);
-
-        this.notEmpty = lock.newCondition();
-        this.notFull = lock.newCondition();
-    }
+public interface TeaBuffer {
 
     /**
      * Блокирующее добавление элемента.
      * Если буфер полон → поток ждёт.
      */
-    public void put(TeaBatch batch) throws InterruptedException {
-        lock.lock();
-        try {
-            while (deque.size() >= capacity) {
-                notFull.await();
-            }
-
-            deque.addLast(batch);
-
-            // signalAll — лучший выбор при нескольких Consumer
-            notEmpty.signalAll();
-
-        } finally {
-            lock.unlock();
-        }
-    }
+    void put(TeaBatch batch) throws InterruptedException;
 
     /**
      * Блокирующее извлечение элемента.
      * Если буфер пуст → поток ждёт.
      */
-    public TeaBatch take() throws InterruptedException {
-        lock.lock();
-        try {
-            while (deque.isEmpty()) {
-                notEmpty.await();
-            }
+    TeaBatch take() throws InterruptedException;
+
+    /**
+     * Неблокирующее добавление.
+     *
+     * @return false если буфер полон
+     */
+    boolean offer(TeaBatch batch);
 
-            TeaBatch batch = deque.removeFirst();
+    /**
+     * Неблокирующее извлечение.
+     *
+     * @return null если буфер пуст
+     */
+    TeaBatch poll();
 
-            // Будим всех, кто ждёт место
-            notFull.signalAll();
+    /**
+     * Пакетное добавление: партии переносятся порциями,
+     * одна порция — одна блокировка и один сигнал.
+     * Если буфер полон → поток ждёт освобождения места.
+     * Партии добавляются по порядку; прерванный поток выходит, не бросая исключения,
+     * с выставленным флагом прерывания.
+     *
+     * @return сколько партий с начала batches добавлено (меньше size() — только при прерывании)
+     */
+    int putAll(Collection<TeaBatch> batches);
 
-            return batch;
+    /**
+     * Неблокирующее пакетное извлечение не более max партий.
+     *
+     * @param max не меньше 1, иначе IllegalArgumentException
+     * @return сколько партий перенесено в target
+     */
+    int drainTo(Collection<? super TeaBatch> target, int max);
 
-        } finally {
-            lock.unlock();
-        }
-    }
+    /**
+     * Блокирующее пакетное извлечение: ждёт хотя бы одну партию
+     * и забирает не более n партий за раз.
+     *
+     * @param n не меньше 1, иначе IllegalArgumentException
+     */
+    List<TeaBatch> takeUpTo(int n) throws InterruptedException;
 
     /**
      * Потокобезопасный размер буфера.
      */
-    public int size() {
-        lock.lock();
-        try {
-            return deque.size();
-        } finally {
-            lock.unlock();
-        }
-    }
+    int size();
 
     /**
-     * Если в GUI нужна быстрая проверка (не блокирующая):
+     * Размер без блокировок (для GUI и мониторинга).
+     * Может отставать от size() на одну операцию, но не мешает рабочим потокам.
      */
-    public int peekSizeUnsafe() {
-        return deque.size();
-    }
+    int peekSizeUnsafe();
 
     /**
      * Вместимость буфера.
      */
-    public int getCapacity() {
-        return capacity;
-    }
+    int getCapacity();
 
     /**
      * Имя буфера (RAW / MID / READY)
      */
-    public String getName() {
-        return name;
-    }
-
-    @Override
-    public String toString() {
-        return "[" + name + ": " + deque.size() + "/" + capacity + "]";
-    }
+    String getName();
 
-    public void clear() {
-    }
+    /**
+     * Удалить все партии. Вызывается, когда рабочие потоки остановлены.
+     */
+    void clear();
 }
@@ -0,0 +1,505 @@
+package com.teafactory.buffer;
+
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Склад партий по сортам: своя очередь на каждый TeaType, вместимость общая.
+ * ✔ take(TeaType) / poll(TeaType) — сразу из очереди сорта, без просмотра чужих партий
+ * ✔ takeAny(Set) / pollAny(Set) — самая давняя партия среди нужных сортов
+ *   (просматриваются только головы очередей — по одной на сорт)
+ * ✔ Ожидание по сорту: у каждого сорта свой Condition, новая партия будит
+ *   одного ждущего именно этот сорт
+ * ✔ Обычные операции TeaBuffer работают как takeAny(все сорта) — склад подходит на место любого буфера
+ * ✔ forTypes(Set) — тот же склад глазами покупателя: извлекает только нужные сорта
+ *
+ * Порядок между сортами — по времени постановки партии в буфер (TeaBatch.getEnqueuedNanos()).
+ * Ждущие сразу несколько сортов спят на общем Condition и просыпаются от любой новой партии;
+ * если таких нет, общий Condition не трогается.
+ */
+public class TypedTeaBuffer implements TeaBuffer {
+
+    private static final Set<TeaType> ALL = Collections.unmodifiableSet(EnumSet.allOf(TeaType.class));
+
+    private final EnumMap<TeaType, ArrayDeque<TeaBatch>> queues = new EnumMap<>(TeaType.class);
+    private final EnumMap<TeaType, Condition> arrived = new EnumMap<>(TeaType.class);
+    private final ReentrantLock lock;
+    private final Condition anyArrived;
+    private final Condition notFull;
+
+    private final int capacity;
+    private final String name;
+
+    // Всего партий и сколько потоков ждут на anyArrived (под lock)
+    private int size;
+    private int anyWaiters;
+
+    // Копии размеров для чтения без блокировки (пишутся только под lock)
+    private volatile int count;
+    private final AtomicIntegerArray typeCounts = new AtomicIntegerArray(TeaType.values().length);
+
+    public TypedTeaBuffer(int capacity, String name) {
+        this(capacity, name, true);
+    }
+
+    /**
+     * Склад с выбором честности блокировки (как у LockingTeaBuffer)
+     */
+    public TypedTeaBuffer(int capacity, String name, boolean fair) {
+        this.capacity = capacity;
+        this.name = name;
+        this.lock = new ReentrantLock(fair);
+        this.anyArrived = lock.newCondition();
+        this.notFull = lock.newCondition();
+        for (TeaType type : TeaType.values()) {
+            queues.put(type, new ArrayDeque<>());
+            arrived.put(type, lock.newCondition());
+        }
+    }
+
+    // ─────────── Добавление ───────────
+
+    @Override
+    public void put(TeaBatch batch) throws InterruptedException {
+        lock.lock();
+        try {
+            while (size >= capacity) {
+                notFull.await();
+            }
+            add(batch);
+            signalArrived(batch.getType());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(TeaBatch batch) {
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                return false;
+            }
+            add(batch);
+            signalArrived(batch.getType());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Пакетное добавление: одна блокировка на порцию, сигнал — по сорту каждой партии
+     */
+    @Override
+    public int putAll(Collection<TeaBatch> batches) {
+        Iterator<TeaBatch> iterator = batches.iterator();
+        if (!iterator.hasNext()) {
+            return 0;
+        }
+
+        int added = 0;
+        lock.lock();
+        try {
+            while (iterator.hasNext()) {
+                while (size >= capacity) {
+                    notFull.await();
+                }
+                while (iterator.hasNext() && size < capacity) {
+                    TeaBatch batch = iterator.next();
+                    add(batch);
+                    signalArrived(batch.getType());
+                    added++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        return added;
+    }
+
+    // ─────────── Извлечение по сорту ───────────
+
+    /**
+     * Блокирующее извлечение партии сорта type: ждёт именно его
+     */
+    public TeaBatch take(TeaType type) throws InterruptedException {
+        ArrayDeque<TeaBatch> queue = queues.get(type);
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                arrived.get(type).await();
+            }
+            TeaBatch batch = remove(queue);
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return null если партий сорта type нет
+     */
+    public TeaBatch poll(TeaType type) {
+        ArrayDeque<TeaBatch> queue = queues.get(type);
+        lock.lock();
+        try {
+            if (queue.isEmpty()) {
+                return null;
+            }
+            TeaBatch batch = remove(queue);
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокирующее извлечение самой давней партии одного из сортов types
+     */
+    public TeaBatch takeAny(Set<TeaType> types) throws InterruptedException {
+        if (types.size() == 1) {
+            return take(types.iterator().next());
+        }
+        lock.lock();
+        try {
+            TeaBatch batch;
+            while ((batch = removeOldest(types)) == null) {
+                awaitAny();
+            }
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return null если нет партий ни одного из сортов types
+     */
+    public TeaBatch pollAny(Set<TeaType> types) {
+        lock.lock();
+        try {
+            TeaBatch batch = removeOldest(types);
+            if (batch != null) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Неблокирующее извлечение не более max партий сортов types (давние — первыми)
+     */
+    public int drainTo(Collection<? super TeaBatch> target, Set<TeaType> types, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("drainTo: max должно быть >= 1, получено " + max);
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            TeaBatch batch;
+            while (drained < max && (batch = removeOldest(types)) != null) {
+                target.add(batch);
+                drained++;
+            }
+            if (drained > 0) {
+                notFull.signalAll();
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокирующее пакетное извлечение: ждёт хотя бы одну партию сортов types и забирает не более n
+     */
+    public List<TeaBatch> takeUpTo(Set<TeaType> types, int n) throws InterruptedException {
+        if (n < 1) {
+            throw new IllegalArgumentException("takeUpTo: n должно быть >= 1, получено " + n);
+        }
+        lock.lock();
+        try {
+            TeaBatch batch;
+            while ((batch = removeOldest(types)) == null) {
+                awaitAny();
+            }
+            List<TeaBatch> batches = new ArrayList<>(Math.min(n, size + 1));
+            batches.add(batch);
+            while (batches.size() < n && (batch = removeOldest(types)) != null) {
+                batches.add(batch);
+            }
+            notFull.signalAll();
+            return batches;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ─────────── Операции TeaBuffer: любой сорт ───────────
+
+    @Override
+    public TeaBatch take() throws InterruptedException {
+        return takeAny(ALL);
+    }
+
+    @Override
+    public TeaBatch poll() {
+        return pollAny(ALL);
+    }
+
+    @Override
+    public int drainTo(Collection<? super TeaBatch> target, int max) {
+        return drainTo(target, ALL, max);
+    }
+
+    @Override
+    public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+        return takeUpTo(ALL, n);
+    }
+
+    /**
+     * Вид склада, из которого извлекаются только сорта types.
+     * Добавление, вместимость, имя и clear() — общие со складом.
+     */
+    public TeaBuffer forTypes(Set<TeaType> types) {
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один сорт");
+        }
+        return types.containsAll(ALL) ? this : new TypesView(Collections.unmodifiableSet(EnumSet.copyOf(types)));
+    }
+
+    // ─────────── Размеры ───────────
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Партий нужных сортов
+     */
+    public int size(Set<TeaType> types) {
+        lock.lock();
+        try {
+            int total = 0;
+            for (TeaType type : types) {
+                total += queues.get(type).size();
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int peekSizeUnsafe() {
+        return count;
+    }
+
+    /**
+     * Партий сорта type без блокировки (для выбора источника и мониторинга)
+     */
+    public int peekSizeUnsafe(TeaType type) {
+        return typeCounts.get(type.ordinal());
+    }
+
+    /**
+     * Партий нужных сортов без блокировки
+     */
+    public int peekSizeUnsafe(Set<TeaType> types) {
+        int total = 0;
+        for (TeaType type : types) {
+            total += typeCounts.get(type.ordinal());
+        }
+        return total;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + name + ": " + count + "/" + capacity + "]";
+    }
+
+    /**
+     * Удалить все партии и разбудить ждущих производителей
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (ArrayDeque<TeaBatch> queue : queues.values()) {
+                queue.clear();
+            }
+            for (int i = 0; i < typeCounts.length(); i++) {
+                typeCounts.set(i, 0);
+            }
+            size = 0;
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ─────────── Под lock ───────────
+
+    private void add(TeaBatch batch) {
+        ArrayDeque<TeaBatch> queue = queues.get(batch.getType());
+        queue.addLast(batch);
+        typeCounts.set(batch.getType().ordinal(), queue.size());
+        count = ++size;
+    }
+
+    private TeaBatch remove(ArrayDeque<TeaBatch> queue) {
+        TeaBatch batch = queue.removeFirst();
+        typeCounts.set(batch.getType().ordinal(), queue.size());
+        count = --size;
+        return batch;
+    }
+
+    /**
+     * Самая давняя партия среди голов очередей нужных сортов; null — таких нет
+     */
+    private TeaBatch removeOldest(Set<TeaType> types) {
+        ArrayDeque<TeaBatch> oldest = null;
+        for (TeaType type : types) {
+            ArrayDeque<TeaBatch> queue = queues.get(type);
+            TeaBatch head = queue.peekFirst();
+            if (head != null && (oldest == null || head.getEnqueuedNanos() < oldest.peekFirst().getEnqueuedNanos())) {
+                oldest = queue;
+            }
+        }
+        return oldest != null ? remove(oldest) : null;
+    }
+
+    /**
+     * Одна новая партия — один ждущий её сорт; ждущие нескольких сортов — все
+     */
+    private void signalArrived(TeaType type) {
+        arrived.get(type).signal();
+        if (anyWaiters > 0) {
+            anyArrived.signalAll();
+        }
+    }
+
+    private void awaitAny() throws InterruptedException {
+        anyWaiters++;
+        try {
+            anyArrived.await();
+        } finally {
+            anyWaiters--;
+        }
+    }
+
+    /**
+     * Склад, ограниченный набором сортов (см. forTypes)
+     */
+    private final class TypesView implements TeaBuffer {
+
+        private final Set<TeaType> types;
+
+        TypesView(Set<TeaType> types) {
+            this.types = types;
+        }
+
+        @Override
+        public void put(TeaBatch batch) throws InterruptedException {
+            TypedTeaBuffer.this.put(batch);
+        }
+
+        @Override
+        public TeaBatch take() throws InterruptedException {
+            return takeAny(types);
+        }
+
+        @Override
+        public boolean offer(TeaBatch batch) {
+            return TypedTeaBuffer.this.offer(batch);
+        }
+
+        @Override
+        public TeaBatch poll() {
+            return pollAny(types);
+        }
+
+        @Override
+        public int putAll(Collection<TeaBatch> batches) {
+            return TypedTeaBuffer.this.putAll(batches);
+        }
+
+        @Override
+        public int drainTo(Collection<? super TeaBatch> target, int max) {
+            return TypedTeaBuffer.this.drainTo(target, types, max);
+        }
+
+        @Override
+        public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+            return TypedTeaBuffer.this.takeUpTo(types, n);
+        }
+
+        @Override
+        public int size() {
+            return TypedTeaBuffer.this.size(types);
+        }
+
+        @Override
+        public int peekSizeUnsafe() {
+            return TypedTeaBuffer.this.peekSizeUnsafe(types);
+        }
+
+        @Override
+        public int getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void clear() {
+            TypedTeaBuffer.this.clear();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + name + " " + types + ": " + peekSizeUnsafe() + "/" + capacity + "]";
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package com.teafactory.cli;
+
+import com.teafactory.buffer.BufferType;
+import com.teafactory.core.FactoryCheckpoint;
+import com.teafactory.core.FactoryConfig;
+import com.teafactory.core.ProductionLine;
+import com.teafactory.core.TeaFactory;
+import com.teafactory.events.EventLevel;
+import com.teafactory.metrics.FactoryMetrics;
+import com.teafactory.metrics.LatencyHistogram;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+import com.teafactory.sim.DiscreteEventSimulator;
+import com.teafactory.sim.SimulationResult;
+import com.teafactory.workers.AbstractWorker;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Запуск симуляции без GUI (для серверов и пакетных прогонов).
+ * AWT/Swing не загружаются, результат пишется в JSON или CSV.
+ *
+ * Пример:
+ *   java -cp bin com.teafactory.cli.HeadlessRunner --duration=60 --buyers=100 \
+ *        --mode=PIPELINED --buffer=RING --delay=0-50 --format=json --output=run.json
+ *
+ * С --simulate потоки не запускаются: сутки работы считаются в виртуальном времени за секунды.
+ */
+public class HeadlessRunner {
+
+    private static final String[] STAGES = {"SUPPLY", "PROCESS", "PACK", "CONSUME"};
+
+    // Опция командной строки → ключ FactoryConfig
+    private static final String[][] OPTION_KEYS = {
+            {"lines", "lines"},
+            {"line-mode", "line.mode"},
+            {"mode", "run.mode"},
+            {"threads", "threads"},
+            {"batch", "batch.size"},
+            {"buffer", "buffer.type"},
+            {"ready-buffer", "buffer.ready.type"},
+            {"raw-capacity", "buffer.raw.capacity"},
+            {"mid-capacity", "buffer.mid.capacity"},
+            {"ready-capacity", "buffer.ready.capacity"},
+            {"suppliers", "stage.supply.workers"},
+            {"masters", "stage.process.workers"},
+            {"packers", "stage.pack.workers"},
+            {"buyers", "stage.consume.workers"},
+            {"demand", "buyer.demand"},
+            {"delay", "delay"},
+            {"autoscale", "autoscale"},
+            {"seed", "seed"},
+            {"journal", "journal.dir"},
+            {"trace", "trace.sample"},
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        try {
+            options = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        if (options.containsKey("help")) {
+            printUsage();
+            return;
+        }
+
+        try {
+            run(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ошибка параметров: " + e.getMessage());
+            printUsage();
+            System.exit(2);
+        }
+    }
+
+    private static void run(Map<String, String> options) throws InterruptedException, IOException {
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        String format = options.getOrDefault("format", "json").toLowerCase(Locale.ROOT);
+        boolean verbose = options.containsKey("verbose");
+
+        FactoryConfig config = buildConfig(options);
+        if (options.containsKey("save-config")) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(options.get("save-config")), StandardCharsets.UTF_8)) {
+                config.toProperties().store(writer, "TeaFactory topology");
+            }
+        }
+
+        Summary summary;
+        if (options.containsKey("simulate")) {
+            checkSimulated(options, config);
+            long maxPurchases = Long.parseLong(options.getOrDefault("max-purchases", String.valueOf(Long.MAX_VALUE)));
+            SimulationResult result = new DiscreteEventSimulator(config)
+                    .run(durationSeconds, TimeUnit.SECONDS, maxPurchases);
+            if (verbose) {
+                System.err.println(result);
+            }
+            summary = Summary.from(result);
+        } else {
+            Consumer<String> logger = verbose ? System.err::println : null;
+            EventLevel level = EventLevel.valueOf(options.getOrDefault("log-level", "DEBUG").toUpperCase(Locale.ROOT));
+            TeaFactory factory;
+            if (options.containsKey("restore")) {
+                // Топология и состояние — из снимка
+                FactoryCheckpoint checkpoint = FactoryCheckpoint.read(Paths.get(options.get("restore")));
+                config = checkpoint.getConfig();
+                checkThreads(config);
+                factory = new TeaFactory(logger, config);
+                factory.getEvents().setLevel(level);
+                subscribe(factory, options);
+                factory.restore(checkpoint);
+            } else {
+                checkThreads(config);
+                factory = new TeaFactory(logger, config);
+                factory.getEvents().setLevel(level);
+                subscribe(factory, options);
+                factory.start();
+            }
+            Thread.sleep(durationSeconds * 1000);
+            factory.stop();
+
+            if (options.containsKey("checkpoint")) {
+                FactoryCheckpoint checkpoint = factory.checkpoint(Paths.get(options.get("checkpoint")));
+                if (verbose) {
+                    System.err.println(checkpoint);
+                }
+            }
+
+            summary = Summary.collect(factory, config);
+            factory.close();
+        }
+        String text = "csv".equals(format) ? summary.toCsv() : summary.toJson();
+
+        String output = options.get("output");
+        if (output == null) {
+            System.out.println(text);
+        } else {
+            Files.write(Paths.get(output), text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Симулятор моделирует только обычные буферы и потоки workers: всё остальное
+     * молча пропало бы из итогов, поэтому такие опции отклоняются
+     */
+    private static void checkSimulated(Map<String, String> options, FactoryConfig config) {
+        List<String> unsupported = new ArrayList<>();
+        String[] names = {"RawBuffer", "MidBuffer", "ReadyBuffer"};
+        for (int buffer = FactoryConfig.RAW; buffer <= FactoryConfig.READY; buffer++) {
+            BufferType type = config.getBufferType(buffer);
+            if (type == BufferType.TYPED || type == BufferType.ORDERS) {
+                unsupported.add(names[buffer] + " " + type);
+            }
+        }
+        if (!config.getDemand().isAny()) {
+            unsupported.add("--demand");
+        }
+        if (config.getJournalDirectory() != null) {
+            unsupported.add("--journal");
+        }
+        if (config.getTraceSample() > 0) {
+            unsupported.add("--trace");
+        }
+        if (config.getScalingPolicy() != null) {
+            unsupported.add("--autoscale");
+        }
+        for (String option : new String[]{"subscribers", "checkpoint", "restore"}) {
+            if (options.containsKey(option)) {
+                unsupported.add("--" + option);
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("--simulate не моделирует: " + String.join(", ", unsupported));
+        }
+    }
+
+    /**
+     * Режим потоков должен поддерживаться этой JVM (виртуальные — с Java 21)
+     */
+    private static void checkThreads(FactoryConfig config) {
+        if (!config.getThreadMode().isSupported()) {
+            throw new IllegalArgumentException("--threads=" + config.getThreadMode()
+                    + " не поддерживается этой JVM (Java " + Runtime.version().feature() + "), нужна Java 21+");
+        }
+    }
+
+    /**
+     * Подписчики готовой продукции (--subscribers), каждый запрашивает по --request партий
+     */
+    private static void subscribe(TeaFactory factory, Map<String, String> options) {
+        int subscribers = Integer.parseInt(options.getOrDefault("subscribers", "0"));
+        int request = Integer.parseInt(options.getOrDefault("request", "1"));
+        if (subscribers < 0 || request < 1) {
+            throw new IllegalArgumentException("Нужно --subscribers >= 0 и --request >= 1");
+        }
+        for (int i = 0; i < subscribers; i++) {
+            factory.getReadyPublisher().subscribe(new WindowSubscriber(request));
+        }
+    }
+
+    /**
+     * Подписчик, который запрашивает партии окнами: следующее окно — когда пришло всё предыдущее
+     */
+    private static final class WindowSubscriber implements Flow.Subscriber<TeaBatch> {
+
+        private final int window;
+        private Flow.Subscription subscription;
+        private int received;
+
+        WindowSubscriber(int window) {
+            this.window = window;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(window);
+        }
+
+        @Override
+        public void onNext(TeaBatch batch) {
+            if (++received == window) {
+                received = 0;
+                subscription.request(window);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            System.err.println("Подписчик остановлен: " + error.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Разбор аргументов вида --key=value (или --flag)
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+            String body = arg.substring(2);
+            int eq = body.indexOf('=');
+            if (eq < 0) {
+                options.put(body, "true");
+            } else {
+                options.put(body.substring(0, eq), body.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Топология: файл --config (если задан), поверх него — опции командной строки
+     */
+    static FactoryConfig buildConfig(Map<String, String> options) throws IOException {
+        FactoryConfig base = options.containsKey("config")
+                ? FactoryConfig.load(Paths.get(options.get("config")))
+                : FactoryConfig.defaults();
+
+        Properties overrides = new Properties();
+        for (String[] mapping : OPTION_KEYS) {
+            String value = options.get(mapping[0]);
+            if (value != null) {
+                overrides.setProperty(mapping[1], value);
+            }
+        }
+        return base.toBuilder().apply(overrides).build();
+    }
+
+    private static void printUsage() {
+        PrintStream out = System.err;
+        out.println("Использование: HeadlessRunner [опции]");
+        out.println("  --config=FILE            топология из .properties (опции ниже её переопределяют)");
+        out.println("  --save-config=FILE       сохранить итоговую топологию");
+        out.println("  --duration=SEC           длительность прогона (30)");
+        out.println("  --lines=N                линий производства (1)");
+        out.println("  --line-mode=SHARED|PARTITIONED  общий или раздельный ReadyBuffer (SHARED)");
+        out.println("  --suppliers=N            поставщиков на линию (1)");
+        out.println("  --masters=N              мастеров на линию (1)");
+        out.println("  --packers=N              фасовщиков на линию (1)");
+        out.println("  --buyers=N               покупателей (3)");
+        out.println("  --raw-capacity=N         вместимость RawBuffer (5)");
+        out.println("  --mid-capacity=N         вместимость MidBuffer (3)");
+        out.println("  --ready-capacity=N       вместимость ReadyBuffer (4)");
+        out.println("  --buffer=LOCKING|RING|SHARDED|TYPED|ORDERS  реализация буферов (LOCKING)");
+        out.println("  --ready-buffer=TYPE      реализация ReadyBuffer (как --buffer)");
+        out.println("  --demand=ANY|SINGLE|A+B,C  сорта, которые хотят покупатели (ANY; не ANY — с --ready-buffer=TYPED или ORDERS)");
+        out.println("  --delay=MIN-MAX|N|exp:MEAN|lognormal:MEDIAN:SIGMA  задержка работы, мс (300-900)");
+        out.println("  --mode=PHASED|PIPELINED  режим работы (PHASED)");
+        out.println("  --threads=PLATFORM|VIRTUAL  тип потоков (PLATFORM)");
+        out.println("  --batch=N                размер пакета (1)");
+        out.println("  --seed=N                 seed нагрузки: тот же seed — те же задержки и типы (случайный)");
+        out.println("  --autoscale              менять число workers по заполненности буферов");
+        out.println("  --simulate               симуляция в виртуальном времени (--duration — виртуальные секунды;");
+        out.println("                           без TYPED/ORDERS, --demand, --journal, --trace, --subscribers, --autoscale, снимков)");
+        out.println("  --max-purchases=N        остановить симуляцию после N покупок");
+        out.println("  --journal=DIR            бинарный журнал партий (читать: JournalTool DIR)");
+        out.println("  --trace=RATE             трассировать долю партий 0..1 по стадиям и буферам (0)");
+        out.println("  --subscribers=N          подписчиков Flow на готовую продукцию (0), наравне с покупателями");
+        out.println("  --request=N              сколько партий подписчик запрашивает за раз (1)");
+        out.println("  --checkpoint=FILE        в конце прогона сохранить снимок состояния фабрики");
+        out.println("  --restore=FILE           продолжить со снимка (топология — из снимка)");
+        out.println("  --format=json|csv        формат результата (json)");
+        out.println("  --output=FILE            файл результата (stdout)");
+        out.println("  --verbose                лог событий в stderr");
+        out.println("  --log-level=DEBUG|INFO|WARN  уровень лога при --verbose (DEBUG)");
+    }
+
+    /**
+     * Итоги прогона
+     */
+    static final class Summary {
+        String mode;
+        String threads;
+        String buffer;
+        String readyBuffer;
+        long seed;
+        double runtimeSeconds;
+        int cycles;
+        long purchases;
+        double throughput;
+        final double[] utilization = new double[STAGES.length];
+        final int[] stageWorkers = new int[STAGES.length];
+        final long[] stageBatches = new long[STAGES.length];
+
+        // Скорости стадий за окна FactoryMetrics.RATE_WINDOWS перед остановкой (null — симуляция)
+        double[][] windowRates;
+        String lineMode;
+        long[] lineProduced;
+        double latencyP50;
+        double latencyP90;
+        double latencyP99;
+        double latencyMax;
+
+        // Заявки покупателей (книга заявок): закрыто, доля исполненного, p50/p90/p99 исполнения в мс
+        long orders;
+        double fillRate;
+        double[] orderLatency;
+
+        // Подписчики Flow: сколько их и сколько партий им доставлено
+        int subscribers;
+        long delivered;
+
+        // Трассировка: p50/p90/p99 в мс для работы стадий, очередей после стадий 0..2 и типов чая
+        long traced;
+        final double[][] tracedService = new double[STAGES.length][];
+        final double[][] tracedQueue = new double[STAGES.length - 1][];
+        final double[][] tracedTypes = new double[TeaType.values().length][];
+
+        static Summary collect(TeaFactory factory, FactoryConfig config) {
+            Summary summary = new Summary();
+            summary.mode = factory.getRunMode().name();
+            summary.threads = config.getThreadMode().name();
+            summary.buffer = config.getBufferType(FactoryConfig.RAW).name();
+            summary.readyBuffer = config.getBufferType(FactoryConfig.READY).name();
+            summary.seed = factory.getRunSeed();
+            summary.runtimeSeconds = factory.getRuntimeMillis() / 1000.0;
+            summary.cycles = factory.getCyclesCompleted();
+            summary.purchases = factory.getTotalPurchases();
+            summary.throughput = summary.runtimeSeconds > 0 ? summary.purchases / summary.runtimeSeconds : 0;
+
+            // Загрузка стадии: доля времени, которое её workers реально работали
+            long[] busy = new long[STAGES.length];
+            for (AbstractWorker worker : factory.getWorkers()) {
+                busy[worker.getWorkPhase()] += worker.getBusyNanos();
+                summary.stageWorkers[worker.getWorkPhase()]++;
+            }
+            double runtimeNanos = factory.getRuntimeMillis() * 1_000_000.0;
+            for (int i = 0; i < STAGES.length; i++) {
+                if (runtimeNanos > 0 && summary.stageWorkers[i] > 0) {
+                    summary.utilization[i] = busy[i] / (runtimeNanos * summary.stageWorkers[i]);
+                }
+            }
+
+            summary.lineMode = factory.getLineMode().name();
+            summary.lineProduced = factory.getLines().stream().mapToLong(ProductionLine::getProduced).toArray();
+
+            FactoryMetrics metrics = factory.getMetrics();
+            summary.windowRates = new double[STAGES.length][FactoryMetrics.RATE_WINDOWS.length];
+            for (int i = 0; i < STAGES.length; i++) {
+                summary.stageBatches[i] = metrics.getStageCount(i);
+                for (int w = 0; w < FactoryMetrics.RATE_WINDOWS.length; w++) {
+                    summary.windowRates[i][w] = metrics.getStageRate(i, FactoryMetrics.RATE_WINDOWS[w]);
+                }
+            }
+
+            LatencyHistogram latency = metrics.batchLatency();
+            summary.latencyP50 = latency.getValueAtPercentile(50, TimeUnit.MILLISECONDS);
+            summary.latencyP90 = latency.getValueAtPercentile(90, TimeUnit.MILLISECONDS);
+            summary.latencyP99 = latency.getValueAtPercentile(99, TimeUnit.MILLISECONDS);
+            summary.latencyMax = latency.getMax() / 1_000_000.0;
+
+            summary.orders = metrics.getOrderCount();
+            if (summary.orders > 0) {
+                summary.fillRate = metrics.getFillRate();
+                summary.orderLatency = percentiles(metrics.orderLatency());
+            }
+
+            summary.subscribers = factory.getReadyPublisher().getSubscriberCount();
+            summary.delivered = factory.getReadyPublisher().getDeliveredCount();
+
+            summary.traced = metrics.getTracedCount();
+            if (summary.traced > 0) {
+                for (int i = 0; i < STAGES.length; i++) {
+                    summary.tracedService[i] = percentiles(metrics.tracedService(i));
+                    if (i < STAGES.length - 1) {
+                        summary.tracedQueue[i] = percentiles(metrics.tracedQueue(i));
+                    }
+                }
+                for (TeaType type : TeaType.values()) {
+                    summary.tracedTypes[type.ordinal()] = percentiles(metrics.tracedTotal(type));
+                }
+            }
+            return summary;
+        }
+
+        private static double[] percentiles(LatencyHistogram histogram) {
+            return new double[]{
+                    histogram.getValueAtPercentile(50, TimeUnit.MILLISECONDS),
+                    histogram.getValueAtPercentile(90, TimeUnit.MILLISECONDS),
+                    histogram.getValueAtPercentile(99, TimeUnit.MILLISECONDS)};
+        }
+
+        static Summary from(SimulationResult result) {
+            FactoryConfig config = result.getConfig();
+            Summary summary = new Summary();
+            summary.mode = config.getRunMode().name();
+            summary.threads = "SIMULATED";
+            summary.buffer = config.getBufferType(FactoryConfig.RAW).name();
+            summary.readyBuffer = config.getBufferType(FactoryConfig.READY).name();
+            summary.seed = result.getSeed();
+            summary.runtimeSeconds = result.getVirtualNanos() / 1e9;
+            summary.cycles = result.getCyclesCompleted();
+            summary.purchases = result.getPurchases();
+            summary.throughput = result.getThroughput();
+            for (int i = 0; i < STAGES.length; i++) {
+                summary.stageWorkers[i] = result.getWorkerCount(i);
+                summary.stageBatches[i] = result.getStageCount(i);
+                summary.utilization[i] = result.getUtilization(i);
+            }
+            summary.lineMode = config.getLineMode().name();
+            summary.lineProduced = result.getLineProduced();
+
+            LatencyHistogram latency = result.batchLatency();
+            summary.latencyP50 = latency.getValueAtPercentile(50, TimeUnit.MILLISECONDS);
+            summary.latencyP90 = latency.getValueAtPercentile(90, TimeUnit.MILLISECONDS);
+            summary.latencyP99 = latency.getValueAtPercentile(99, TimeUnit.MILLISECONDS);
+            summary.latencyMax = latency.getMax() / 1_000_000.0;
+            return summary;
+        }
+
+        String toJson() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\n");
+            sb.append(String.format(Locale.ROOT, "  \"mode\": \"%s\",%n", mode));
+            sb.append(String.format(Locale.ROOT, "  \"threads\": \"%s\",%n", threads));
+            sb.append(String.format(Locale.ROOT, "  \"buffer\": \"%s\",%n", buffer));
+            sb.append(String.format(Locale.ROOT, "  \"readyBuffer\": \"%s\",%n", readyBuffer));
+            sb.append(String.format(Locale.ROOT, "  \"seed\": %d,%n", seed));
+            sb.append(String.format(Locale.ROOT, "  \"runtimeSeconds\": %.3f,%n", runtimeSeconds));
+            sb.append(String.format(Locale.ROOT, "  \"cycles\": %d,%n", cycles));
+            sb.append(String.format(Locale.ROOT, "  \"purchases\": %d,%n", purchases));
+            sb.append(String.format(Locale.ROOT, "  \"throughputPerSecond\": %.3f,%n", throughput));
+            sb.append(String.format(Locale.ROOT, "  \"lineMode\": \"%s\",%n", lineMode));
+            sb.append("  \"lines\": [");
+            for (int i = 0; i < lineProduced.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(String.format(Locale.ROOT, "{\"produced\": %d}", lineProduced[i]));
+            }
+            sb.append("],\n");
+            sb.append("  \"stages\": {\n");
+            for (int i = 0; i < STAGES.length; i++) {
+                sb.append(String.format(Locale.ROOT, "    \"%s\": {\"workers\": %d, \"batches\": %d, \"utilization\": %.4f",
+                        STAGES[i], stageWorkers[i], stageBatches[i], utilization[i]));
+                if (windowRates != null) {
+                    sb.append(", \"ratePerSecond\": {");
+                    for (int w = 0; w < FactoryMetrics.RATE_WINDOWS.length; w++) {
+                        sb.append(String.format(Locale.ROOT, "%s\"%ds\": %.3f", w > 0 ? ", " : "",
+                                FactoryMetrics.RATE_WINDOWS[w], windowRates[i][w]));
+                    }
+                    sb.append("}");
+                }
+                sb.append(i < STAGES.length - 1 ? "},\n" : "}\n");
+            }
+            sb.append("  },\n");
+            sb.append(String.format(Locale.ROOT,
+                    "  \"latencyMillis\": {\"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f, \"max\": %.3f}%s%n",
+                    latencyP50, latencyP90, latencyP99, latencyMax, orders > 0 || subscribers > 0 || traced > 0 ? "," : ""));
+            if (orders > 0) {
+                sb.append(String.format(Locale.ROOT, "  \"orders\": {\"count\": %d, \"fillRate\": %.4f, \"latencyMillis\": %s}%s%n",
+                        orders, fillRate, percentilesJson(orderLatency), subscribers > 0 || traced > 0 ? "," : ""));
+            }
+            if (subscribers > 0) {
+                sb.append(String.format(Locale.ROOT, "  \"subscribers\": {\"count\": %d, \"delivered\": %d}%s%n",
+                        subscribers, delivered, traced > 0 ? "," : ""));
+            }
+            if (traced > 0) {
+                appendTrace(sb);
+            }
+            sb.append("}");
+            return sb.toString();
+        }
+
+        /**
+         * Блок "trace": p50/p90/p99 в мс по стадиям (работа и очередь после неё) и по типам чая
+         */
+        private void appendTrace(StringBuilder sb) {
+            sb.append("  \"trace\": {\n");
+            sb.append(String.format(Locale.ROOT, "    \"batches\": %d,%n", traced));
+            sb.append("    \"stages\": {\n");
+            for (int i = 0; i < STAGES.length; i++) {
+                sb.append(String.format(Locale.ROOT, "      \"%s\": {\"serviceMillis\": %s", STAGES[i], percentilesJson(tracedService[i])));
+                if (i < STAGES.length - 1) {
+                    sb.append(", \"queueMillis\": ").append(percentilesJson(tracedQueue[i]));
+                }
+                sb.append(i < STAGES.length - 1 ? "},\n" : "}\n");
+            }
+            sb.append("    },\n");
+            sb.append("    \"types\": {\n");
+            TeaType[] types = TeaType.values();
+            for (int i = 0; i < types.length; i++) {
+                sb.append(String.format(Locale.ROOT, "      \"%s\": {\"totalMillis\": %s}%s%n",
+                        types[i].name(), percentilesJson(tracedTypes[i]), i < types.length - 1 ? "," : ""));
+            }
+            sb.append("    }\n");
+            sb.append("  }\n");
+        }
+
+        private static String percentilesJson(double[] values) {
+            return String.format(Locale.ROOT, "{\"p50\": %.3f, \"p90\": %.3f, \"p99\": %.3f}", values[0], values[1], values[2]);
+        }
+
+        String toCsv() {
+            StringBuilder header = new StringBuilder("mode,threads,buffer,ready_buffer,seed,runtime_s,cycles,purchases,throughput_per_s,lines,line_mode");
+            StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%s,%s,%s,%s,%d,%.3f,%d,%d,%.3f",
+                    mode, threads, buffer, readyBuffer, seed, runtimeSeconds, cycles, purchases, throughput));
+            row.append(',').append(lineProduced.length).append(',').append(lineMode);
+            for (int i = 0; i < STAGES.length; i++) {
+                header.append(",batches_").append(STAGES[i].toLowerCase(Locale.ROOT));
+                header.append(",util_").append(STAGES[i].toLowerCase(Locale.ROOT));
+                row.append(String.format(Locale.ROOT, ",%d,%.4f", stageBatches[i], utilization[i]));
+            }
+            header.append(",latency_p50_ms,latency_p90_ms,latency_p99_ms,latency_max_ms");
+            row.append(String.format(Locale.ROOT, ",%.3f,%.3f,%.3f,%.3f",
+                    latencyP50, latencyP90, latencyP99, latencyMax));
+            return header + "\n" + row;
+        }
+    }
+}
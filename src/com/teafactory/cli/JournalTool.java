@@ -0,0 +1,154 @@
+package com.teafactory.cli;
+
+import com.teafactory.journal.JournalReader;
+import com.teafactory.metrics.LatencyHistogram;
+import com.teafactory.model.TeaType;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение бинарного журнала партий из командной строки.
+ *
+ * Примеры:
+ *   java -cp bin com.teafactory.cli.JournalTool journal              # сводка
+ *   java -cp bin com.teafactory.cli.JournalTool journal --head=20    # первые записи
+ *   java -cp bin com.teafactory.cli.JournalTool journal --batch=1234 # история одной партии
+ */
+public class JournalTool {
+
+    private static final String[] STAGES = {"CREATED", "PROCESSED", "PACKED", "PURCHASED"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            printUsage();
+            System.exit(2);
+            return;
+        }
+        Map<String, String> options;
+        try {
+            options = HeadlessRunner.parseArgs(Arrays.copyOfRange(args, 1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            System.exit(2);
+            return;
+        }
+
+        JournalReader reader = JournalReader.open(Paths.get(args[0]));
+        if (options.containsKey("head")) {
+            head(reader, Long.parseLong(options.get("head")));
+        } else if (options.containsKey("batch")) {
+            batch(reader, Integer.parseInt(options.get("batch")));
+        } else {
+            summary(reader);
+        }
+    }
+
+    private static void head(JournalReader reader, long limit) throws IOException {
+        long[] printed = {0};
+        reader.scan(record -> {
+            if (printed[0]++ < limit) {
+                System.out.println(record + " " + reader.workerName(record.getWorkerId()));
+            }
+        });
+    }
+
+    private static void batch(JournalReader reader, int batchId) throws IOException {
+        reader.scan(record -> {
+            if (record.getBatchId() == batchId) {
+                System.out.println(record + " " + reader.workerName(record.getWorkerId()));
+            }
+        });
+    }
+
+    /**
+     * Счётчики по стадиям, типам и workers + время партии от создания до покупки
+     */
+    private static void summary(JournalReader reader) throws IOException {
+        long[] stageCounts = new long[STAGES.length];
+        long[] typePurchases = new long[TeaType.values().length];
+        long[] workerCounts = new long[Math.max(1, reader.getWorkerCount())];
+        long[] span = {Long.MAX_VALUE, Long.MIN_VALUE};
+        LatencyHistogram lifecycle = new LatencyHistogram();
+
+        // Момент создания по id партии (id идут подряд с 1); покупка может встретиться раньше создания
+        long[][] created = {new long[1 << 16]};
+        long[][] purchased = {new long[1 << 16]};
+
+        long start = System.nanoTime();
+        long records = reader.scan(record -> {
+            stageCounts[record.getStage()]++;
+            if (record.getWorkerId() >= workerCounts.length) {
+                return;
+            }
+            workerCounts[record.getWorkerId()]++;
+            span[0] = Math.min(span[0], record.getNanos());
+            span[1] = Math.max(span[1], record.getNanos());
+
+            int id = record.getBatchId();
+            if (record.getStage() == 0 || record.getStage() == 3) {
+                if (id >= created[0].length) {
+                    int size = Integer.highestOneBit(id) << 1;
+                    created[0] = Arrays.copyOf(created[0], size);
+                    purchased[0] = Arrays.copyOf(purchased[0], size);
+                }
+                // +1: ноль означает "ещё не встречали"
+                long time = record.getNanos() + 1;
+                if (record.getStage() == 0) {
+                    created[0][id] = time;
+                    if (purchased[0][id] != 0) {
+                        lifecycle.record(purchased[0][id] - time);
+                    }
+                } else {
+                    typePurchases[record.getType().ordinal()]++;
+                    purchased[0][id] = time;
+                    if (created[0][id] != 0) {
+                        lifecycle.record(time - created[0][id]);
+                    }
+                }
+            }
+        });
+        long scanNanos = System.nanoTime() - start;
+
+        PrintStream out = System.out;
+        out.printf(Locale.ROOT, "Записей: %d в %d сегментах, прочитано за %.3f с (%.1f млн записей/с)%n",
+                records, reader.getSegmentCount(), scanNanos / 1e9, records * 1e3 / Math.max(1, scanNanos));
+        if (records == 0) {
+            return;
+        }
+        out.printf(Locale.ROOT, "Интервал: %.3f с%n", (span[1] - span[0]) / 1e9);
+        out.println("По стадиям:");
+        for (int i = 0; i < STAGES.length; i++) {
+            out.printf(Locale.ROOT, "  %-10s %d%n", STAGES[i], stageCounts[i]);
+        }
+        out.println("Покупки по типам:");
+        for (TeaType type : TeaType.values()) {
+            out.printf(Locale.ROOT, "  %-10s %d%n", type.name(), typePurchases[type.ordinal()]);
+        }
+        out.println("По workers:");
+        for (int id = 0; id < reader.getWorkerCount(); id++) {
+            out.printf(Locale.ROOT, "  %-16s %d%n", reader.workerName(id), workerCounts[id]);
+        }
+        if (lifecycle.getCount() > 0) {
+            out.printf(Locale.ROOT, "От создания до покупки, мс: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                    lifecycle.getValueAtPercentile(50, TimeUnit.MILLISECONDS),
+                    lifecycle.getValueAtPercentile(90, TimeUnit.MILLISECONDS),
+                    lifecycle.getValueAtPercentile(99, TimeUnit.MILLISECONDS),
+                    lifecycle.getMax() / 1e6);
+        }
+    }
+
+    private static void printUsage() {
+        PrintStream out = System.err;
+        out.println("Использование: JournalTool DIR [опции]");
+        out.println("  (без опций)      сводка по журналу");
+        out.println("  --head=N         первые N записей");
+        out.println("  --batch=ID       все записи одной партии");
+    }
+}
@@ -0,0 +1,247 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
+import com.teafactory.workers.AbstractWorker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Автомасштабирование workers по заполненности буферов.
+ * ✔ Давление на стадию = заполненность входа × свобода выхода (есть что брать и куда класть)
+ * ✔ Давление сглаживается (EWMA), решение — только после нескольких замеров подряд
+ * ✔ Убираем worker, только если давление низкое и workers стадии простаивают
+ * ✔ После каждого решения стадия выжидает паузу (cooldown)
+ * ✔ Каждое решение публикуется событием SCALE_UP / SCALE_DOWN
+ *
+ * Замеры идут без блокировок (peekSizeUnsafe, volatile-счётчики занятости).
+ */
+final class Autoscaler {
+
+    private static final String NAME = "АВТОМАСШТАБ";
+
+    // Вес нового замера в сглаженном давлении
+    private static final double SMOOTHING = 0.3;
+
+    // Ниже этой загрузки workers стадии считаются простаивающими
+    private static final double IDLE_UTILIZATION = 0.5;
+
+    private static final int CONSUME = 3;
+
+    private final TeaFactory factory;
+    private final ScalingPolicy policy;
+    private final EventBus events;
+    private final List<Target> targets = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    Autoscaler(TeaFactory factory, ScalingPolicy policy, EventBus events) {
+        this.factory = factory;
+        this.policy = policy;
+        this.events = events;
+        for (ProductionLine line : factory.getLines()) {
+            for (int stage = 0; stage < ProductionLine.STAGES; stage++) {
+                targets.add(new Target(line, stage));
+            }
+        }
+        targets.add(new Target(null, CONSUME));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void start() {
+        long now = System.nanoTime();
+        for (Target target : targets) {
+            target.lastSampleNanos = now;
+            target.lastBusyNanos = target.busyNanos();
+        }
+        scheduler.scheduleAtFixedRate(this::tick, policy.getIntervalMillis(), policy.getIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Остановить замеры и дождаться текущего (он не ждёт блокировок фабрики)
+     */
+    void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(policy.getIntervalMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            for (Target target : targets) {
+                sample(target, now);
+            }
+        } catch (RuntimeException e) {
+            // Ошибка одного замера не должна останавливать расписание
+            events.publish(NAME, EventKind.FACTORY, "⚠️ Ошибка автомасштабирования: " + e);
+        }
+    }
+
+    private void sample(Target target, long now) {
+        int active = target.activeCount();
+        long busy = target.busyNanos();
+        long elapsed = now - target.lastSampleNanos;
+        double utilization = elapsed > 0 && active > 0
+                ? Math.min(1.0, (double) (busy - target.lastBusyNanos) / ((double) elapsed * active))
+                : 0;
+        target.lastSampleNanos = now;
+        target.lastBusyNanos = busy;
+
+        double pressure = target.pressure();
+        target.smoothed = target.sampled
+                ? SMOOTHING * pressure + (1 - SMOOTHING) * target.smoothed
+                : pressure;
+        target.sampled = true;
+
+        boolean wantUp = target.smoothed >= policy.getUpThreshold()
+                && active < policy.getMaxWorkers(target.stage);
+        boolean wantDown = target.smoothed <= policy.getDownThreshold()
+                && utilization < IDLE_UTILIZATION
+                && active > policy.getMinWorkers(target.stage);
+        target.upStreak = wantUp ? target.upStreak + 1 : 0;
+        target.downStreak = wantDown ? target.downStreak + 1 : 0;
+
+        if (now - target.lastDecisionNanos < TimeUnit.MILLISECONDS.toNanos(policy.getCooldownMillis())) {
+            return;
+        }
+        if (target.upStreak >= policy.getConfirmSamples()) {
+            AbstractWorker worker = factory.addWorker(target.lineForNewWorker(), target.stage);
+            if (worker != null) {
+                decided(target, now, EventKind.SCALE_UP, "📈 +", worker, utilization);
+            }
+        } else if (target.downStreak >= policy.getConfirmSamples()) {
+            AbstractWorker worker = factory.removeWorker(target.line, target.stage);
+            if (worker != null) {
+                decided(target, now, EventKind.SCALE_DOWN, "📉 −", worker, utilization);
+            }
+        }
+    }
+
+    private void decided(Target target, long now, EventKind kind, String sign,
+                         AbstractWorker worker, double utilization) {
+        target.lastDecisionNanos = now;
+        target.upStreak = 0;
+        target.downStreak = 0;
+        if (events.isEnabled(kind)) {
+            String message = String.format("%s%s: стадия %s%s, давление %.2f, загрузка %.0f%% → workers: {count}",
+                    sign, worker.getWorkerName(), TeaFactory.phaseName(target.stage),
+                    target.line != null && factory.getLines().size() > 1 ? " линии " + target.line.getNumber() : "",
+                    target.smoothed, utilization * 100);
+            events.publish(NAME, kind, message, target.activeCount());
+        }
+    }
+
+    private static double occupancy(TeaBuffer buffer) {
+        return (double) buffer.peekSizeUnsafe() / buffer.getCapacity();
+    }
+
+    /**
+     * Стадия линии (SUPPLY, PROCESS, PACK) или покупатели всей фабрики (line == null)
+     */
+    private final class Target {
+        final ProductionLine line;
+        final int stage;
+
+        double smoothed;
+        boolean sampled;
+        int upStreak;
+        int downStreak;
+        long lastDecisionNanos = Long.MIN_VALUE / 2;
+        long lastSampleNanos;
+        long lastBusyNanos;
+
+        Target(ProductionLine line, int stage) {
+            this.line = line;
+            this.stage = stage;
+        }
+
+        List<? extends AbstractWorker> workers() {
+            return line != null ? line.getWorkers(stage) : factory.getBuyers();
+        }
+
+        int activeCount() {
+            if (line != null) {
+                return line.getActiveCount(stage);
+            }
+            int active = 0;
+            for (AbstractWorker worker : factory.getBuyers()) {
+                if (worker.isActive()) {
+                    active++;
+                }
+            }
+            return active;
+        }
+
+        long busyNanos() {
+            long busy = 0;
+            for (AbstractWorker worker : workers()) {
+                busy += worker.getBusyNanos();
+            }
+            return busy;
+        }
+
+        /**
+         * 0..1: насколько стадии есть что брать и куда класть
+         */
+        double pressure() {
+            if (line == null) {
+                return readyOccupancy();
+            }
+            TeaBuffer input = line.inputOf(stage);
+            double in = input == null ? 1.0 : occupancy(input);
+            return in * (1 - occupancy(line.outputOf(stage)));
+        }
+
+        /**
+         * Заполненность готовой продукции по всей фабрике (общий буфер учитывается один раз)
+         */
+        private double readyOccupancy() {
+            Set<TeaBuffer> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            long size = 0;
+            long capacity = 0;
+            for (ProductionLine each : factory.getLines()) {
+                TeaBuffer ready = each.getReadyBuffer();
+                if (seen.add(ready)) {
+                    size += ready.peekSizeUnsafe();
+                    capacity += ready.getCapacity();
+                }
+            }
+            return capacity > 0 ? (double) size / capacity : 0;
+        }
+
+        /**
+         * Новый покупатель привязывается к линии с самым полным буфером готовой продукции
+         */
+        ProductionLine lineForNewWorker() {
+            if (line != null) {
+                return line;
+            }
+            ProductionLine best = null;
+            double bestOccupancy = -1;
+            for (ProductionLine each : factory.getLines()) {
+                double occupancy = occupancy(each.getReadyBuffer());
+                if (occupancy > bestOccupancy) {
+                    best = each;
+                    bestOccupancy = occupancy;
+                }
+            }
+            return best;
+        }
+    }
+}
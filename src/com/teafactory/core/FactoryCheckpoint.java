@@ -0,0 +1,298 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Неизменяемый снимок состояния остановленной фабрики для перезапуска с того же места.
+ * ✔ Содержимое каждого буфера вместе с партиями, которые workers держали на руках
+ * ✔ Счётчики: циклы, покупки, время работы, партии по стадиям и типам
+ * ✔ Фаза Phaser и последний выданный id партии — новые партии не повторят старые id
+ * ✔ Топология фабрики — по снимку строится такая же фабрика
+ *
+ * Формат файла (DataOutputStream, big-endian):
+ * MAGIC, VERSION, время снимка (epoch ms), топология (.properties в UTF-8 с длиной),
+ * последний id партии, фаза, циклы, покупки, время работы,
+ * счётчики [стадия][тип], затем буферы: имя, вместимость, число партий и партии
+ * [int id][byte тип][byte стадия][long возраст, нс].
+ * Файл пишется во временный и переименовывается — старый снимок не портится при сбое.
+ */
+public final class FactoryCheckpoint {
+
+    static final long MAGIC = 0x544541434B505431L; // "TEACKPT1"
+    static final int VERSION = 1;
+
+    private static final TeaType[] TYPES = TeaType.values();
+    private static final String[] BATCH_STAGES = {"RAW", "PROCESSED", "PACKED"};
+
+    private final FactoryConfig config;
+    private final long takenAtMillis;
+    private final int idSequence;
+    private final int phase;
+    private final int cyclesCompleted;
+    private final long purchases;
+    private final long runtimeMillis;
+    private final long[][] typeCounts;
+    private final List<BufferState> buffers;
+
+    FactoryCheckpoint(FactoryConfig config, long takenAtMillis, int idSequence, int phase,
+                      int cyclesCompleted, long purchases, long runtimeMillis,
+                      long[][] typeCounts, List<BufferState> buffers) {
+        this.config = config;
+        this.takenAtMillis = takenAtMillis;
+        this.idSequence = idSequence;
+        this.phase = phase;
+        this.cyclesCompleted = cyclesCompleted;
+        this.purchases = purchases;
+        this.runtimeMillis = runtimeMillis;
+        this.typeCounts = typeCounts;
+        this.buffers = Collections.unmodifiableList(buffers);
+    }
+
+    // ─────────── Файлы ───────────
+
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(takenAtMillis);
+
+            StringWriter properties = new StringWriter();
+            config.toProperties().store(properties, null);
+            byte[] topology = properties.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(topology.length);
+            out.write(topology);
+
+            out.writeInt(idSequence);
+            out.writeInt(phase);
+            out.writeInt(cyclesCompleted);
+            out.writeLong(purchases);
+            out.writeLong(runtimeMillis);
+
+            out.writeInt(typeCounts.length);
+            out.writeInt(TYPES.length);
+            for (long[] stage : typeCounts) {
+                for (long count : stage) {
+                    out.writeLong(count);
+                }
+            }
+
+            out.writeInt(buffers.size());
+            for (BufferState buffer : buffers) {
+                buffer.write(out);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static FactoryCheckpoint read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Не снимок фабрики (или другая версия): " + file);
+            }
+            long takenAtMillis = in.readLong();
+
+            byte[] topology = new byte[in.readInt()];
+            in.readFully(topology);
+            Properties properties = new Properties();
+            properties.load(new StringReader(new String(topology, StandardCharsets.UTF_8)));
+            FactoryConfig config = FactoryConfig.fromProperties(properties);
+
+            int idSequence = in.readInt();
+            int phase = in.readInt();
+            int cyclesCompleted = in.readInt();
+            long purchases = in.readLong();
+            long runtimeMillis = in.readLong();
+
+            int stages = in.readInt();
+            int types = in.readInt();
+            if (types != TYPES.length) {
+                throw new IOException("Снимок записан для другого набора сортов чая: " + file);
+            }
+            long[][] typeCounts = new long[stages][types];
+            for (long[] stage : typeCounts) {
+                for (int type = 0; type < types; type++) {
+                    stage[type] = in.readLong();
+                }
+            }
+
+            int bufferCount = in.readInt();
+            List<BufferState> buffers = new ArrayList<>(bufferCount);
+            for (int i = 0; i < bufferCount; i++) {
+                buffers.add(BufferState.read(in));
+            }
+            return new FactoryCheckpoint(config, takenAtMillis, idSequence, phase,
+                    cyclesCompleted, purchases, runtimeMillis, typeCounts, buffers);
+        }
+    }
+
+    /**
+     * Буферы фабрики должны совпадать со снимком по порядку, именам и вместимости
+     */
+    void checkTopology(List<TeaBuffer> actual) {
+        if (actual.size() != buffers.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Снимок не подходит к фабрике: буферов %d, в снимке %d", actual.size(), buffers.size()));
+        }
+        for (int i = 0; i < actual.size(); i++) {
+            TeaBuffer buffer = actual.get(i);
+            BufferState state = buffers.get(i);
+            if (!buffer.getName().equals(state.name) || buffer.getCapacity() != state.capacity) {
+                throw new IllegalArgumentException(String.format(
+                        "Снимок не подходит к фабрике: буфер %s/%d, в снимке %s/%d",
+                        buffer.getName(), buffer.getCapacity(), state.name, state.capacity));
+            }
+        }
+    }
+
+    public FactoryConfig getConfig() { return config; }
+    public long getTakenAtMillis() { return takenAtMillis; }
+    public int getIdSequence() { return idSequence; }
+    public int getPhase() { return phase; }
+    public int getCyclesCompleted() { return cyclesCompleted; }
+    public long getPurchases() { return purchases; }
+    public long getRuntimeMillis() { return runtimeMillis; }
+    public List<BufferState> getBuffers() { return buffers; }
+
+    public long getTypeCount(int stage, TeaType type) {
+        return typeCounts[stage][type.ordinal()];
+    }
+
+    long[][] getTypeCounts() {
+        return typeCounts;
+    }
+
+    /**
+     * Всего партий в снимке
+     */
+    public int getBatchCount() {
+        int total = 0;
+        for (BufferState buffer : buffers) {
+            total += buffer.size();
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Снимок: партий %d в %d буферах, фаза %s, циклов %d, покупок %d, последний id %d]",
+                getBatchCount(), buffers.size(), TeaFactory.phaseName(phase),
+                cyclesCompleted, purchases, idSequence);
+    }
+
+    /**
+     * Партии одного буфера: массивы примитивов, а не объекты партий —
+     * из одного снимка можно восстановить фабрику сколько угодно раз
+     */
+    public static final class BufferState {
+        private final String name;
+        private final int capacity;
+        private final int[] ids;
+        private final byte[] types;
+        private final byte[] stages;
+        private final long[] ageNanos;
+
+        private BufferState(String name, int capacity, int size) {
+            this.name = name;
+            this.capacity = capacity;
+            this.ids = new int[size];
+            this.types = new byte[size];
+            this.stages = new byte[size];
+            this.ageNanos = new long[size];
+        }
+
+        /**
+         * Партии буфера на момент nowNanos (возраст отсчитывается от него)
+         */
+        static BufferState of(TeaBuffer buffer, List<TeaBatch> batches, long nowNanos) {
+            BufferState state = new BufferState(buffer.getName(), buffer.getCapacity(), batches.size());
+            for (int i = 0; i < batches.size(); i++) {
+                TeaBatch batch = batches.get(i);
+                state.ids[i] = batch.getId();
+                state.types[i] = (byte) batch.getType().ordinal();
+                state.stages[i] = (byte) stageCode(batch.getStage());
+                state.ageNanos[i] = nowNanos - batch.getCreatedNanos();
+            }
+            return state;
+        }
+
+        /**
+         * Новые объекты партий; время создания сдвигается так, чтобы возраст
+         * продолжился от nowNanos (простой между снимком и восстановлением не учитывается)
+         */
+        List<TeaBatch> toBatches(long nowNanos) {
+            List<TeaBatch> batches = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                batches.add(new TeaBatch(ids[i], TYPES[types[i]], BATCH_STAGES[stages[i]], nowNanos - ageNanos[i]));
+            }
+            return batches;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            out.writeInt(capacity);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                out.writeInt(ids[i]);
+                out.writeByte(types[i]);
+                out.writeByte(stages[i]);
+                out.writeLong(ageNanos[i]);
+            }
+        }
+
+        private static BufferState read(DataInputStream in) throws IOException {
+            String name = in.readUTF();
+            int capacity = in.readInt();
+            BufferState state = new BufferState(name, capacity, in.readInt());
+            for (int i = 0; i < state.ids.length; i++) {
+                state.ids[i] = in.readInt();
+                state.types[i] = in.readByte();
+                state.stages[i] = in.readByte();
+                state.ageNanos[i] = in.readLong();
+                if (state.types[i] < 0 || state.types[i] >= TYPES.length
+                        || state.stages[i] < 0 || state.stages[i] >= BATCH_STAGES.length) {
+                    throw new IOException("Повреждённая запись партии #" + state.ids[i] + " в буфере " + name);
+                }
+            }
+            return state;
+        }
+
+        private static int stageCode(String stage) {
+            for (int code = 0; code < BATCH_STAGES.length; code++) {
+                if (BATCH_STAGES[code].equals(stage)) {
+                    return code;
+                }
+            }
+            throw new IllegalStateException("Стадия партии не сохраняется в снимок: " + stage);
+        }
+
+        public String getName() { return name; }
+        public int getCapacity() { return capacity; }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+}
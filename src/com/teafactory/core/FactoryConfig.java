@@ -0,0 +1,627 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.BufferType;
+import com.teafactory.model.TeaDemand;
+import com.teafactory.model.TeaType;
+import com.teafactory.random.DelayDistribution;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Топология фабрики: стадии, число workers, буферы и задержки.
+ * Собирается в коде через builder() или читается из .properties:
+ *
+ * <pre>
+ * lines=4
+ * line.mode=PARTITIONED
+ * run.mode=PIPELINED
+ * threads=PLATFORM
+ * batch.size=1
+ * buffer.raw.type=RING
+ * buffer.raw.capacity=5
+ * stage.supply.workers=1
+ * stage.supply.delay=300-900
+ * stage.process.delay=lognormal:400:0.6
+ * stage.consume.workers=3
+ * # сорта, которые хотят покупатели (не ANY — только с buffer.ready.type=TYPED или ORDERS)
+ * buyer.demand=GREEN+MATCHA,BLACK,PUER+OOLONG+WHITE
+ * # для стадий без своего stage.*.delay
+ * delay=300-900
+ * # одинаковый seed — одинаковая нагрузка (без seed — новый при каждом запуске)
+ * seed=42
+ * # бинарный журнал партий (необязательно)
+ * journal.dir=journal
+ * # трассировка доли партий по стадиям (0 — выключена)
+ * trace.sample=0.01
+ * # автомасштабирование (необязательно)
+ * autoscale=true
+ * stage.process.max=6
+ * </pre>
+ *
+ * Число workers стадий SUPPLY, PROCESS, PACK задаётся на линию, CONSUME — на всю фабрику.
+ * При autoscale=true заданное число — стартовое, дальше оно меняется в границах stage.*.min/max.
+ */
+public final class FactoryConfig {
+
+    public static final int STAGES = 4;
+
+    // Буферы между стадиями
+    public static final int RAW = 0;
+    public static final int MID = 1;
+    public static final int READY = 2;
+
+    private static final String[] BUFFER_KEYS = {"raw", "mid", "ready"};
+
+    private final int lineCount;
+    private final LineMode lineMode;
+    private final RunMode runMode;
+    private final ThreadMode threadMode;
+    private final int batchSize;
+    private final int[] workers;
+    private final BufferType[] bufferTypes;
+    private final int[] capacities;
+    private final DelayDistribution[] delays;
+    private final Long seed;
+    private final Path journalDirectory;
+    private final double traceSample;
+    private final TeaDemand demand;
+    private final ScalingPolicy scalingPolicy;
+
+    private FactoryConfig(Builder builder) {
+        this.lineCount = builder.lineCount;
+        this.lineMode = builder.lineMode;
+        this.runMode = builder.runMode;
+        this.threadMode = builder.threadMode;
+        this.batchSize = builder.batchSize;
+        this.workers = builder.workers.clone();
+        this.bufferTypes = builder.bufferTypes.clone();
+        this.capacities = builder.capacities.clone();
+        this.delays = builder.delays.clone();
+        this.seed = builder.seed;
+        this.journalDirectory = builder.journalDirectory;
+        this.traceSample = builder.traceSample;
+        this.demand = builder.demand;
+        this.scalingPolicy = builder.scalingPolicy;
+    }
+
+    /**
+     * Исходная фабрика: буферы 5/3/4, workers 1/1/1/3, задержка 300–900 мс
+     */
+    public static FactoryConfig defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.lineCount = lineCount;
+        builder.lineMode = lineMode;
+        builder.runMode = runMode;
+        builder.threadMode = threadMode;
+        builder.batchSize = batchSize;
+        builder.workers = workers.clone();
+        builder.bufferTypes = bufferTypes.clone();
+        builder.capacities = capacities.clone();
+        builder.delays = delays.clone();
+        builder.seed = seed;
+        builder.journalDirectory = journalDirectory;
+        builder.traceSample = traceSample;
+        builder.demand = demand;
+        builder.scalingPolicy = scalingPolicy;
+        return builder;
+    }
+
+    // ─────────── Файлы ───────────
+
+    /**
+     * Прочитать конфигурацию из .properties (UTF-8).
+     * Отсутствующие ключи берутся из defaults().
+     */
+    public static FactoryConfig load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    public static FactoryConfig fromProperties(Properties properties) {
+        return defaults().toBuilder().apply(properties).build();
+    }
+
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("lines", String.valueOf(lineCount));
+        properties.setProperty("line.mode", lineMode.name());
+        properties.setProperty("run.mode", runMode.name());
+        properties.setProperty("threads", threadMode.name());
+        properties.setProperty("batch.size", String.valueOf(batchSize));
+        for (int i = 0; i < BUFFER_KEYS.length; i++) {
+            properties.setProperty("buffer." + BUFFER_KEYS[i] + ".type", bufferTypes[i].name());
+            properties.setProperty("buffer." + BUFFER_KEYS[i] + ".capacity", String.valueOf(capacities[i]));
+        }
+        for (int stage = 0; stage < STAGES; stage++) {
+            String prefix = "stage." + stageKey(stage);
+            properties.setProperty(prefix + ".workers", String.valueOf(workers[stage]));
+            properties.setProperty(prefix + ".delay", delays[stage].toString());
+        }
+        if (seed != null) {
+            properties.setProperty("seed", String.valueOf(seed));
+        }
+        if (journalDirectory != null) {
+            properties.setProperty("journal.dir", journalDirectory.toString());
+        }
+        if (traceSample > 0) {
+            properties.setProperty("trace.sample", String.valueOf(traceSample));
+        }
+        if (!demand.isAny()) {
+            properties.setProperty("buyer.demand", demand.toString());
+        }
+        properties.setProperty("autoscale", String.valueOf(scalingPolicy != null));
+        if (scalingPolicy != null) {
+            properties.setProperty("autoscale.interval", String.valueOf(scalingPolicy.getIntervalMillis()));
+            properties.setProperty("autoscale.cooldown", String.valueOf(scalingPolicy.getCooldownMillis()));
+            properties.setProperty("autoscale.up", String.valueOf(scalingPolicy.getUpThreshold()));
+            properties.setProperty("autoscale.down", String.valueOf(scalingPolicy.getDownThreshold()));
+            properties.setProperty("autoscale.confirm", String.valueOf(scalingPolicy.getConfirmSamples()));
+            for (int stage = 0; stage < STAGES; stage++) {
+                String prefix = "stage." + stageKey(stage);
+                properties.setProperty(prefix + ".min", String.valueOf(scalingPolicy.getMinWorkers(stage)));
+                properties.setProperty(prefix + ".max", String.valueOf(scalingPolicy.getMaxWorkers(stage)));
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Спрос покупателей выполним: склад готовой продукции делит партии по сортам (TYPED или ORDERS),
+     * и каждый сорт кому-то нужен — иначе он копился бы, пока склад не переполнится.
+     * При PARTITIONED покрытие проверяется для каждой линии: покупатель ждёт товар у своей.
+     */
+    static void checkDemand(TeaDemand demand, BufferType readyType, LineMode lineMode, int lineCount, int buyers) {
+        if (demand.isAny()) {
+            return;
+        }
+        if (readyType != BufferType.TYPED && readyType != BufferType.ORDERS) {
+            throw new IllegalArgumentException("Спрос покупателей требует buffer.ready.type=TYPED или ORDERS");
+        }
+        boolean partitioned = lineMode == LineMode.PARTITIONED && lineCount > 1;
+        Set<TeaType> uncovered = demand.uncovered(partitioned ? buyers / lineCount : buyers);
+        if (!uncovered.isEmpty()) {
+            throw new IllegalArgumentException("Сорта " + uncovered + " не нужны ни одному покупателю"
+                    + (partitioned ? " линии" : "") + ": добавьте покупателей или профили спроса");
+        }
+    }
+
+    private static String stageKey(int stage) {
+        return TeaFactory.phaseName(stage).toLowerCase(Locale.ROOT);
+    }
+
+    // ─────────── Чтение ───────────
+
+    public int getLineCount() { return lineCount; }
+    public LineMode getLineMode() { return lineMode; }
+    public RunMode getRunMode() { return runMode; }
+    public ThreadMode getThreadMode() { return threadMode; }
+    public int getBatchSize() { return batchSize; }
+
+    /**
+     * Число workers стадии (для CONSUME — на всю фабрику, для остальных — на линию)
+     */
+    public int getWorkerCount(int stage) { return workers[stage]; }
+
+    /**
+     * @param buffer RAW, MID или READY
+     */
+    public BufferType getBufferType(int buffer) { return bufferTypes[buffer]; }
+    public int getCapacity(int buffer) { return capacities[buffer]; }
+
+    public DelayDistribution getDelay(int stage) { return delays[stage]; }
+
+    /**
+     * Главный seed запуска; null — новый случайный при каждом запуске
+     */
+    public Long getSeed() { return seed; }
+
+    /**
+     * Каталог бинарного журнала партий; null — журнал не пишется
+     */
+    public Path getJournalDirectory() { return journalDirectory; }
+
+    /**
+     * Доля трассируемых партий (0..1); 0 — трассировка выключена
+     */
+    public double getTraceSample() { return traceSample; }
+
+    /**
+     * Спрос покупателей; TeaDemand.ANY — покупатели берут любой сорт
+     */
+    public TeaDemand getDemand() { return demand; }
+
+    /**
+     * Правила автомасштабирования; null — число workers не меняется
+     */
+    public ScalingPolicy getScalingPolicy() { return scalingPolicy; }
+
+    @Override
+    public String toString() {
+        return "FactoryConfig" + toProperties();
+    }
+
+    /**
+     * Построитель конфигурации. Значения по умолчанию — как у defaults().
+     */
+    public static final class Builder {
+        private int lineCount = 1;
+        private LineMode lineMode = LineMode.SHARED;
+        private RunMode runMode = RunMode.PHASED;
+        private ThreadMode threadMode = ThreadMode.PLATFORM;
+        private int batchSize = 1;
+        private int[] workers = {1, 1, 1, 3};
+        private BufferType[] bufferTypes = {BufferType.LOCKING, BufferType.LOCKING, BufferType.LOCKING};
+        private int[] capacities = {5, 3, 4};
+        private DelayDistribution[] delays = {
+                DelayDistribution.uniform(300, 900), DelayDistribution.uniform(300, 900),
+                DelayDistribution.uniform(300, 900), DelayDistribution.uniform(300, 900)
+        };
+        private Long seed;
+        private Path journalDirectory;
+        private double traceSample;
+        private TeaDemand demand = TeaDemand.ANY;
+        private ScalingPolicy scalingPolicy;
+
+        private Builder() {
+        }
+
+        public Builder lines(int lineCount) {
+            this.lineCount = lineCount;
+            return this;
+        }
+
+        public Builder lineMode(LineMode lineMode) {
+            this.lineMode = lineMode;
+            return this;
+        }
+
+        public Builder runMode(RunMode runMode) {
+            this.runMode = runMode;
+            return this;
+        }
+
+        public Builder threadMode(ThreadMode threadMode) {
+            this.threadMode = threadMode;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Число workers стадии (0..3)
+         */
+        public Builder workers(int stage, int count) {
+            workers[stage] = count;
+            return this;
+        }
+
+        public Builder suppliers(int count) { return workers(0, count); }
+        public Builder masters(int count) { return workers(1, count); }
+        public Builder packers(int count) { return workers(2, count); }
+        public Builder buyers(int count) { return workers(3, count); }
+
+        /**
+         * Реализация и вместимость буфера (RAW, MID или READY)
+         */
+        public Builder buffer(int buffer, BufferType type, int capacity) {
+            bufferTypes[buffer] = type;
+            capacities[buffer] = capacity;
+            return this;
+        }
+
+        /**
+         * Одна реализация для всех буферов
+         */
+        public Builder bufferType(BufferType type) {
+            for (int i = 0; i < bufferTypes.length; i++) {
+                bufferTypes[i] = type;
+            }
+            return this;
+        }
+
+        /**
+         * Одна задержка для всех стадий, мс
+         */
+        public Builder delay(long min, long max) {
+            return delay(DelayDistribution.uniform(min, max));
+        }
+
+        /**
+         * Одно распределение задержки для всех стадий
+         */
+        public Builder delay(DelayDistribution delay) {
+            for (int stage = 0; stage < STAGES; stage++) {
+                stageDelay(stage, delay);
+            }
+            return this;
+        }
+
+        public Builder stageDelay(int stage, long min, long max) {
+            return stageDelay(stage, DelayDistribution.uniform(min, max));
+        }
+
+        public Builder stageDelay(int stage, DelayDistribution delay) {
+            delays[stage] = delay;
+            return this;
+        }
+
+        /**
+         * Главный seed (null — новый при каждом запуске)
+         */
+        public Builder seed(Long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Каталог бинарного журнала партий (null — без журнала)
+         */
+        public Builder journal(Path journalDirectory) {
+            this.journalDirectory = journalDirectory;
+            return this;
+        }
+
+        /**
+         * Доля трассируемых партий: 1 — все, 0.01 — каждая сотая, 0 — ни одной
+         */
+        public Builder traceSample(double traceSample) {
+            this.traceSample = traceSample;
+            return this;
+        }
+
+        /**
+         * Спрос покупателей: профили сортов раздаются покупателям по кругу
+         */
+        public Builder demand(TeaDemand demand) {
+            this.demand = demand;
+            return this;
+        }
+
+        /**
+         * Включить автомасштабирование (null — выключить)
+         */
+        public Builder scaling(ScalingPolicy scalingPolicy) {
+            this.scalingPolicy = scalingPolicy;
+            return this;
+        }
+
+        /**
+         * Применить ключи из properties поверх текущих значений
+         */
+        public Builder apply(Properties properties) {
+            String value;
+            if ((value = properties.getProperty("lines")) != null) {
+                lines(parseInt("lines", value));
+            }
+            if ((value = properties.getProperty("line.mode")) != null) {
+                lineMode(parseEnum(LineMode.class, "line.mode", value));
+            }
+            if ((value = properties.getProperty("run.mode")) != null) {
+                runMode(parseEnum(RunMode.class, "run.mode", value));
+            }
+            if ((value = properties.getProperty("threads")) != null) {
+                threadMode(parseEnum(ThreadMode.class, "threads", value));
+            }
+            if ((value = properties.getProperty("batch.size")) != null) {
+                batchSize(parseInt("batch.size", value));
+            }
+            if ((value = properties.getProperty("buffer.type")) != null) {
+                bufferType(parseEnum(BufferType.class, "buffer.type", value));
+            }
+            for (int i = 0; i < BUFFER_KEYS.length; i++) {
+                String prefix = "buffer." + BUFFER_KEYS[i];
+                if ((value = properties.getProperty(prefix + ".type")) != null) {
+                    bufferTypes[i] = parseEnum(BufferType.class, prefix + ".type", value);
+                }
+                if ((value = properties.getProperty(prefix + ".capacity")) != null) {
+                    capacities[i] = parseInt(prefix + ".capacity", value);
+                }
+            }
+            if ((value = properties.getProperty("delay")) != null) {
+                delay(parseDelay("delay", value));
+            }
+            if ((value = properties.getProperty("seed")) != null) {
+                seed(parseSeed(value));
+            }
+            if ((value = properties.getProperty("journal.dir")) != null) {
+                journal(value.trim().isEmpty() ? null : Paths.get(value.trim()));
+            }
+            if ((value = properties.getProperty("trace.sample")) != null) {
+                traceSample(parseDouble("trace.sample", value));
+            }
+            if ((value = properties.getProperty("buyer.demand")) != null) {
+                demand(TeaDemand.parse(value));
+            }
+            for (int stage = 0; stage < STAGES; stage++) {
+                String prefix = "stage." + stageKey(stage);
+                if ((value = properties.getProperty(prefix + ".workers")) != null) {
+                    workers(stage, parseInt(prefix + ".workers", value));
+                }
+                if ((value = properties.getProperty(prefix + ".delay")) != null) {
+                    stageDelay(stage, parseDelay(prefix + ".delay", value));
+                }
+            }
+            applyScaling(properties);
+            return this;
+        }
+
+        /**
+         * autoscale=true|false, autoscale.* и stage.*.min/max.
+         * Границы и пороги без autoscale=true учитываются, только если масштабирование уже включено.
+         */
+        private void applyScaling(Properties properties) {
+            String value;
+            if ((value = properties.getProperty("autoscale")) != null) {
+                boolean enabled = parseBoolean("autoscale", value);
+                if (!enabled) {
+                    scalingPolicy = null;
+                    return;
+                }
+                if (scalingPolicy == null) {
+                    scalingPolicy = ScalingPolicy.defaults();
+                }
+            }
+            if (scalingPolicy == null) {
+                return;
+            }
+            ScalingPolicy policy = scalingPolicy;
+            long interval = policy.getIntervalMillis();
+            long cooldown = policy.getCooldownMillis();
+            if ((value = properties.getProperty("autoscale.interval")) != null) {
+                interval = parseInt("autoscale.interval", value);
+            }
+            if ((value = properties.getProperty("autoscale.cooldown")) != null) {
+                cooldown = parseInt("autoscale.cooldown", value);
+            }
+            policy = policy.withTiming(interval, cooldown);
+
+            double up = policy.getUpThreshold();
+            double down = policy.getDownThreshold();
+            if ((value = properties.getProperty("autoscale.up")) != null) {
+                up = parseDouble("autoscale.up", value);
+            }
+            if ((value = properties.getProperty("autoscale.down")) != null) {
+                down = parseDouble("autoscale.down", value);
+            }
+            policy = policy.withThresholds(up, down);
+
+            if ((value = properties.getProperty("autoscale.confirm")) != null) {
+                policy = policy.withConfirmSamples(parseInt("autoscale.confirm", value));
+            }
+            for (int stage = 0; stage < STAGES; stage++) {
+                String prefix = "stage." + stageKey(stage);
+                int min = policy.getMinWorkers(stage);
+                int max = policy.getMaxWorkers(stage);
+                if ((value = properties.getProperty(prefix + ".min")) != null) {
+                    min = parseInt(prefix + ".min", value);
+                }
+                if ((value = properties.getProperty(prefix + ".max")) != null) {
+                    max = parseInt(prefix + ".max", value);
+                }
+                policy = policy.withBounds(stage, min, max);
+            }
+            scalingPolicy = policy;
+        }
+
+        public FactoryConfig build() {
+            if (lineCount < 1) {
+                throw new IllegalArgumentException("Нужна хотя бы одна линия");
+            }
+            if (lineMode == null || runMode == null || threadMode == null) {
+                throw new IllegalArgumentException("Режимы работы не могут быть null");
+            }
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Размер пакета должен быть >= 1");
+            }
+            if (!(traceSample >= 0 && traceSample <= 1)) {
+                throw new IllegalArgumentException("Доля трассировки должна быть от 0 до 1: " + traceSample);
+            }
+            for (int stage = 0; stage < STAGES; stage++) {
+                if (workers[stage] < 1) {
+                    throw new IllegalArgumentException("На стадии " + TeaFactory.phaseName(stage) + " нужен хотя бы один worker");
+                }
+                if (delays[stage] == null) {
+                    throw new IllegalArgumentException("Не задана задержка стадии " + TeaFactory.phaseName(stage));
+                }
+                if (scalingPolicy != null && (workers[stage] < scalingPolicy.getMinWorkers(stage)
+                        || workers[stage] > scalingPolicy.getMaxWorkers(stage))) {
+                    throw new IllegalArgumentException("Число workers стадии " + TeaFactory.phaseName(stage)
+                            + " вне границ автомасштабирования");
+                }
+            }
+            for (int i = 0; i < capacities.length; i++) {
+                if (bufferTypes[i] == null) {
+                    throw new IllegalArgumentException("Не задана реализация буфера " + BUFFER_KEYS[i]);
+                }
+                if (capacities[i] <= 0) {
+                    throw new IllegalArgumentException("Вместимость буфера " + BUFFER_KEYS[i] + " должна быть положительной");
+                }
+            }
+            if (demand == null) {
+                throw new IllegalArgumentException("Спрос покупателей не может быть null");
+            }
+            checkDemand(demand, bufferTypes[READY], lineMode, lineCount, workers[3]);
+            return new FactoryConfig(this);
+        }
+
+        private static int parseInt(String key, String value) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректное значение " + key + ": " + value);
+            }
+        }
+
+        private static double parseDouble(String key, String value) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректное значение " + key + ": " + value);
+            }
+        }
+
+        private static boolean parseBoolean(String key, String value) {
+            switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "true": return true;
+                case "false": return false;
+                default: throw new IllegalArgumentException("Некорректное значение " + key + ": " + value);
+            }
+        }
+
+        private static <E extends Enum<E>> E parseEnum(Class<E> type, String key, String value) {
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Некорректное значение " + key + ": " + value);
+            }
+        }
+
+        /**
+         * "N", "MIN-MAX", "exp:MEAN" или "lognormal:MEDIAN:SIGMA", мс
+         */
+        static DelayDistribution parseDelay(String key, String value) {
+            try {
+                return DelayDistribution.parse(value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Некорректное значение " + key + ": " + value);
+            }
+        }
+
+        /**
+         * Число или пусто/"random" — новый seed при каждом запуске
+         */
+        private static Long parseSeed(String value) {
+            String trimmed = value.trim();
+            if (trimmed.isEmpty() || "random".equalsIgnoreCase(trimmed)) {
+                return null;
+            }
+            try {
+                return Long.parseLong(trimmed);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректное значение seed: " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.metrics.FactoryMetrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Неизменяемый снимок состояния фабрики для мониторинга.
+ * ✔ Собирается только из volatile/atomic полей — без блокировок буферов
+ * ✔ Любое число читателей (GUI, CLI, бенчмарки) не замедляет производство
+ * ✔ Все значения сняты почти одновременно, но не атомарно как единое целое
+ */
+public final class FactorySnapshot {
+
+    private final long takenAtMillis;
+    private final boolean running;
+    private final RunMode runMode;
+    private final int phase;
+    private final String phaseName;
+    private final long runtimeMillis;
+    private final int cyclesCompleted;
+    private final long purchases;
+    private final BufferLevel raw;
+    private final BufferLevel mid;
+    private final BufferLevel ready;
+    private final List<LineLevel> lines;
+    private final long[] stageCounts;
+
+    // [стадия][окно из FactoryMetrics.RATE_WINDOWS], партий/сек
+    private final double[][] windowRates;
+
+    FactorySnapshot(boolean running, RunMode runMode, int phase, String phaseName,
+                    long runtimeMillis, int cyclesCompleted, long purchases,
+                    BufferLevel raw, BufferLevel mid, BufferLevel ready,
+                    List<LineLevel> lines, long[] stageCounts, double[][] windowRates) {
+        this.takenAtMillis = System.currentTimeMillis();
+        this.running = running;
+        this.runMode = runMode;
+        this.phase = phase;
+        this.phaseName = phaseName;
+        this.runtimeMillis = runtimeMillis;
+        this.cyclesCompleted = cyclesCompleted;
+        this.purchases = purchases;
+        this.raw = raw;
+        this.mid = mid;
+        this.ready = ready;
+        this.lines = List.copyOf(lines);
+        this.stageCounts = stageCounts.clone();
+        this.windowRates = new double[windowRates.length][];
+        for (int stage = 0; stage < windowRates.length; stage++) {
+            this.windowRates[stage] = windowRates[stage].clone();
+        }
+    }
+
+    public long getTakenAtMillis() { return takenAtMillis; }
+    public boolean isRunning() { return running; }
+    public RunMode getRunMode() { return runMode; }
+    public int getPhase() { return phase; }
+    public String getPhaseName() { return phaseName; }
+    public long getRuntimeMillis() { return runtimeMillis; }
+    public int getCyclesCompleted() { return cyclesCompleted; }
+    public long getPurchases() { return purchases; }
+    public BufferLevel getRaw() { return raw; }
+    public BufferLevel getMid() { return mid; }
+    public BufferLevel getReady() { return ready; }
+
+    /**
+     * Состояние каждой линии (для одной линии — один элемент)
+     */
+    public List<LineLevel> getLines() { return lines; }
+
+    /**
+     * Сколько партий прошло стадию (0..3) за всё время работы
+     */
+    public long getStageCount(int stage) {
+        return stageCounts[stage];
+    }
+
+    /**
+     * Покупок в секунду за всё время работы
+     */
+    public double getThroughput() {
+        return runtimeMillis > 0 ? purchases * 1000.0 / runtimeMillis : 0;
+    }
+
+    /**
+     * Партий в секунду через стадию за всё время работы
+     */
+    public double getStageRate(int stage) {
+        return runtimeMillis > 0 ? stageCounts[stage] * 1000.0 / runtimeMillis : 0;
+    }
+
+    /**
+     * Партий в секунду через стадию за последние windowSeconds — одно из FactoryMetrics.RATE_WINDOWS
+     */
+    public double getStageRate(int stage, int windowSeconds) {
+        for (int i = 0; i < FactoryMetrics.RATE_WINDOWS.length; i++) {
+            if (FactoryMetrics.RATE_WINDOWS[i] == windowSeconds) {
+                return windowRates[stage][i];
+            }
+        }
+        throw new IllegalArgumentException("В снимке нет окна " + windowSeconds + " с, есть: "
+                + Arrays.toString(FactoryMetrics.RATE_WINDOWS));
+    }
+
+    @Override
+    public String toString() {
+        return "FactorySnapshot{" + phaseName
+                + ", runtime=" + runtimeMillis + "ms"
+                + ", cycles=" + cyclesCompleted
+                + ", purchases=" + purchases
+                + ", " + raw + ", " + mid + ", " + ready
+                + ", lines=" + lines.size()
+                + ", stages=" + Arrays.toString(stageCounts) + "}";
+    }
+
+    /**
+     * Состояние одной линии производства
+     */
+    public static final class LineLevel {
+        private final int number;
+        private final BufferLevel raw;
+        private final BufferLevel mid;
+        private final BufferLevel ready;
+        private final long produced;
+
+        public LineLevel(int number, BufferLevel raw, BufferLevel mid, BufferLevel ready, long produced) {
+            this.number = number;
+            this.raw = raw;
+            this.mid = mid;
+            this.ready = ready;
+            this.produced = produced;
+        }
+
+        public int getNumber() { return number; }
+        public BufferLevel getRaw() { return raw; }
+        public BufferLevel getMid() { return mid; }
+        public BufferLevel getReady() { return ready; }
+        public long getProduced() { return produced; }
+
+        @Override
+        public String toString() {
+            return "Линия " + number + ": " + raw + ", " + mid + ", " + ready + ", упаковано " + produced;
+        }
+    }
+
+    /**
+     * Заполненность одного буфера
+     */
+    public static final class BufferLevel {
+        private final String name;
+        private final int size;
+        private final int capacity;
+
+        public BufferLevel(String name, int size, int capacity) {
+            this.name = name;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Снять заполненность без блокировки буфера
+         */
+        static BufferLevel of(TeaBuffer buffer) {
+            return new BufferLevel(buffer.getName(), buffer.peekSizeUnsafe(), buffer.getCapacity());
+        }
+
+        public String getName() { return name; }
+        public int getSize() { return size; }
+        public int getCapacity() { return capacity; }
+
+        public double getOccupancy() {
+            return capacity > 0 ? (double) size / capacity : 0;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + size + "/" + capacity;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.teafactory.core;
+
+/**
+ * Как линии производства отдают продукцию покупателям
+ */
+public enum LineMode {
+    /** Все фасовщики кладут в один общий буфер, покупатели берут из него */
+    SHARED,
+    /** У каждой линии свой буфер и свои покупатели; простаивающий покупатель берёт у соседней линии */
+    PARTITIONED
+}
@@ -0,0 +1,199 @@
+package com.teafactory.core;
+
+import com.teafactory.workers.StageGate;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь стадий фазового режима: фазы идут по порядку SUPPLY → PROCESS → PACK → CONSUME,
+ * но фаза, в которой работы нет, пропускается целиком.
+ * ✔ У каждой стадии свой корневой Phaser: раунд стадии закрывают только её workers
+ * ✔ Когда раунд закрыт, очередь выбирает следующую стадию с работой и будит только её workers
+ * ✔ Пропущенная фаза ничего не стоит: ни пробуждений, ни прохода через барьер
+ * ✔ Цикл засчитывается при переходе через CONSUME — выполненную или пропущенную
+ *
+ * Есть ли у стадии работа, решает hasWork(): он вызывается, когда все workers спят,
+ * поэтому workers буферы в этот момент не меняют. Вне фаз ReadyBuffer может разбирать
+ * доставка подписчикам (ReadyPublisher): ответ для CONSUME — оценка, и стадия может получить ход,
+ * когда товара уже нет (покупатели просто завершат фазу). Стадия без workers не получает ход.
+ * Если работы нет ни у кого, ход получает следующая по порядку стадия — как без очереди.
+ */
+abstract class PhaseScheduler implements StageGate {
+
+    static final int STAGES = 4;
+    private static final int CONSUME = STAGES - 1;
+
+    private final Phaser[] roots = new Phaser[STAGES];
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] turns = new Condition[STAGES];
+
+    // Раунд, в котором стадии дан ход последний раз (-1 — ещё не было)
+    private final AtomicIntegerArray granted = new AtomicIntegerArray(STAGES);
+
+    // Следующий раунд каждой стадии (под lock). Фазу корня здесь не читаем:
+    // корень меняет её уже после onAdvance, а следующая стадия к тому времени может отработать
+    private final int[] rounds = new int[STAGES];
+
+    // Стадия, у которой сейчас ход
+    private volatile int activeStage;
+
+    // Сквозной номер фазы, как у общего Phaser: пропущенные тоже считаются (под lock)
+    private long phaseNumber;
+
+    PhaseScheduler() {
+        for (int stage = 0; stage < STAGES; stage++) {
+            int rootStage = stage;
+            roots[stage] = new Phaser(0) {
+                @Override
+                protected boolean onAdvance(int phase, int registeredParties) {
+                    stageDone(rootStage, phase);
+                    return false; // корень стадии не завершается, даже оставшись без workers
+                }
+            };
+            turns[stage] = lock.newCondition();
+            granted.set(stage, -1);
+        }
+    }
+
+    /**
+     * Есть ли у стадии работа. Вызывается под блокировкой очереди, когда все workers спят;
+     * ReadyBuffer при этом может уменьшаться (доставка подписчикам), остальные буферы не меняются.
+     */
+    protected abstract boolean hasWork(int stage);
+
+    /**
+     * Стадия закончила раунд (вызывается до того, как ход получит следующая)
+     */
+    protected abstract void onPhaseCompleted(int stage, long phaseNumber);
+
+    /**
+     * Фаза пропущена: у стадии не было работы
+     */
+    protected abstract void onPhaseSkipped(int stage, long phaseNumber);
+
+    /**
+     * Пройдена фаза CONSUME
+     */
+    protected abstract void onCycleCompleted();
+
+    /**
+     * Корневой Phaser стадии: под ним дерево групп и листьев PhaserTree
+     */
+    Phaser getRoot(int stage) {
+        return roots[stage];
+    }
+
+    /**
+     * Дать первый ход: стадии stage или следующей за ней стадии с работой.
+     * Вызывается после регистрации workers и до старта потоков.
+     */
+    void start(int stage) {
+        lock.lock();
+        try {
+            phaseNumber = stage;
+            activeStage = stage;
+            for (int s = 0; s < STAGES; s++) {
+                rounds[s] = roots[s].getPhase();
+            }
+            int next = pickFrom(stage);
+            if (next >= 0) {
+                skipTo(stage, next);
+                grant(next);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Раунд стадии закрыт (onAdvance её корня)
+     */
+    private void stageDone(int stage, int phase) {
+        lock.lock();
+        try {
+            rounds[stage] = (phase + 1) & Integer.MAX_VALUE;
+            // Корень сменил фазу вне своего хода: ушёл последний worker стадии, пока она ждала
+            if (stage != activeStage || granted.get(stage) != phase) {
+                return;
+            }
+            onPhaseCompleted(stage, phaseNumber++);
+            if (stage == CONSUME) {
+                onCycleCompleted();
+            }
+            int first = (stage + 1) % STAGES;
+            int next = pickFrom(first);
+            if (next < 0) {
+                return; // workers не осталось ни у одной стадии — фабрика останавливается
+            }
+            skipTo(first, next);
+            grant(next);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Первая начиная с first стадия с workers и работой; если работы нет нигде —
+     * первая с workers; -1 — workers нет совсем
+     */
+    private int pickFrom(int first) {
+        int fallback = -1;
+        for (int i = 0; i < STAGES; i++) {
+            int stage = (first + i) % STAGES;
+            if (roots[stage].getRegisteredParties() == 0) {
+                continue;
+            }
+            if (hasWork(stage)) {
+                return stage;
+            }
+            if (fallback < 0) {
+                fallback = stage;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Пропустить фазы от first до next (не включая next)
+     */
+    private void skipTo(int first, int next) {
+        for (int stage = first; stage != next; stage = (stage + 1) % STAGES) {
+            onPhaseSkipped(stage, phaseNumber++);
+            if (stage == CONSUME) {
+                onCycleCompleted();
+            }
+        }
+    }
+
+    private void grant(int stage) {
+        activeStage = stage;
+        granted.set(stage, rounds[stage]);
+        turns[stage].signalAll();
+    }
+
+    @Override
+    public void awaitTurn(int stage, int round) throws InterruptedException {
+        if (granted.get(stage) == round) {
+            return;
+        }
+        lock.lockInterruptibly();
+        try {
+            while (granted.get(stage) != round) {
+                turns[stage].await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Стадия, у которой сейчас ход (0..3)
+     */
+    int getActiveStage() {
+        return activeStage;
+    }
+}
@@ -0,0 +1,86 @@
+package com.teafactory.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+
+/**
+ * Многоуровневый Phaser для фазового режима: корень стадии → узел группы → листья.
+ * ✔ Корней четыре, по одному на стадию (их раздаёт PhaseScheduler)
+ * ✔ Группа — стадия одной линии или все покупатели; у каждой свой узел под корнем своей стадии
+ * ✔ В листе не больше LEAF_PARTIES workers: прибытие конкурирует только внутри листа,
+ *   в родителя уходит одно прибытие за лист, в корень — одно за группу
+ * ✔ onAdvance переопределяется только у корней и срабатывает ровно раз на раунд стадии
+ * ✔ Пустой лист сам снимается с родителя (так устроен Phaser) — масштабирование вниз не мешает
+ *
+ * Вызывается под lifecycle-блокировкой фабрики (запуск и масштабирование), поэтому без синхронизации.
+ */
+final class PhaserTree {
+
+    // Сторон в одном листе: дальше CAS по состоянию листа начинает заметно конкурировать
+    static final int LEAF_PARTIES = 32;
+
+    private final PhaseScheduler scheduler;
+    private final boolean registering;
+    private final Map<String, List<Phaser>> groups = new HashMap<>();
+    private final Map<String, Phaser> groupNodes = new HashMap<>();
+
+    /**
+     * @param registering false — конвейер: workers Phaser не используют, join() отдаёт корень без регистрации
+     */
+    PhaserTree(PhaseScheduler scheduler, boolean registering) {
+        this.scheduler = scheduler;
+        this.registering = registering;
+    }
+
+    /**
+     * Зарегистрировать нового worker группы (до старта его потока).
+     *
+     * @return Phaser, с которым worker работает (лист дерева)
+     */
+    Phaser join(int stage, String group) {
+        Phaser root = scheduler.getRoot(stage);
+        if (!registering) {
+            return root;
+        }
+        List<Phaser> leaves = groups.computeIfAbsent(group, key -> new ArrayList<>());
+        Phaser leaf = null;
+        for (Phaser candidate : leaves) {
+            if (candidate.getRegisteredParties() < LEAF_PARTIES) {
+                leaf = candidate;
+                break;
+            }
+        }
+        if (leaf == null) {
+            leaf = new Phaser(groupNodes.computeIfAbsent(group, key -> new Phaser(root)));
+            leaves.add(leaf);
+        }
+        // Первая сторона листа регистрирует лист в узле группы, а узел — в корне
+        leaf.register();
+        return leaf;
+    }
+
+    /**
+     * Группа workers стадии одной линии
+     */
+    static String lineGroup(ProductionLine line, int stage) {
+        return "line-" + line.getNumber() + "-" + stage;
+    }
+
+    /**
+     * Покупатели — одна группа на фабрику
+     */
+    static String buyerGroup() {
+        return "buyers";
+    }
+
+    int getLeafCount() {
+        int count = 0;
+        for (List<Phaser> leaves : groups.values()) {
+            count += leaves.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,181 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.workers.AbstractWorker;
+import com.teafactory.workers.Packer;
+import com.teafactory.workers.RawSupplier;
+import com.teafactory.workers.TeaMaster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Phaser;
+
+/**
+ * Одна линия производства: поставщики → мастер → фасовщик со своими буферами.
+ * Буфер готовой продукции может быть общим для всех линий (LineMode.SHARED).
+ * Число workers каждой стадии может меняться на ходу (автомасштабирование).
+ */
+public class ProductionLine {
+
+    // Стадии линии: SUPPLY, PROCESS, PACK
+    static final int STAGES = 3;
+
+    private static final String[] BASE_NAMES = {"ПОСТАВЩИК", "МАСТЕР", "ФАСОВЩИК"};
+
+    private final int number;
+    private final TeaBuffer rawBuffer;
+    private final TeaBuffer midBuffer;
+    private final TeaBuffer readyBuffer;
+
+    // Workers текущего запуска по стадиям (включая остановленные автомасштабированием)
+    private final List<List<AbstractWorker>> stageWorkers = new ArrayList<>(STAGES);
+    private final int[] created = new int[STAGES];
+
+    /**
+     * @param number номер линии с 1; 0 — единственная линия (имена без суффикса)
+     */
+    ProductionLine(int number, TeaBuffer rawBuffer, TeaBuffer midBuffer, TeaBuffer readyBuffer) {
+        this.number = number;
+        this.rawBuffer = rawBuffer;
+        this.midBuffer = midBuffer;
+        this.readyBuffer = readyBuffer;
+        for (int stage = 0; stage < STAGES; stage++) {
+            stageWorkers.add(new CopyOnWriteArrayList<>());
+        }
+    }
+
+    /**
+     * Создать workers линии для нового запуска
+     */
+    List<AbstractWorker> createWorkers(int supplierCount, int masterCount, int packerCount,
+                                       PhaserTree phasers, EventBus events) {
+        int[] counts = {supplierCount, masterCount, packerCount};
+        List<AbstractWorker> workers = new ArrayList<>();
+        for (int stage = 0; stage < STAGES; stage++) {
+            stageWorkers.get(stage).clear();
+            created[stage] = 0;
+            for (int i = 0; i < counts[stage]; i++) {
+                workers.add(createWorker(stage, counts[stage] > 1, phasers, events));
+            }
+        }
+        return workers;
+    }
+
+    /**
+     * Ещё один worker стадии (0..2) — для автомасштабирования
+     */
+    AbstractWorker createWorker(int stage, PhaserTree phasers, EventBus events) {
+        return createWorker(stage, true, phasers, events);
+    }
+
+    private AbstractWorker createWorker(int stage, boolean numbered, PhaserTree phasers, EventBus events) {
+        String name = name(BASE_NAMES[stage], ++created[stage], numbered);
+        // Worker стадии линии синхронизируется через лист своей группы
+        Phaser phaser = phasers.join(stage, PhaserTree.lineGroup(this, stage));
+        AbstractWorker worker;
+        switch (stage) {
+            case 0: worker = new RawSupplier(name, rawBuffer, phaser, events); break;
+            case 1: worker = new TeaMaster(name, rawBuffer, midBuffer, phaser, events); break;
+            case 2: worker = new Packer(name, midBuffer, readyBuffer, phaser, events); break;
+            default: throw new IllegalArgumentException("Неизвестная стадия линии: " + stage);
+        }
+        stageWorkers.get(stage).add(worker);
+        return worker;
+    }
+
+    /**
+     * ПОСТАВЩИК, ПОСТАВЩИК-2 (второй из нескольких), ПОСТАВЩИК-3.2 (линия 3, второй)
+     */
+    private String name(String base, int index, boolean numbered) {
+        if (number == 0) {
+            return numbered ? base + "-" + index : base;
+        }
+        return numbered ? base + "-" + number + "." + index : base + "-" + number;
+    }
+
+    /**
+     * Последний ещё работающий worker стадии (кандидат на остановку)
+     */
+    AbstractWorker lastActive(int stage) {
+        List<AbstractWorker> workers = stageWorkers.get(stage);
+        for (int i = workers.size() - 1; i >= 0; i--) {
+            if (workers.get(i).isActive()) {
+                return workers.get(i);
+            }
+        }
+        return null;
+    }
+
+    void clearBuffers() {
+        rawBuffer.clear();
+        midBuffer.clear();
+        readyBuffer.clear();
+    }
+
+    /**
+     * Номер линии с 1
+     */
+    public int getNumber() {
+        return Math.max(1, number);
+    }
+
+    /**
+     * Сколько workers стадии (0..2) сейчас работает
+     */
+    public int getActiveCount(int stage) {
+        int active = 0;
+        for (AbstractWorker worker : stageWorkers.get(stage)) {
+            if (worker.isActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Сколько партий линия упаковала за текущий (или последний) запуск
+     */
+    public long getProduced() {
+        long produced = 0;
+        for (AbstractWorker packer : stageWorkers.get(2)) {
+            produced += packer.getDoneCount();
+        }
+        return produced;
+    }
+
+    /**
+     * Workers стадии (0..2), включая уже остановленные
+     */
+    public List<AbstractWorker> getWorkers(int stage) {
+        return Collections.unmodifiableList(stageWorkers.get(stage));
+    }
+
+    /**
+     * Входной буфер стадии (для SUPPLY — null)
+     */
+    TeaBuffer inputOf(int stage) {
+        switch (stage) {
+            case 1: return rawBuffer;
+            case 2: return midBuffer;
+            default: return null;
+        }
+    }
+
+    /**
+     * Выходной буфер стадии
+     */
+    TeaBuffer outputOf(int stage) {
+        switch (stage) {
+            case 0: return rawBuffer;
+            case 1: return midBuffer;
+            default: return readyBuffer;
+        }
+    }
+
+    public TeaBuffer getRawBuffer() { return rawBuffer; }
+    public TeaBuffer getMidBuffer() { return midBuffer; }
+    public TeaBuffer getReadyBuffer() { return readyBuffer; }
+}
@@ -0,0 +1,393 @@
+package com.teafactory.core;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.journal.BatchJournal;
+import com.teafactory.journal.JournalWriter;
+import com.teafactory.metrics.FactoryMetrics;
+import com.teafactory.model.TeaBatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Готовая продукция как реактивный поток (java.util.concurrent.Flow).
+ * ✔ Партия уходит подписчику только под его request(n): без спроса она остаётся в ReadyBuffer
+ * ✔ Каждая партия достаётся одному подписчику, как покупателю; подписчики со спросом — по кругу
+ * ✔ Подписчиков сколько угодно: доставляет один поток на ReadyBuffer, а не поток на подписчика
+ * ✔ Спрос подписчиков давит на фасовщиков: ReadyBuffer заполняется, и Packer ждёт места
+ *   (в фазовом режиме фаза PACK пропускается)
+ *
+ * Подписчики конкурируют за партии с покупателями. onNext вызывается в потоке доставки;
+ * сигналы одному подписчику не пересекаются, даже если у линий свои ReadyBuffer.
+ * Доставленная партия считается купленной: счётчик покупок, метрики, журнал, слушатель покупок.
+ * Подписка переживает остановку фабрики: после перезапуска партии идут дальше.
+ *
+ * Доставка не ждёт хода стадии и в фазовом режиме: ReadyBuffer разбирается в любой момент,
+ * поэтому очередь стадий может дать ход CONSUME, когда товара уже не осталось, —
+ * покупатели тогда сразу завершают фазу.
+ */
+public final class ReadyPublisher implements Flow.Publisher<TeaBatch> {
+
+    private static final int CONSUME = 3;
+
+    // Больше этого доставщик не берёт из буфера за раз, даже при большом спросе
+    private static final int MAX_PORTION = 64;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+
+    // Доставщики ждут спроса здесь; request() будит их
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition demandArrived = lock.newCondition();
+
+    // Доставщики текущего запуска (меняются только под lifecycle фабрики)
+    private final List<Pump> pumps = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    ReadyPublisher() {
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TeaBatch> subscriber) {
+        Objects.requireNonNull(subscriber, "Подписчик не может быть null");
+        Subscription subscription = new Subscription(subscriber);
+        subscriptions.add(subscription);
+        // Под блокировкой сигналов: onNext не начнётся, пока не закончился onSubscribe
+        subscription.signalLock.lock();
+        try {
+            subscriber.onSubscribe(subscription);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+        } finally {
+            subscription.signalLock.unlock();
+        }
+    }
+
+    /**
+     * Завершить все подписки (onComplete). Новые подписчики после этого по-прежнему принимаются.
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.cancel();
+            subscription.terminate(null);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Сколько партий отдано подписчикам за всё время
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Суммарный невыполненный спрос подписчиков (Long.MAX_VALUE — без ограничения)
+     */
+    public long getRequested() {
+        long total = 0;
+        for (Subscription subscription : subscriptions) {
+            total = addCap(total, subscription.requested.get());
+        }
+        return total;
+    }
+
+    /**
+     * Запустить доставщиков: по одному на каждый ReadyBuffer
+     */
+    void start(List<TeaBuffer> readyBuffers, FactoryMetrics metrics, BatchJournal journal, Consumer<TeaBatch> listener) {
+        // Недоставленное прошлым запуском ушло в снимок или очищено вместе с буферами
+        pumps.clear();
+        for (TeaBuffer buffer : readyBuffers) {
+            String name = "ДОСТАВКА-" + buffer.getName();
+            Pump pump = new Pump(buffer, metrics, journal != null ? journal.newWriter(name) : null, listener);
+            Thread thread = new Thread(pump, name);
+            thread.setDaemon(true);
+            pumps.add(pump);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * Остановить доставщиков. Партии, уже взятые из буфера, отдаются подписчику до выхода.
+     */
+    void stop() {
+        threads.forEach(Thread::interrupt);
+        long deadline = System.currentTimeMillis() + 2000;
+        for (Thread thread : threads) {
+            try {
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    /**
+     * Партии, взятые из буфера, но не доставленные (подписчик отменил подписку или упал в onNext), — по буферам.
+     * Читать после stop().
+     */
+    Map<TeaBuffer, List<TeaBatch>> getHeldBatches() {
+        Map<TeaBuffer, List<TeaBatch>> held = new IdentityHashMap<>();
+        for (Pump pump : pumps) {
+            if (!pump.held.isEmpty()) {
+                held.put(pump.buffer, new ArrayList<>(pump.held));
+            }
+        }
+        return held;
+    }
+
+    private void demandChanged() {
+        lock.lock();
+        try {
+            demandArrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Следующий по кругу подписчик со спросом; в reserved — сколько партий за ним закреплено
+     */
+    private Subscription nextWithDemand(int[] reserved) {
+        Object[] snapshot = subscriptions.toArray();
+        int start = Math.floorMod(cursor.getAndIncrement(), Math.max(1, snapshot.length));
+        for (int i = 0; i < snapshot.length; i++) {
+            Subscription subscription = (Subscription) snapshot[(start + i) % snapshot.length];
+            int count = subscription.reserve(MAX_PORTION);
+            if (count > 0) {
+                reserved[0] = count;
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    private static long addCap(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Поток доставки одного ReadyBuffer
+     */
+    private final class Pump implements Runnable {
+
+        private final TeaBuffer buffer;
+        private final FactoryMetrics metrics;
+        private final JournalWriter journal;
+        private final Consumer<TeaBatch> listener;
+
+        // Взяты из буфера, но не доставлены (только поток доставки; после join — фабрика)
+        private final ArrayDeque<TeaBatch> held = new ArrayDeque<>();
+
+        private final int[] reserved = new int[1];
+
+        Pump(TeaBuffer buffer, FactoryMetrics metrics, JournalWriter journal, Consumer<TeaBatch> listener) {
+            this.buffer = buffer;
+            this.metrics = metrics;
+            this.journal = journal;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Subscription subscription = awaitDemand();
+                    int count = reserved[0];
+                    List<TeaBatch> batches;
+                    if (!held.isEmpty()) {
+                        batches = new ArrayList<>(Math.min(count, held.size()));
+                        while (batches.size() < count && !held.isEmpty()) {
+                            batches.add(held.pollFirst());
+                        }
+                    } else {
+                        try {
+                            batches = buffer.takeUpTo(count);
+                        } catch (InterruptedException e) {
+                            subscription.unreserve(count);
+                            return;
+                        }
+                        long now = System.nanoTime();
+                        for (TeaBatch batch : batches) {
+                            batch.traceStart(CONSUME, now);
+                            metrics.recordBufferWait(buffer.getName(), now - batch.getEnqueuedNanos());
+                        }
+                    }
+                    subscription.unreserve(count - batches.size());
+                    deliver(subscription, batches);
+                }
+            } catch (InterruptedException e) {
+                // Остановка фабрики
+            }
+        }
+
+        private Subscription awaitDemand() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                Subscription subscription;
+                while ((subscription = nextWithDemand(reserved)) == null) {
+                    demandArrived.await();
+                }
+                return subscription;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Отдать партии подписчику; если он отменил подписку (в том числе пока доставщик ждал
+         * партии под его спрос) или упал в onNext, остаток ждёт следующего подписчика
+         */
+        private void deliver(Subscription subscription, List<TeaBatch> batches) {
+            subscription.signalLock.lock();
+            try {
+                for (int i = 0; i < batches.size(); i++) {
+                    if (subscription.cancelled || subscription.done) {
+                        held.addAll(batches.subList(i, batches.size()));
+                        return;
+                    }
+                    TeaBatch batch = batches.get(i);
+                    recordDelivered(batch);
+                    try {
+                        subscription.subscriber.onNext(batch);
+                    } catch (RuntimeException e) {
+                        subscription.cancel();
+                        subscription.done = true;
+                    }
+                }
+            } finally {
+                subscription.signalLock.unlock();
+            }
+        }
+
+        private void recordDelivered(TeaBatch batch) {
+            metrics.recordStageDone(CONSUME, batch.getType());
+            metrics.recordPurchase(batch.getCreatedNanos());
+            if (batch.isTraced()) {
+                batch.traceDone(CONSUME, System.nanoTime());
+                metrics.recordTrace(batch);
+            }
+            if (journal != null) {
+                journal.append(batch, CONSUME);
+            }
+            listener.accept(batch);
+            delivered.increment();
+        }
+    }
+
+    /**
+     * Подписка: спрос (request) и сигналы одному подписчику
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super TeaBatch> subscriber;
+
+        // Невыполненный спрос; Long.MAX_VALUE — без ограничения
+        private final AtomicLong requested = new AtomicLong();
+
+        // Сигналы подписчику идут по одному: onSubscribe, onNext, onError, onComplete
+        private final ReentrantLock signalLock = new ReentrantLock();
+
+        private volatile boolean cancelled;
+
+        // Отправлен последний сигнал (под signalLock)
+        private boolean done;
+
+        Subscription(Flow.Subscriber<? super TeaBatch> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled) {
+                return;
+            }
+            if (n <= 0) {
+                cancel();
+                terminate(new IllegalArgumentException("request(n): n должно быть > 0, получено " + n));
+                return;
+            }
+            requested.accumulateAndGet(n, ReadyPublisher::addCap);
+            demandChanged();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            requested.set(0);
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Закрепить за доставщиком не больше max партий спроса
+         */
+        int reserve(int max) {
+            while (!cancelled) {
+                long current = requested.get();
+                if (current == 0) {
+                    return 0;
+                }
+                if (current == Long.MAX_VALUE) {
+                    return max;
+                }
+                int count = (int) Math.min(current, max);
+                if (requested.compareAndSet(current, current - count)) {
+                    return count;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Вернуть закреплённый, но не исполненный спрос
+         */
+        void unreserve(int count) {
+            if (count > 0 && !cancelled) {
+                requested.accumulateAndGet(count, ReadyPublisher::addCap);
+                demandChanged();
+            }
+        }
+
+        /**
+         * Последний сигнал: onError(error) или onComplete (error == null)
+         */
+        void terminate(Throwable error) {
+            signalLock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                done = true;
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+            } catch (RuntimeException e) {
+                // Подписчик не должен бросать из onError/onComplete; подписка уже закрыта
+            } finally {
+                signalLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.teafactory.core;
+
+/**
+ * Режим работы фабрики
+ */
+public enum RunMode {
+    /** Фазы SUPPLY → PROCESS → PACK → CONSUME строго по очереди через Phaser */
+    PHASED,
+    /** Все стадии работают одновременно, связаны только ограниченными буферами */
+    PIPELINED
+}
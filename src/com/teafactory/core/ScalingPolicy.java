@@ -0,0 +1,85 @@
+package com.teafactory.core;
+
+/**
+ * Правила автомасштабирования workers.
+ * ✔ Границы min/max по стадиям (SUPPLY, PROCESS, PACK — на линию, CONSUME — на фабрику)
+ * ✔ Гистерезис: разнесённые пороги + сглаживание + несколько замеров подряд
+ * ✔ Пауза (cooldown) после каждого решения, чтобы система успела отреагировать
+ *
+ * Объект неизменяемый: методы with*() возвращают изменённую копию.
+ */
+public final class ScalingPolicy {
+
+    private final int[] minWorkers;
+    private final int[] maxWorkers;
+    private final long intervalMillis;
+    private final long cooldownMillis;
+    private final double upThreshold;
+    private final double downThreshold;
+    private final int confirmSamples;
+
+    private ScalingPolicy(int[] minWorkers, int[] maxWorkers, long intervalMillis, long cooldownMillis,
+                          double upThreshold, double downThreshold, int confirmSamples) {
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.intervalMillis = intervalMillis;
+        this.cooldownMillis = cooldownMillis;
+        this.upThreshold = upThreshold;
+        this.downThreshold = downThreshold;
+        this.confirmSamples = confirmSamples;
+    }
+
+    /**
+     * 1..8 workers на стадию линии, 1..32 покупателя, замер раз в 500 мс,
+     * пауза 3 с, пороги давления 0.7 / 0.2, решение после 3 замеров подряд
+     */
+    public static ScalingPolicy defaults() {
+        return new ScalingPolicy(new int[] {1, 1, 1, 1}, new int[] {8, 8, 8, 32}, 500, 3000, 0.7, 0.2, 3);
+    }
+
+    public ScalingPolicy withBounds(int stage, int min, int max) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Некорректные границы числа workers: " + min + ".." + max);
+        }
+        int[] mins = minWorkers.clone();
+        int[] maxs = maxWorkers.clone();
+        mins[stage] = min;
+        maxs[stage] = max;
+        return new ScalingPolicy(mins, maxs, intervalMillis, cooldownMillis, upThreshold, downThreshold, confirmSamples);
+    }
+
+    public ScalingPolicy withTiming(long intervalMillis, long cooldownMillis) {
+        if (intervalMillis <= 0 || cooldownMillis < 0) {
+            throw new IllegalArgumentException("Некорректный интервал или пауза масштабирования");
+        }
+        return new ScalingPolicy(minWorkers, maxWorkers, intervalMillis, cooldownMillis, upThreshold, downThreshold, confirmSamples);
+    }
+
+    /**
+     * Пороги сглаженного давления на стадию (0..1): выше up — добавить worker, ниже down — убрать
+     */
+    public ScalingPolicy withThresholds(double upThreshold, double downThreshold) {
+        if (downThreshold < 0 || upThreshold > 1 || downThreshold >= upThreshold) {
+            throw new IllegalArgumentException("Нужно 0 <= down < up <= 1");
+        }
+        return new ScalingPolicy(minWorkers, maxWorkers, intervalMillis, cooldownMillis, upThreshold, downThreshold, confirmSamples);
+    }
+
+    /**
+     * Сколько замеров подряд условие должно держаться перед решением
+     */
+    public ScalingPolicy withConfirmSamples(int confirmSamples) {
+        if (confirmSamples < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один замер");
+        }
+        return new ScalingPolicy(minWorkers, maxWorkers, intervalMillis, cooldownMillis, upThreshold, downThreshold, confirmSamples);
+    }
+
+    public int getMinWorkers(int stage) { return minWorkers[stage]; }
+    public int getMaxWorkers(int stage) { return maxWorkers[stage]; }
+    public long getIntervalMillis() { return intervalMillis; }
+    public long getCooldownMillis() { return cooldownMillis; }
+    public double getUpThreshold() { return upThreshold; }
+    public double getDownThreshold() { return downThreshold; }
+    public int getConfirmSamples() { return confirmSamples; }
+}
@@ -1,41 +1,196 @@
 package com.teafactory.core;
 
+import com.teafactory.buffer.BufferType;
 import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
+import com.teafactory.journal.BatchJournal;
+import com.teafactory.metrics.FactoryMetrics;
 import com.teafactory.workers.*;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaDemand;
+import com.teafactory.model.TeaType;
+import com.teafactory.orders.OrderBook;
+import com.teafactory.random.DelayDistribution;
+import com.teafactory.random.RandomSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Phaser;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Главный координатор фабрики с поддержкой перезапуска и статистикой
  */
-public class TeaFactory {
-    private final TeaBuffer rawBuffer;
-    private final TeaBuffer midBuffer;
-    private final TeaBuffer readyBuffer;
+public class TeaFactory implements AutoCloseable {
+    // Реализация и вместимость буферов каждой линии
+    private final BufferType rawType;
+    private final BufferType midType;
+    private final BufferType readyType;
+    private final int rawCapacity;
+    private final int midCapacity;
+    private final int readyCapacity;
 
-    private Phaser phaser;
-    private List<Thread> threads;
-    private List<AbstractWorker> workers;
+    // Линии производства (пересоздаются при смене их числа или режима)
+    private volatile List<ProductionLine> lines;
+    private int lineCount = 1;
+    private LineMode lineMode = LineMode.SHARED;
+    private LineMode builtLineMode;
+    private int[] builtConsumers;
 
-    private final Consumer<String> logger;
+    // Очередь стадий (корни Phaser по стадиям) и дерево Phaser: workers работают с его листьями
+    private volatile PhaseScheduler scheduler;
+    private PhaserTree phasers;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final List<AbstractWorker> workers = new CopyOnWriteArrayList<>();
 
-    // Статистика
-    private long startTime;
-    private long totalRuntime;
-    private int cyclesCompleted;
+    // Запуск, остановка и масштабирование не пересекаются
+    private final ReentrantLock lifecycle = new ReentrantLock();
+
+    // Покупатели текущего запуска и общий для них слушатель покупок
+    private final List<Buyer> buyers = new CopyOnWriteArrayList<>();
+    private Consumer<TeaBatch> buyerListener;
+    private int buyersCreated;
+
+    // Сколько покупателей уже получили профиль спроса у каждого склада готовой продукции
+    private final Map<TeaBuffer, Integer> demandSlots = new IdentityHashMap<>();
+
+    // Автомасштабирование (null — выключено)
+    private ScalingPolicy scalingPolicy;
+    private Autoscaler autoscaler;
+
+    private final EventBus events;
+
+    // Готовая продукция для подписчиков Flow (подписки переживают перезапуск)
+    private final ReadyPublisher readyPublisher = new ReadyPublisher();
+
+    private final FactoryMetrics metrics = new FactoryMetrics(this::getRuntimeMillis);
+
+    // Момент предыдущей смены фазы (пишет только поток, завершающий фазу)
+    private long lastAdvanceNanos;
+
+    // Фаза в момент последней остановки (для снимка)
+    private int stoppedPhase;
+
+    // Статистика (volatile/atomic — читается мониторами без блокировок)
+    private volatile long startTime;
+    private volatile long totalRuntime;
+    private volatile int cyclesCompleted;
+    private final LongAdder purchases = new LongAdder();
     private volatile boolean isRunning = false;
 
+    // Размер пакета для операций workers с буферами (1 — поштучно)
+    private int workerBatchSize = 1;
+
+    private RunMode runMode = RunMode.PHASED;
+
+    // Откуда берутся потоки для workers (по умолчанию — обычные потоки)
+    private ThreadFactory threadFactory = ThreadMode.PLATFORM.threadFactory();
+
+    private ThreadMode threadMode = ThreadMode.PLATFORM;
+
+    // Workers на линию (поставщики, мастера, фасовщики) и покупатели на фабрику
+    private int supplierCount = 1;
+    private int masterCount = 1;
+    private int packerCount = 1;
+    private int buyerCount = 3;
+
+    // Распределение задержки работы по стадиям
+    private final DelayDistribution[] delays = new DelayDistribution[FactoryConfig.STAGES];
+
+    // Каталог бинарного журнала партий (null — журнал не пишется) и журнал текущего запуска
+    private Path journalDirectory;
+    private BatchJournal journal;
+
+    // Доля трассируемых партий (0 — трассировка выключена)
+    private double traceSample;
+
+    // Какие сорта хотят покупатели
+    private TeaDemand buyerDemand = TeaDemand.ANY;
+
+    // Главный seed (null — новый при каждом запуске) и случайность текущего запуска
+    private Long seed;
+    private volatile RandomSource randomSource;
+
+    private Consumer<TeaBatch> purchaseListener = batch -> { };
+
+    /**
+     * @param logger получатель текстового лога; null — без текстового лога
+     *               (события по-прежнему доступны через getEvents())
+     */
     public TeaFactory(Consumer<String> logger) {
-        this.logger = logger;
+        this(logger, BufferType.LOCKING, BufferType.LOCKING, BufferType.LOCKING);
+    }
 
-        this.rawBuffer = new TeaBuffer(5, "RawBuffer");
-        this.midBuffer = new TeaBuffer(3, "MidBuffer");
-        this.readyBuffer = new TeaBuffer(4, "ReadyBuffer");
+    /**
+     * Фабрика с выбором реализации для каждого буфера
+     */
+    public TeaFactory(Consumer<String> logger, BufferType rawType, BufferType midType, BufferType readyType) {
+        this(logger, rawType, midType, readyType, 5, 3, 4);
+    }
 
-        this.threads = new ArrayList<>();
-        this.workers = new ArrayList<>();
+    /**
+     * Фабрика с выбором реализации и вместимости каждого буфера
+     */
+    public TeaFactory(Consumer<String> logger,
+                      BufferType rawType, BufferType midType, BufferType readyType,
+                      int rawCapacity, int midCapacity, int readyCapacity) {
+        this(logger, FactoryConfig.builder()
+                .buffer(FactoryConfig.RAW, rawType, rawCapacity)
+                .buffer(FactoryConfig.MID, midType, midCapacity)
+                .buffer(FactoryConfig.READY, readyType, readyCapacity)
+                .build());
+    }
+
+    /**
+     * Фабрика по готовой топологии (из кода или из файла)
+     */
+    public TeaFactory(Consumer<String> logger, FactoryConfig config) {
+        this.events = new EventBus();
+        if (logger != null) {
+            events.subscribe(event -> logger.accept(event.format()));
+        }
+
+        this.rawType = config.getBufferType(FactoryConfig.RAW);
+        this.midType = config.getBufferType(FactoryConfig.MID);
+        this.readyType = config.getBufferType(FactoryConfig.READY);
+        this.rawCapacity = config.getCapacity(FactoryConfig.RAW);
+        this.midCapacity = config.getCapacity(FactoryConfig.MID);
+        this.readyCapacity = config.getCapacity(FactoryConfig.READY);
+
+        this.lineCount = config.getLineCount();
+        this.lineMode = config.getLineMode();
+        this.runMode = config.getRunMode();
+        setThreadMode(config.getThreadMode());
+        this.workerBatchSize = config.getBatchSize();
+        this.supplierCount = config.getWorkerCount(0);
+        this.masterCount = config.getWorkerCount(1);
+        this.packerCount = config.getWorkerCount(2);
+        this.buyerCount = config.getWorkerCount(3);
+        for (int stage = 0; stage < FactoryConfig.STAGES; stage++) {
+            delays[stage] = config.getDelay(stage);
+        }
+        this.scalingPolicy = config.getScalingPolicy();
+        this.seed = config.getSeed();
+        this.journalDirectory = config.getJournalDirectory();
+        this.traceSample = config.getTraceSample();
+        this.buyerDemand = config.getDemand();
+
+        this.lines = buildLines();
 
         log("🏭 Фабрика инициализирована");
     }
@@ -44,73 +199,189 @@ public class TeaFactory {
      * Запуск или перезапуск фабрики
      */
     public void start() {
+        lifecycle.lock();
+        try {
+            startLocked(null);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * @param checkpoint снимок, с которого продолжить; null — запуск с пустыми буферами
+     */
+    private void startLocked(FactoryCheckpoint checkpoint) {
         if (isRunning) {
             log("⚠️ Фабрика уже работает!");
             return;
         }
 
-        log("🚀 Запуск фабрики...");
+        // Очищаем буферы перед новым запуском (или строим линии заново)
+        if (lines.size() != lineCount || builtLineMode != lineMode || shardsOutdated()) {
+            lines = buildLines();
+        } else {
+            lines.forEach(ProductionLine::clearBuffers);
+        }
+        FactoryConfig.checkDemand(buyerDemand, readyType, lineMode, lineCount, buyerCount);
+        List<TeaBuffer> buffers = distinctBuffers();
+        if (checkpoint != null) {
+            checkpoint.checkTopology(buffers);
+        }
 
-        // Очищаем буферы перед новым запуском
-        rawBuffer.clear();
-        midBuffer.clear();
-        readyBuffer.clear();
+        // Журнал, оставленный открытым перезапуском снимка, продолжается; новый запуск начинает с чистого
+        if (journalDirectory != null && journal == null) {
+            try {
+                journal = BatchJournal.open(journalDirectory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось открыть журнал " + journalDirectory, e);
+            }
+        }
+
+        randomSource = new RandomSource(seed != null ? seed : RandomSource.newSeed());
+        log(String.format("🚀 Запуск фабрики (режим %s, линий: %d, seed: %d)...",
+                runMode, lineCount, randomSource.getSeed()));
+
+        // Новая очередь стадий: фазы без работы пропускаются, их workers не просыпаются
+        scheduler = new PhaseScheduler() {
+            @Override
+            protected boolean hasWork(int stage) {
+                return stageHasWork(stage);
+            }
 
-        // Создаём новый Phaser
-        phaser = new Phaser(0) {
             @Override
-            protected boolean onAdvance(int phase, int registeredParties) {
-                String phaseName = getPhaseName(phase);
-                logger.accept(String.format("━━━━━━━━ ФАЗА %d (%s) ЗАВЕРШЕНА ━━━━━━━━", phase, phaseName));
-
-                // Считаем полный цикл только после завершения фазы 3 (CONSUME)
-                if (phase % 4 == 3) {
-                    cyclesCompleted++;
-                    logger.accept(String.format("🔄 Завершён цикл #%d", cyclesCompleted));
+            protected void onPhaseCompleted(int stage, long phaseNumber) {
+                long now = System.nanoTime();
+                metrics.recordPhase(now - lastAdvanceNanos);
+                lastAdvanceNanos = now;
+
+                if (events.isEnabled(EventKind.PHASE_COMPLETED)) {
+                    events.publish(null, EventKind.PHASE_COMPLETED,
+                            String.format("━━━━━━━━ ФАЗА %d (%s) ЗАВЕРШЕНА ━━━━━━━━", phaseNumber, phaseName(stage)));
                 }
+            }
 
-                return false; // продолжаем работу
+            @Override
+            protected void onPhaseSkipped(int stage, long phaseNumber) {
+                metrics.recordPhaseSkipped();
+                if (events.isEnabled(EventKind.PHASE_SKIPPED)) {
+                    events.publish(null, EventKind.PHASE_SKIPPED,
+                            String.format("⏭️ Фаза %d (%s) пропущена: работы нет", phaseNumber, phaseName(stage)));
+                }
+            }
+
+            @Override
+            protected void onCycleCompleted() {
+                // Цикл — проход через CONSUME, выполненную или пропущенную
+                cyclesCompleted++;
+                events.publish(null, EventKind.CYCLE_COMPLETED, "🔄 Завершён цикл #{count}", cyclesCompleted);
             }
         };
+        phasers = new PhaserTree(scheduler, runMode == RunMode.PHASED);
 
         // Очищаем старые данные
         threads.clear();
         workers.clear();
+        buyers.clear();
 
-        // Создаём workers
-        RawSupplier supplier = new RawSupplier(rawBuffer, phaser, logger);
-        TeaMaster master = new TeaMaster(rawBuffer, midBuffer, phaser, logger);
-        Packer packer = new Packer(midBuffer, readyBuffer, phaser, logger);
+        // Создаём workers: цепочки линий, затем покупатели. В фазовом режиме каждый
+        // регистрируется в листе дерева Phaser до старта потоков: фаза не сменится,
+        // пока каждый worker не отметится в ней хотя бы раз
+        for (ProductionLine line : lines) {
+            workers.addAll(line.createWorkers(supplierCount, masterCount, packerCount, phasers, events));
+        }
 
-        Buyer buyer1 = new Buyer("ПОКУПАТЕЛЬ-1", readyBuffer, phaser, logger);
-        Buyer buyer2 = new Buyer("ПОКУПАТЕЛЬ-2", readyBuffer, phaser, logger);
-        Buyer buyer3 = new Buyer("ПОКУПАТЕЛЬ-3", readyBuffer, phaser, logger);
+        // Счётчик покупок фабрики + внешний слушатель
+        Consumer<TeaBatch> external = purchaseListener;
+        buyerListener = batch -> {
+            purchases.increment();
+            external.accept(batch);
+        };
+        buyersCreated = 0;
+        demandSlots.clear();
+        for (int i = 0; i < buyerCount; i++) {
+            // Покупатели распределяются по линиям по кругу (при общем буфере линия одна и та же)
+            workers.add(createBuyer(lines.get(i % lines.size())));
+        }
+
+        workers.forEach(this::configure);
+
+        if (checkpoint != null) {
+            restoreState(checkpoint, buffers);
+        }
 
-        workers.add(supplier);
-        workers.add(master);
-        workers.add(packer);
-        workers.add(buyer1);
-        workers.add(buyer2);
-        workers.add(buyer3);
+        // Первый ход — стадии, на которой остановился снимок (или SUPPLY)
+        if (runMode == RunMode.PHASED) {
+            scheduler.start(checkpoint != null ? checkpoint.getPhase() : 0);
+        }
 
         // Создаём потоки
         for (AbstractWorker worker : workers) {
-            Thread thread = new Thread(worker);
+            Thread thread = threadFactory.newThread(worker);
             threads.add(thread);
         }
 
         // Запускаем потоки
         startTime = System.currentTimeMillis();
+        lastAdvanceNanos = System.nanoTime();
         isRunning = true;
         threads.forEach(Thread::start);
+        readyPublisher.start(readyBuffers(), metrics, journal, buyerListener);
+
+        if (scalingPolicy != null) {
+            autoscaler = new Autoscaler(this, scalingPolicy, events);
+            autoscaler.start();
+        }
 
-        log(String.format("✅ Фабрика запущена! Активных потоков: %d", threads.size()));
+        if (runMode == RunMode.PHASED) {
+            log(String.format("✅ Фабрика запущена! Активных потоков: %d, листьев Phaser: %d",
+                    threads.size(), phasers.getLeafCount()));
+        } else {
+            log(String.format("✅ Фабрика запущена! Активных потоков: %d", threads.size()));
+        }
     }
 
     /**
      * Остановка фабрики
      */
     public void stop() {
+        lifecycle.lock();
+        try {
+            stopLocked();
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Завершить работу фабрики: остановить её, если работает, и диспетчер шины событий.
+     * После close() фабрику не запускают.
+     */
+    @Override
+    public void close() {
+        lifecycle.lock();
+        try {
+            if (isRunning) {
+                stopLocked();
+            }
+            // Перезапуск снимка мог не состояться, оставив журнал открытым
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        } finally {
+            lifecycle.unlock();
+        }
+        events.close();
+    }
+
+    private void stopLocked() {
+        stopLocked(false);
+    }
+
+    /**
+     * @param restarting остановка на время снимка: журнал остаётся открытым для следующего запуска
+     */
+    private void stopLocked(boolean restarting) {
         if (!isRunning) {
             log("⚠️ Фабрика уже остановлена!");
             return;
@@ -118,23 +389,43 @@ public class TeaFactory {
 
         log("🛑 Остановка фабрики...");
 
+        stoppedPhase = getCurrentPhase();
         isRunning = false;
 
+        // Автомасштабирование останавливаем первым: дальше состав workers не меняется
+        if (autoscaler != null) {
+            autoscaler.stop();
+            autoscaler = null;
+        }
+
+        // Доставка подписчикам больше не берёт из ReadyBuffer
+        readyPublisher.stop();
+
         // Останавливаем всех workers
         workers.forEach(AbstractWorker::stop);
 
         // Прерываем потоки
         threads.forEach(Thread::interrupt);
 
-        // Ждём завершения
+        // Ждём завершения: общий дедлайн, а не 2 секунды на каждый из тысяч потоков
+        long deadline = System.currentTimeMillis() + 2000;
         for (Thread thread : threads) {
             try {
-                thread.join(2000);
+                thread.join(Math.max(1, deadline - System.currentTimeMillis()));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
 
+        // Потоки остановлены — сбрасываем журнал на диск
+        if (journal != null && restarting) {
+            journal.flush();
+        } else if (journal != null) {
+            journal.close();
+            log("📒 Журнал партий: " + journal);
+            journal = null;
+        }
+
         // Обновляем статистику
         totalRuntime += (System.currentTimeMillis() - startTime);
 
@@ -142,14 +433,389 @@ public class TeaFactory {
         logStatistics();
     }
 
+    // ─────────── Снимок и восстановление ───────────
+
+    /**
+     * Сохранить состояние в файл: буферы, партии на руках у workers, счётчики,
+     * фазу и последовательность id партий. Работающая фабрика на время снимка
+     * останавливается и продолжает с того же места — ни одна партия не теряется и не повторяется.
+     */
+    public FactoryCheckpoint checkpoint(Path file) throws IOException {
+        FactoryCheckpoint checkpoint;
+        lifecycle.lock();
+        try {
+            boolean wasRunning = isRunning;
+            if (wasRunning) {
+                stopLocked(true);
+            }
+            checkpoint = captureLocked();
+            if (wasRunning) {
+                startLocked(checkpoint);
+            }
+        } finally {
+            lifecycle.unlock();
+        }
+        // Файл пишется, когда фабрика уже снова работает
+        checkpoint.write(file);
+        log("💾 Снимок сохранён в " + file + ": " + checkpoint);
+        return checkpoint;
+    }
+
+    /**
+     * Запустить остановленную фабрику с состояния из снимка.
+     * Буферы фабрики должны совпадать со снимком (та же топология).
+     */
+    public void restore(FactoryCheckpoint checkpoint) {
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Снимок не может быть null");
+        }
+        lifecycle.lock();
+        try {
+            if (isRunning) {
+                throw new IllegalStateException("Восстанавливать можно только остановленную фабрику");
+            }
+            startLocked(checkpoint);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Новая фабрика по топологии из снимка, запущенная с сохранённого состояния
+     */
+    public static TeaFactory restore(Consumer<String> logger, Path file) throws IOException {
+        FactoryCheckpoint checkpoint = FactoryCheckpoint.read(file);
+        TeaFactory factory = new TeaFactory(logger, checkpoint.getConfig());
+        factory.restore(checkpoint);
+        return factory;
+    }
+
+    /**
+     * Состояние остановленной фабрики. Буферы и workers не меняются — снимок можно снимать повторно.
+     */
+    private FactoryCheckpoint captureLocked() {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                throw new IllegalStateException("Поток " + thread.getName() + " не остановился — снимок был бы неполным");
+            }
+        }
+
+        long now = System.nanoTime();
+        List<TeaBuffer> buffers = distinctBuffers();
+        Map<TeaBuffer, List<TeaBatch>> contents = new IdentityHashMap<>();
+        Set<Integer> ids = new HashSet<>();
+        for (TeaBuffer buffer : buffers) {
+            List<TeaBatch> batches = new ArrayList<>(buffer.getCapacity());
+            buffer.drainTo(batches, Integer.MAX_VALUE);
+            // Возвращаем на место: остановленная фабрика остаётся как была
+            for (TeaBatch batch : batches) {
+                buffer.offer(batch);
+                ids.add(batch.getId());
+            }
+            contents.put(buffer, batches);
+        }
+
+        // Партии на руках возвращаются в буфер своей стадии
+        for (AbstractWorker worker : workers) {
+            for (TeaBatch batch : worker.getHeldBatches()) {
+                if (ids.add(batch.getId())) {
+                    contents.get(bufferFor(worker, batch)).add(batch);
+                }
+            }
+        }
+        // Не доставленные подписчикам — обратно в ReadyBuffer, из которого взяты
+        for (Map.Entry<TeaBuffer, List<TeaBatch>> held : readyPublisher.getHeldBatches().entrySet()) {
+            for (TeaBatch batch : held.getValue()) {
+                if (ids.add(batch.getId())) {
+                    contents.get(held.getKey()).add(batch);
+                }
+            }
+        }
+
+        List<FactoryCheckpoint.BufferState> states = new ArrayList<>(buffers.size());
+        for (TeaBuffer buffer : buffers) {
+            List<TeaBatch> batches = contents.get(buffer);
+            // Старые партии — первыми
+            batches.sort(Comparator.comparingInt(TeaBatch::getId));
+            states.add(FactoryCheckpoint.BufferState.of(buffer, batches, now));
+        }
+
+        long[][] typeCounts = new long[FactoryMetrics.STAGES][TeaType.values().length];
+        for (int stage = 0; stage < typeCounts.length; stage++) {
+            for (TeaType type : TeaType.values()) {
+                typeCounts[stage][type.ordinal()] = metrics.getTypeCount(stage, type);
+            }
+        }
+        return new FactoryCheckpoint(toConfig(), System.currentTimeMillis(), TeaBatch.getIdSequence(),
+                runMode == RunMode.PHASED ? stoppedPhase : 0, cyclesCompleted, purchases.sum(), totalRuntime,
+                typeCounts, states);
+    }
+
+    /**
+     * Заполнить буферы и счётчики из снимка (workers созданы, потоки ещё не запущены).
+     * Партии сверх вместимости буфера отдаются первому его производителю как отложенные.
+     */
+    private void restoreState(FactoryCheckpoint checkpoint, List<TeaBuffer> buffers) {
+        TeaBatch.advanceIdSequence(checkpoint.getIdSequence());
+        cyclesCompleted = checkpoint.getCyclesCompleted();
+        purchases.reset();
+        purchases.add(checkpoint.getPurchases());
+        totalRuntime = checkpoint.getRuntimeMillis();
+        metrics.restoreCounts(checkpoint.getTypeCounts());
+
+        long now = System.nanoTime();
+        int restored = 0;
+        int deferred = 0;
+        for (int i = 0; i < buffers.size(); i++) {
+            TeaBuffer buffer = buffers.get(i);
+            List<TeaBatch> batches = checkpoint.getBuffers().get(i).toBatches(now);
+            int added = 0;
+            while (added < batches.size()) {
+                TeaBatch batch = batches.get(added);
+                batch.markEnqueued();
+                if (!buffer.offer(batch)) {
+                    break;
+                }
+                added++;
+            }
+            if (added < batches.size()) {
+                producerOf(buffer).restorePending(batches.subList(added, batches.size()));
+                deferred += batches.size() - added;
+            }
+            restored += batches.size();
+        }
+        log(String.format("♻️ Восстановлено из снимка: партий %d (ждут места в буфере: %d), фаза %s, последний id %d",
+                restored, deferred, phaseName(checkpoint.getPhase()), checkpoint.getIdSequence()));
+    }
+
+    /**
+     * Буферы всех линий по порядку: Raw, Mid, Ready каждой линии (общий Ready — один раз)
+     */
+    private List<TeaBuffer> distinctBuffers() {
+        Set<TeaBuffer> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<TeaBuffer> buffers = new ArrayList<>();
+        for (ProductionLine line : lines) {
+            for (TeaBuffer buffer : new TeaBuffer[]{line.getRawBuffer(), line.getMidBuffer(), line.getReadyBuffer()}) {
+                if (seen.add(buffer)) {
+                    buffers.add(buffer);
+                }
+            }
+        }
+        return buffers;
+    }
+
+    /**
+     * Куда вернуть партию с рук worker: буфер его линии по стадии партии
+     */
+    private TeaBuffer bufferFor(AbstractWorker worker, TeaBatch batch) {
+        if (worker instanceof Buyer) {
+            return ((Buyer) worker).getReadyBuffer();
+        }
+        ProductionLine line = lines.get(0);
+        for (ProductionLine candidate : lines) {
+            if (candidate.getWorkers(worker.getWorkPhase()).contains(worker)) {
+                line = candidate;
+                break;
+            }
+        }
+        switch (batch.getStage()) {
+            case "RAW": return line.getRawBuffer();
+            case "PROCESSED": return line.getMidBuffer();
+            default: return line.getReadyBuffer();
+        }
+    }
+
+    /**
+     * Первый worker, который кладёт в буфер
+     */
+    private AbstractWorker producerOf(TeaBuffer buffer) {
+        for (ProductionLine line : lines) {
+            if (line.getRawBuffer() == buffer) {
+                return line.getWorkers(0).get(0);
+            }
+            if (line.getMidBuffer() == buffer) {
+                return line.getWorkers(1).get(0);
+            }
+            if (line.getReadyBuffer() == buffer) {
+                return line.getWorkers(2).get(0);
+            }
+        }
+        throw new IllegalStateException("Буфер не принадлежит фабрике: " + buffer.getName());
+    }
+
+    private Buyer createBuyer(ProductionLine home) {
+        Buyer buyer = new Buyer("ПОКУПАТЕЛЬ-" + (++buyersCreated), home.getReadyBuffer(),
+                phasers.join(3, PhaserTree.buyerGroup()), events);
+        buyer.setPurchaseListener(buyerListener);
+        if (lineMode == LineMode.PARTITIONED && lines.size() > 1) {
+            buyer.setOtherLines(otherReadyBuffers(home));
+        }
+        if (!buyerDemand.isAny()) {
+            // Профили раздаются по кругу среди покупателей одного склада
+            int slot = demandSlots.merge(home.getReadyBuffer(), 1, Integer::sum) - 1;
+            buyer.setDemand(buyerDemand.profileFor(slot));
+        }
+        buyers.add(buyer);
+        return buyer;
+    }
+
+    private void configure(AbstractWorker worker) {
+        worker.setBatchSize(workerBatchSize);
+        worker.setPipelined(runMode == RunMode.PIPELINED);
+        worker.setDelay(delays[worker.getWorkPhase()]);
+        // Потоки выдаются в порядке создания workers — тот же seed даёт ту же нагрузку
+        worker.setRandom(randomSource.split());
+        if (journal != null) {
+            worker.setJournal(journal.newWriter(worker.getWorkerName()));
+        }
+        worker.setTraceEvery(traceEvery());
+        worker.setMetrics(metrics);
+        worker.setStageGate(runMode == RunMode.PHASED ? scheduler : null);
+    }
+
+    /**
+     * Есть ли работа у стадии — решение очереди стадий (все workers в этот момент ждут хода).
+     * ✔ SUPPLY — есть место в RawBuffer
+     * ✔ PROCESS, PACK — есть что взять (или отложенные партии) и есть место на выходе
+     * ✔ CONSUME — есть товар в ReadyBuffer хотя бы одной линии; у книги заявок —
+     *   партии, доставленные заявкам, или товар на складе и покупатель без заявки
+     */
+    private boolean stageHasWork(int stage) {
+        for (ProductionLine line : lines) {
+            if (stage == 3) {
+                if (canBuy(line.getReadyBuffer())) {
+                    return true;
+                }
+                continue;
+            }
+            TeaBuffer output = line.outputOf(stage);
+            if (output.size() >= output.getCapacity()) {
+                continue;
+            }
+            TeaBuffer input = line.inputOf(stage);
+            if (input == null || input.size() > 0) {
+                return true;
+            }
+            // И остановленные автомасштабированием: они ещё отдают отложенное в свои фазы
+            for (AbstractWorker worker : line.getWorkers(stage)) {
+                if (worker.hasPending()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean canBuy(TeaBuffer ready) {
+        if (!(ready instanceof OrderBook)) {
+            return ready.size() > 0;
+        }
+        OrderBook book = (OrderBook) ready;
+        if (book.hasUndeliveredFills()) {
+            return true;
+        }
+        if (book.size() == 0) {
+            return false;
+        }
+        // Товар на складе не подошёл ни одной открытой заявке — купить его может только новая
+        for (Buyer buyer : buyers) {
+            if (buyer.isActive() && buyer.getReadyBuffer() == ready && !buyer.hasOpenOrder()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ─────────── Масштабирование на ходу (вызывает Autoscaler) ───────────
+
+    /**
+     * Добавить worker стадии. Для CONSUME line — линия, к которой привязать покупателя.
+     *
+     * @return новый worker или null, если фабрика останавливается
+     */
+    AbstractWorker addWorker(ProductionLine line, int stage) {
+        if (!lifecycle.tryLock()) {
+            return null; // идёт запуск или остановка — решение отложится до следующего замера
+        }
+        try {
+            if (!isRunning) {
+                return null;
+            }
+            // Новая сторона листа Phaser регистрируется при создании — до старта потока, как и при запуске
+            AbstractWorker worker = stage == 3 ? createBuyer(line) : line.createWorker(stage, phasers, events);
+            configure(worker);
+            workers.add(worker);
+
+            Thread thread = threadFactory.newThread(worker);
+            threads.add(thread);
+            thread.start();
+            return worker;
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Остановить последний работающий worker стадии.
+     * Поток доделывает текущую партию, отдаёт отложенные партии и выходит; в фазовом режиме он снимает
+     * регистрацию в Phaser сам (arriveAndDeregister), поэтому учёт сторон не ломается.
+     * В конвейере поток, ждущий на пустом буфере, выйдет после следующей партии.
+     *
+     * @return остановленный worker или null
+     */
+    AbstractWorker removeWorker(ProductionLine line, int stage) {
+        if (!lifecycle.tryLock()) {
+            return null;
+        }
+        try {
+            if (!isRunning) {
+                return null;
+            }
+            AbstractWorker worker = stage == 3 ? lastActiveBuyer() : line.lastActive(stage);
+            if (worker != null) {
+                worker.stop();
+            }
+            return worker;
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Последний работающий покупатель, без которого все сорта его склада по-прежнему кому-то нужны
+     */
+    private AbstractWorker lastActiveBuyer() {
+        for (int i = buyers.size() - 1; i >= 0; i--) {
+            Buyer buyer = buyers.get(i);
+            if (buyer.isActive() && (buyerDemand.isAny() || coveredWithout(buyer))) {
+                return buyer;
+            }
+        }
+        return null;
+    }
+
+    private boolean coveredWithout(Buyer removed) {
+        Set<TeaType> uncovered = EnumSet.allOf(TeaType.class);
+        for (Buyer buyer : buyers) {
+            if (buyer != removed && buyer.isActive() && buyer.getReadyBuffer() == removed.getReadyBuffer()) {
+                uncovered.removeAll(buyer.getDemand());
+            }
+        }
+        return uncovered.isEmpty();
+    }
+
+    /**
+     * Покупатели текущего запуска, включая остановленные
+     */
+    List<Buyer> getBuyers() {
+        return buyers;
+    }
+
     /**
      * Вывод статистики
      */
     private void logStatistics() {
-        int totalPurchases = workers.stream()
-                .filter(w -> w instanceof Buyer)
-                .mapToInt(w -> ((Buyer) w).getPurchaseCount())
-                .sum();
+        long totalPurchases = getTotalPurchases();
 
         double runtimeSeconds = totalRuntime / 1000.0;
 
@@ -161,12 +827,54 @@ public class TeaFactory {
         if (runtimeSeconds > 0) {
             double throughput = totalPurchases / runtimeSeconds;
             log(String.format("   ⚡ Производительность: %.2f партий/сек", throughput));
+            log(String.format("   📈 Покупок/сек за последние 1 / 10 / 60 с: %.1f / %.1f / %.1f",
+                    metrics.getStageRate(3, 1), metrics.getStageRate(3, 10), metrics.getStageRate(3, 60)));
+        }
+
+        log(String.format("   ⏳ Задержка партии: %s", metrics.batchLatency().describeMillis()));
+        if (metrics.getOrderCount() > 0) {
+            log(String.format("   📑 Заявок: %d, исполнено партий: %.1f%%", metrics.getOrderCount(), metrics.getFillRate() * 100));
+            log(String.format("   ⏳ Исполнение заявки: %s", metrics.orderLatency().describeMillis()));
+        }
+        if (readyPublisher.getDeliveredCount() > 0) {
+            log(String.format("   📡 Доставлено подписчикам: %d", readyPublisher.getDeliveredCount()));
+        }
+        if (runMode == RunMode.PHASED) {
+            log(String.format("   🔁 Длительность фазы: %s", metrics.phaseDuration().describeMillis()));
+            log(String.format("   ⏭️  Пропущено фаз без работы: %d", metrics.getSkippedPhases()));
+        }
+        if (metrics.getTracedCount() > 0) {
+            log(String.format("   🔍 Трассировка (партий: %d):", metrics.getTracedCount()));
+            for (int stage = 0; stage < FactoryMetrics.STAGES; stage++) {
+                log(String.format("      • %s в работе: %s", phaseName(stage), metrics.tracedService(stage).describeMillis()));
+                if (stage < FactoryMetrics.STAGES - 1) {
+                    log(String.format("      • %s → очередь: %s", phaseName(stage), metrics.tracedQueue(stage).describeMillis()));
+                }
+            }
+            for (TeaType type : TeaType.values()) {
+                if (metrics.tracedTotal(type).getCount() > 0) {
+                    log(String.format("      • %s от создания до покупки: %s",
+                            type.getDisplayName(), metrics.tracedTotal(type).describeMillis()));
+                }
+            }
         }
 
         log("   📈 Статус буферов:");
-        log(String.format("      • Raw Buffer: %d/%d", rawBuffer.size(), rawBuffer.getCapacity()));
-        log(String.format("      • Mid Buffer: %d/%d", midBuffer.size(), midBuffer.getCapacity()));
-        log(String.format("      • Ready Buffer: %d/%d", readyBuffer.size(), readyBuffer.getCapacity()));
+        if (lines.size() == 1) {
+            ProductionLine line = lines.get(0);
+            log(String.format("      • Raw Buffer: %d/%d", line.getRawBuffer().size(), line.getRawBuffer().getCapacity()));
+            log(String.format("      • Mid Buffer: %d/%d", line.getMidBuffer().size(), line.getMidBuffer().getCapacity()));
+            log(String.format("      • Ready Buffer: %d/%d", line.getReadyBuffer().size(), line.getReadyBuffer().getCapacity()));
+        } else {
+            for (ProductionLine line : lines) {
+                log(String.format("      • Линия %d: Raw %d/%d, Mid %d/%d, Ready %d/%d, упаковано %d",
+                        line.getNumber(),
+                        line.getRawBuffer().size(), line.getRawBuffer().getCapacity(),
+                        line.getMidBuffer().size(), line.getMidBuffer().getCapacity(),
+                        line.getReadyBuffer().size(), line.getReadyBuffer().getCapacity(),
+                        line.getProduced()));
+            }
+        }
         log("═════════════════════════════════════");
     }
 
@@ -174,31 +882,448 @@ public class TeaFactory {
      * Текущая статистика для отображения в GUI
      */
     public String getCurrentStatistics() {
-        if (!isRunning) {
+        return formatStatistics(snapshot());
+    }
+
+    /**
+     * Строка статистики по готовому снимку
+     */
+    public static String formatStatistics(FactorySnapshot snapshot) {
+        if (!snapshot.isRunning()) {
             return "Фабрика остановлена";
         }
+        return String.format("⏱️ %.1fs | 🔄 %d циклов | 📦 %d партий | ⚡ %.1f/с за 10 с",
+                snapshot.getRuntimeMillis() / 1000.0, snapshot.getCyclesCompleted(), snapshot.getPurchases(),
+                snapshot.getStageRate(3, 10));
+    }
 
-        int totalPurchases = workers.stream()
-                .filter(w -> w instanceof Buyer)
-                .mapToInt(w -> ((Buyer) w).getPurchaseCount())
-                .sum();
+    /**
+     * Снимок состояния без блокировок: можно вызывать из любого потока
+     * и сколь угодно часто — рабочие потоки этого не замечают.
+     */
+    public FactorySnapshot snapshot() {
+        long[] stageCounts = new long[FactoryMetrics.STAGES];
+        double[][] windowRates = new double[FactoryMetrics.STAGES][FactoryMetrics.RATE_WINDOWS.length];
+        for (int stage = 0; stage < stageCounts.length; stage++) {
+            stageCounts[stage] = metrics.getStageCount(stage);
+            for (int i = 0; i < FactoryMetrics.RATE_WINDOWS.length; i++) {
+                windowRates[stage][i] = metrics.getStageRate(stage, FactoryMetrics.RATE_WINDOWS[i]);
+            }
+        }
+        return new FactorySnapshot(
+                isRunning,
+                runMode,
+                getCurrentPhase(),
+                getCurrentPhaseName(),
+                getRuntimeMillis(),
+                cyclesCompleted,
+                purchases.sum(),
+                aggregate("RawBuffer", lines, ProductionLine::getRawBuffer),
+                aggregate("MidBuffer", lines, ProductionLine::getMidBuffer),
+                aggregate("ReadyBuffer", lines, ProductionLine::getReadyBuffer),
+                lineLevels(lines),
+                stageCounts,
+                windowRates);
+    }
+
+    /**
+     * Суммарная заполненность буферов одной стадии по всем линиям
+     * (общий буфер учитывается один раз)
+     */
+    private static FactorySnapshot.BufferLevel aggregate(String name, List<ProductionLine> lines,
+                                                         Function<ProductionLine, TeaBuffer> stage) {
+        Set<TeaBuffer> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        int size = 0;
+        int capacity = 0;
+        for (ProductionLine line : lines) {
+            TeaBuffer buffer = stage.apply(line);
+            if (seen.add(buffer)) {
+                size += buffer.peekSizeUnsafe();
+                capacity += buffer.getCapacity();
+            }
+        }
+        return new FactorySnapshot.BufferLevel(name, size, capacity);
+    }
+
+    private static List<FactorySnapshot.LineLevel> lineLevels(List<ProductionLine> lines) {
+        List<FactorySnapshot.LineLevel> levels = new ArrayList<>(lines.size());
+        for (ProductionLine line : lines) {
+            levels.add(new FactorySnapshot.LineLevel(
+                    line.getNumber(),
+                    FactorySnapshot.BufferLevel.of(line.getRawBuffer()),
+                    FactorySnapshot.BufferLevel.of(line.getMidBuffer()),
+                    FactorySnapshot.BufferLevel.of(line.getReadyBuffer()),
+                    line.getProduced()));
+        }
+        return levels;
+    }
+
+    /**
+     * Построить линии по текущим настройкам
+     */
+    private List<ProductionLine> buildLines() {
+        List<ProductionLine> result = new ArrayList<>(lineCount);
+        TeaBuffer sharedReady = lineMode == LineMode.SHARED || lineCount == 1
+                ? readyType.create(readyCapacity * lineCount, "ReadyBuffer", buyerCount)
+                : null;
+        // Покупатели раздаются по линиям по кругу
+        int buyersPerLine = (buyerCount + lineCount - 1) / lineCount;
 
-        long currentRuntime = System.currentTimeMillis() - startTime;
-        double runtimeSeconds = currentRuntime / 1000.0;
+        for (int i = 1; i <= lineCount; i++) {
+            String suffix = lineCount == 1 ? "" : "-" + i;
+            TeaBuffer ready = sharedReady != null ? sharedReady
+                    : readyType.create(readyCapacity, "ReadyBuffer" + suffix, buyersPerLine);
+            result.add(new ProductionLine(lineCount == 1 ? 0 : i,
+                    rawType.create(rawCapacity, "RawBuffer" + suffix, masterCount),
+                    midType.create(midCapacity, "MidBuffer" + suffix, packerCount),
+                    ready));
+        }
+        builtLineMode = lineMode;
+        builtConsumers = consumerCounts();
+        return Collections.unmodifiableList(result);
+    }
 
-        return String.format("⏱️ %.1fs | 🔄 %d циклов | 📦 %d партий",
-                runtimeSeconds, cyclesCompleted, totalPurchases);
+    /**
+     * Мастера, фасовщики и покупатели — потребители RawBuffer, MidBuffer и ReadyBuffer
+     */
+    private int[] consumerCounts() {
+        return new int[] {masterCount, packerCount, buyerCount};
+    }
+
+    /**
+     * Шарды ShardedTeaBuffer заводятся по числу потребителей: оно поменялось — линии строятся заново
+     */
+    private boolean shardsOutdated() {
+        boolean sharded = rawType == BufferType.SHARDED || midType == BufferType.SHARDED
+                || readyType == BufferType.SHARDED;
+        return sharded && !Arrays.equals(builtConsumers, consumerCounts());
+    }
+
+    /**
+     * ReadyBuffer всех линий (общий — один раз)
+     */
+    private List<TeaBuffer> readyBuffers() {
+        List<TeaBuffer> buffers = new ArrayList<>(lines.size());
+        for (ProductionLine line : lines) {
+            if (!buffers.contains(line.getReadyBuffer())) {
+                buffers.add(line.getReadyBuffer());
+            }
+        }
+        return buffers;
+    }
+
+    private List<TeaBuffer> otherReadyBuffers(ProductionLine home) {
+        List<TeaBuffer> others = new ArrayList<>(lines.size() - 1);
+        for (ProductionLine line : lines) {
+            if (line != home) {
+                others.add(line.getReadyBuffer());
+            }
+        }
+        return others;
+    }
+
+    /**
+     * Режим работы. Применяется при следующем запуске.
+     */
+    public void setRunMode(RunMode runMode) {
+        if (runMode == null) {
+            throw new IllegalArgumentException("RunMode не может быть null");
+        }
+        this.runMode = runMode;
+    }
+
+    public RunMode getRunMode() {
+        return runMode;
+    }
+
+    /**
+     * Произвольная фабрика потоков для workers. Применяется при следующем запуске.
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("ThreadFactory не может быть null");
+        }
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Обычные или виртуальные потоки. Применяется при следующем запуске.
+     */
+    public void setThreadMode(ThreadMode threadMode) {
+        setThreadFactory(threadMode.threadFactory());
+        this.threadMode = threadMode;
+    }
+
+    /**
+     * Количество поставщиков на линию. Применяется при следующем запуске.
+     */
+    public void setSupplierCount(int supplierCount) {
+        if (supplierCount < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один поставщик");
+        }
+        this.supplierCount = supplierCount;
+    }
+
+    /**
+     * Количество мастеров на линию. Применяется при следующем запуске.
+     */
+    public void setMasterCount(int masterCount) {
+        if (masterCount < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один мастер");
+        }
+        this.masterCount = masterCount;
+    }
+
+    /**
+     * Количество фасовщиков на линию. Применяется при следующем запуске.
+     */
+    public void setPackerCount(int packerCount) {
+        if (packerCount < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один фасовщик");
+        }
+        this.packerCount = packerCount;
+    }
+
+    /**
+     * Правила автомасштабирования; null — выключено. Применяется при следующем запуске.
+     */
+    public void setScalingPolicy(ScalingPolicy scalingPolicy) {
+        this.scalingPolicy = scalingPolicy;
+    }
+
+    public ScalingPolicy getScalingPolicy() {
+        return scalingPolicy;
+    }
+
+    /**
+     * Количество независимых линий производства. Применяется при следующем запуске.
+     */
+    public void setLineCount(int lineCount) {
+        if (lineCount < 1) {
+            throw new IllegalArgumentException("Нужна хотя бы одна линия");
+        }
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Общий или раздельный буфер готовой продукции. Применяется при следующем запуске.
+     */
+    public void setLineMode(LineMode lineMode) {
+        if (lineMode == null) {
+            throw new IllegalArgumentException("LineMode не может быть null");
+        }
+        this.lineMode = lineMode;
+    }
+
+    public int getLineCount() { return lineCount; }
+    public LineMode getLineMode() { return lineMode; }
+
+    /**
+     * Линии текущего (или последнего) запуска
+     */
+    public List<ProductionLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * Количество покупателей. Применяется при следующем запуске.
+     */
+    public void setBuyerCount(int buyerCount) {
+        if (buyerCount < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один покупатель");
+        }
+        this.buyerCount = buyerCount;
+    }
+
+    /**
+     * Диапазон задержки работы workers, мс. Применяется при следующем запуске.
+     */
+    public void setWorkDelay(long minDelay, long maxDelay) {
+        for (int stage = 0; stage < FactoryConfig.STAGES; stage++) {
+            setStageDelay(stage, minDelay, maxDelay);
+        }
+    }
+
+    /**
+     * Диапазон задержки одной стадии (0..3), мс. Применяется при следующем запуске.
+     */
+    public void setStageDelay(int stage, long minDelay, long maxDelay) {
+        setStageDelay(stage, DelayDistribution.uniform(minDelay, maxDelay));
+    }
+
+    /**
+     * Распределение задержки одной стадии (0..3). Применяется при следующем запуске.
+     */
+    public void setStageDelay(int stage, DelayDistribution delay) {
+        if (delay == null) {
+            throw new IllegalArgumentException("Распределение задержки не может быть null");
+        }
+        delays[stage] = delay;
+    }
+
+    public DelayDistribution getStageDelay(int stage) {
+        return delays[stage];
+    }
+
+    /**
+     * Каталог бинарного журнала партий; null — журнал не пишется.
+     * Старый журнал в каталоге перезаписывается. Применяется при следующем запуске.
+     */
+    public void setJournalDirectory(Path journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public Path getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Доля трассируемых партий (0..1): для них замеряется время в работе на каждой стадии
+     * и в каждом буфере. Выборка — каждая N-я партия по id, N = 1 / доля.
+     * Применяется при следующем запуске.
+     */
+    public void setTraceSample(double traceSample) {
+        if (!(traceSample >= 0 && traceSample <= 1)) {
+            throw new IllegalArgumentException("Доля трассировки должна быть от 0 до 1: " + traceSample);
+        }
+        this.traceSample = traceSample;
+    }
+
+    public double getTraceSample() {
+        return traceSample;
+    }
+
+    /**
+     * Какие сорта хотят покупатели (не ANY — только со складом BufferType.TYPED или ORDERS для ReadyBuffer).
+     * Применяется при следующем запуске.
+     */
+    public void setBuyerDemand(TeaDemand buyerDemand) {
+        if (buyerDemand == null) {
+            throw new IllegalArgumentException("Спрос покупателей не может быть null");
+        }
+        this.buyerDemand = buyerDemand;
+    }
+
+    public TeaDemand getBuyerDemand() {
+        return buyerDemand;
+    }
+
+    private int traceEvery() {
+        return traceSample > 0 ? (int) Math.max(1, Math.round(1 / traceSample)) : 0;
+    }
+
+    /**
+     * Главный seed; null — новый при каждом запуске. Применяется при следующем запуске.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Seed текущего (или последнего) запуска — чтобы повторить его через setSeed()
+     */
+    public long getRunSeed() {
+        RandomSource source = randomSource;
+        return source != null ? source.getSeed() : 0;
+    }
+
+    /**
+     * Вызывается покупателями для каждой купленной партии. Применяется при следующем запуске.
+     */
+    public void setPurchaseListener(Consumer<TeaBatch> purchaseListener) {
+        this.purchaseListener = purchaseListener;
+    }
+
+    public int getSupplierCount() { return supplierCount; }
+    public int getMasterCount() { return masterCount; }
+    public int getPackerCount() { return packerCount; }
+    public int getBuyerCount() { return buyerCount; }
+
+    /**
+     * Текущие настройки в виде топологии (например, чтобы сохранить в файл).
+     * Для произвольной setThreadFactory() сохраняется последний ThreadMode.
+     */
+    public FactoryConfig toConfig() {
+        FactoryConfig.Builder builder = FactoryConfig.builder()
+                .lines(lineCount)
+                .lineMode(lineMode)
+                .runMode(runMode)
+                .threadMode(threadMode)
+                .batchSize(workerBatchSize)
+                .suppliers(supplierCount)
+                .masters(masterCount)
+                .packers(packerCount)
+                .buyers(buyerCount)
+                .buffer(FactoryConfig.RAW, rawType, rawCapacity)
+                .buffer(FactoryConfig.MID, midType, midCapacity)
+                .buffer(FactoryConfig.READY, readyType, readyCapacity)
+                .scaling(scalingPolicy)
+                .seed(seed)
+                .journal(journalDirectory)
+                .traceSample(traceSample)
+                .demand(buyerDemand);
+        for (int stage = 0; stage < FactoryConfig.STAGES; stage++) {
+            builder.stageDelay(stage, delays[stage]);
+        }
+        return builder.build();
     }
 
     public int getCurrentPhase() {
-        return phaser != null ? phaser.getPhase() % 4 : 0;
+        return scheduler != null ? scheduler.getActiveStage() : 0;
     }
 
     public String getCurrentPhaseName() {
-        return getPhaseName(getCurrentPhase());
+        // В конвейере фаз нет — все стадии активны одновременно
+        if (runMode == RunMode.PIPELINED) {
+            return "PIPELINE";
+        }
+        return phaseName(getCurrentPhase());
+    }
+
+    /**
+     * Размер пакета для workers. Применяется при следующем запуске.
+     */
+    public void setWorkerBatchSize(int workerBatchSize) {
+        if (workerBatchSize < 1) {
+            throw new IllegalArgumentException("Размер пакета должен быть >= 1");
+        }
+        this.workerBatchSize = workerBatchSize;
+    }
+
+    public int getWorkerBatchSize() {
+        return workerBatchSize;
     }
 
-    private String getPhaseName(int phase) {
+    public int getCyclesCompleted() {
+        return cyclesCompleted;
+    }
+
+    /**
+     * Покупок за всё время работы (включая прошлые запуски)
+     */
+    public long getTotalPurchases() {
+        return purchases.sum();
+    }
+
+    /**
+     * Общее время работы, включая текущий запуск
+     */
+    public long getRuntimeMillis() {
+        return isRunning ? totalRuntime + (System.currentTimeMillis() - startTime) : totalRuntime;
+    }
+
+    /**
+     * Workers текущего (или последнего) запуска
+     */
+    public List<AbstractWorker> getWorkers() {
+        return Collections.unmodifiableList(workers);
+    }
+
+    public static String phaseName(int phase) {
         switch (phase % 4) {
             case 0: return "SUPPLY";
             case 1: return "PROCESS";
@@ -212,11 +1337,34 @@ public class TeaFactory {
         return isRunning;
     }
 
-    public TeaBuffer getRawBuffer() { return rawBuffer; }
-    public TeaBuffer getMidBuffer() { return midBuffer; }
-    public TeaBuffer getReadyBuffer() { return readyBuffer; }
+    // Буферы первой линии
+    public TeaBuffer getRawBuffer() { return lines.get(0).getRawBuffer(); }
+    public TeaBuffer getMidBuffer() { return lines.get(0).getMidBuffer(); }
+    public TeaBuffer getReadyBuffer() { return lines.get(0).getReadyBuffer(); }
+
+    /**
+     * Шина событий фабрики: подписка, уровень логирования, счётчик потерь
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /**
+     * Гистограммы задержек и счётчики (накапливаются между перезапусками)
+     */
+    public FactoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Готовая продукция как Flow.Publisher: партии уходят подписчикам по их request(n),
+     * наравне с покупателями. Подписываться можно и до запуска, и на ходу.
+     */
+    public ReadyPublisher getReadyPublisher() {
+        return readyPublisher;
+    }
 
     private void log(String message) {
-        logger.accept("[ФАБРИКА] " + message);
+        events.publish("ФАБРИКА", EventKind.FACTORY, message);
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.teafactory.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * На каких потоках выполняются workers.
+ * Буферы и Phaser блокируются через LockSupport (без synchronized),
+ * поэтому виртуальные потоки не закрепляются за потоками-носителями.
+ */
+public enum ThreadMode {
+    /** Обычный поток ОС на каждого worker */
+    PLATFORM,
+    /** Виртуальные потоки (Java 21+), тысячи workers без расхода памяти на стеки */
+    VIRTUAL;
+
+    /**
+     * Фабрика потоков для выбранного режима
+     *
+     * @throws UnsupportedOperationException если JVM не поддерживает виртуальные потоки
+     */
+    public ThreadFactory threadFactory() {
+        if (this == PLATFORM) {
+            return Thread::new;
+        }
+
+        // Проект собирается под Java 17, поэтому Thread.ofVirtual() ищем через reflection
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Виртуальные потоки требуют Java 21+", e);
+        }
+    }
+
+    /**
+     * Поддерживает ли текущая JVM данный режим
+     */
+    public boolean isSupported() {
+        try {
+            threadFactory();
+            return true;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+}
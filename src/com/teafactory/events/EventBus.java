@@ -0,0 +1,190 @@
+package com.teafactory.events;
+
+import com.teafactory.model.TeaBatch;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Асинхронная шина событий фабрики.
+ * ✔ Рабочие потоки только кладут событие в ограниченную очередь
+ * ✔ Форматирование и доставка — в отдельном потоке-диспетчере
+ * ✔ Фильтр по уровню; без подписчиков publish() ничего не делает
+ * ✔ При переполнении очереди событие отбрасывается (счётчик dropped),
+ *   рабочий поток никогда не ждёт логирование
+ * ✔ Исключение подписчика не останавливает доставку остальным (счётчик failures)
+ * ✔ close() останавливает диспетчер: события из очереди доставляются, новые не принимаются
+ */
+public class EventBus {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+    // Порог отсечки: без подписчиков — выше любого уровня
+    private static final int DISABLED = Integer.MAX_VALUE;
+
+    private final BlockingQueue<FactoryEvent> queue;
+    private final List<Consumer<FactoryEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile EventLevel level = EventLevel.DEBUG;
+    private volatile int threshold = DISABLED;
+    private final AtomicBoolean dispatcherStarted = new AtomicBoolean();
+    private volatile Thread dispatcher;
+    private volatile boolean closed;
+
+    public EventBus() {
+        this(DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public EventBus(int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Подписка на события. Первый подписчик запускает диспетчер; после close() события не доставляются.
+     */
+    public void subscribe(Consumer<FactoryEvent> listener) {
+        listeners.add(listener);
+        startDispatcher();
+        updateThreshold();
+    }
+
+    public void unsubscribe(Consumer<FactoryEvent> listener) {
+        listeners.remove(listener);
+        updateThreshold();
+    }
+
+    /**
+     * Минимальный уровень доставляемых событий
+     */
+    public void setLevel(EventLevel level) {
+        this.level = level;
+        updateThreshold();
+    }
+
+    public EventLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * Дешёвая проверка перед сбором данных для события
+     */
+    public boolean isEnabled(EventKind kind) {
+        return kind.getLevel().ordinal() >= threshold;
+    }
+
+    public void publish(String worker, EventKind kind, String template) {
+        if (isEnabled(kind)) {
+            enqueue(worker, kind, template, null, 0, 0, 0);
+        }
+    }
+
+    public void publish(String worker, EventKind kind, String template, TeaBatch batch) {
+        if (isEnabled(kind)) {
+            enqueue(worker, kind, template, batch, 0, 0, 0);
+        }
+    }
+
+    public void publish(String worker, EventKind kind, String template, int count) {
+        if (isEnabled(kind)) {
+            enqueue(worker, kind, template, null, count, 0, 0);
+        }
+    }
+
+    public void publish(String worker, EventKind kind, String template,
+                        TeaBatch batch, int count, int size, int capacity) {
+        if (isEnabled(kind)) {
+            enqueue(worker, kind, template, batch, count, size, capacity);
+        }
+    }
+
+    /**
+     * Сколько событий отброшено из-за переполнения очереди
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Сколько раз подписчик бросил исключение при доставке события
+     */
+    public long getFailedCount() {
+        return failures.get();
+    }
+
+    /**
+     * Остановить диспетчер и дождаться его (не дольше 2 секунд).
+     * События, уже стоящие в очереди, доставляются; повторный вызов ничего не делает.
+     */
+    public void close() {
+        closed = true;
+        updateThreshold();
+        Thread thread = dispatcher;
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(String worker, EventKind kind, String template,
+                         TeaBatch batch, int count, int size, int capacity) {
+        FactoryEvent event = batch == null
+                ? new FactoryEvent(System.currentTimeMillis(), worker, kind, template, -1, null, null, count, size, capacity)
+                : new FactoryEvent(System.currentTimeMillis(), worker, kind, template,
+                        batch.getId(), batch.getType(), batch.getStage(), count, size, capacity);
+
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void updateThreshold() {
+        threshold = closed || listeners.isEmpty() ? DISABLED : level.ordinal();
+    }
+
+    private void startDispatcher() {
+        if (closed || !dispatcherStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::dispatchLoop, "event-dispatcher");
+        thread.setDaemon(true);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (!closed) {
+                dispatch(queue.take());
+            }
+        } catch (InterruptedException e) {
+            // close(): дальше только то, что уже в очереди
+        }
+        FactoryEvent event;
+        while ((event = queue.poll()) != null) {
+            dispatch(event);
+        }
+    }
+
+    private void dispatch(FactoryEvent event) {
+        for (Consumer<FactoryEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                // Ошибка подписчика не должна останавливать доставку остальным
+                failures.incrementAndGet();
+            }
+        }
+    }
+}
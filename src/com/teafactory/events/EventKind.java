@@ -0,0 +1,40 @@
+package com.teafactory.events;
+
+/**
+ * Типы событий фабрики и их уровень важности
+ */
+public enum EventKind {
+    // Жизненный цикл workers
+    WORKER_STARTED(EventLevel.INFO),
+    WORKER_STOPPED(EventLevel.INFO),
+    WORKER_INTERRUPTED(EventLevel.WARN),
+    PHASE_WORK_DONE(EventLevel.DEBUG),
+    STAGE_IDLE(EventLevel.DEBUG),          // буфер пуст/полон, стадия ждёт
+
+    // Движение партий
+    BATCH_CREATED(EventLevel.DEBUG),
+    BATCH_TAKEN(EventLevel.DEBUG),
+    BATCH_DONE(EventLevel.DEBUG),
+    BATCH_PUT(EventLevel.DEBUG),
+    BATCH_PURCHASED(EventLevel.DEBUG),
+
+    // Фабрика
+    PHASE_COMPLETED(EventLevel.INFO),
+    PHASE_SKIPPED(EventLevel.DEBUG),       // у стадии не было работы, фаза пропущена
+    CYCLE_COMPLETED(EventLevel.INFO),
+    FACTORY(EventLevel.INFO),
+
+    // Автомасштабирование
+    SCALE_UP(EventLevel.INFO),
+    SCALE_DOWN(EventLevel.INFO);
+
+    private final EventLevel level;
+
+    EventKind(EventLevel level) {
+        this.level = level;
+    }
+
+    public EventLevel getLevel() {
+        return level;
+    }
+}
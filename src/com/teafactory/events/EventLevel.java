@@ -0,0 +1,10 @@
+package com.teafactory.events;
+
+/**
+ * Уровень важности события (для фильтрации)
+ */
+public enum EventLevel {
+    DEBUG,
+    INFO,
+    WARN
+}
@@ -0,0 +1,96 @@
+package com.teafactory.events;
+
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+/**
+ * Типизированное событие фабрики.
+ * Хранит только ссылки и числа — строка собирается лениво в format(),
+ * уже в потоке-диспетчере, а не в рабочем потоке.
+ *
+ * Шаблон — строковая константа с подстановками:
+ * {batch} — описание партии, {count}, {size}, {capacity}.
+ */
+public final class FactoryEvent {
+    private final long timestamp;
+    private final String worker;
+    private final EventKind kind;
+    private final String template;
+    private final int batchId;
+    private final TeaType teaType;
+    private final String stage;
+    private final int count;
+    private final int size;
+    private final int capacity;
+
+    FactoryEvent(long timestamp, String worker, EventKind kind, String template,
+                 int batchId, TeaType teaType, String stage, int count, int size, int capacity) {
+        this.timestamp = timestamp;
+        this.worker = worker;
+        this.kind = kind;
+        this.template = template;
+        this.batchId = batchId;
+        this.teaType = teaType;
+        this.stage = stage;
+        this.count = count;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getTimestamp() { return timestamp; }
+    public String getWorker() { return worker; }
+    public EventKind getKind() { return kind; }
+    public EventLevel getLevel() { return kind.getLevel(); }
+    public int getBatchId() { return batchId; }
+    public TeaType getTeaType() { return teaType; }
+    public String getStage() { return stage; }
+    public int getCount() { return count; }
+    public int getSize() { return size; }
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Текст события в формате прежнего лога: "[WORKER] сообщение"
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder(template.length() + 48);
+        if (worker != null) {
+            sb.append('[').append(worker).append("] ");
+        }
+
+        int i = 0;
+        while (i < template.length()) {
+            char c = template.charAt(i);
+            int close = c == '{' ? template.indexOf('}', i) : -1;
+            if (close < 0) {
+                sb.append(c);
+                i++;
+                continue;
+            }
+
+            String key = template.substring(i + 1, close);
+            switch (key) {
+                case "batch":
+                    sb.append(TeaBatch.describe(batchId, teaType, stage));
+                    break;
+                case "count":
+                    sb.append(count);
+                    break;
+                case "size":
+                    sb.append(size);
+                    break;
+                case "capacity":
+                    sb.append(capacity);
+                    break;
+                default:
+                    sb.append(template, i, close + 1);
+            }
+            i = close + 1;
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
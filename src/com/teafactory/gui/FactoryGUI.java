@@ -1,8 +1,11 @@
 package com.teafactory.gui;
 
+import com.teafactory.core.FactoryConfig;
+import com.teafactory.core.FactorySnapshot;
 import com.teafactory.core.TeaFactory;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
@@ -17,6 +20,7 @@ public class FactoryGUI extends JFrame {
     private JLabel midBufferLabel;
     private JLabel readyBufferLabel;
     private JTextArea logArea;
+    private JLabel logTitleLabel;
     private JButton startButton;
     private JButton stopButton;
     private AnimatedProgressBar rawProgress;
@@ -25,6 +29,12 @@ public class FactoryGUI extends JFrame {
     private Timer updateTimer;
     private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
 
+    // Лог: на экране не больше MAX_LOG_LINES строк, обновление — один раз за кадр
+    private static final int MAX_LOG_LINES = 1000;
+    private static final int LOG_FRAME_MS = 33;
+    private final LogModel logModel = new LogModel(MAX_LOG_LINES);
+    private long shownDropped;
+
     private static final Color DARK_BG = new Color(20, 25, 35);
     private static final Color PANEL_BG = new Color(30, 35, 45);
     private static final Color ACCENT_BLUE = new Color(52, 152, 219);
@@ -36,14 +46,23 @@ public class FactoryGUI extends JFrame {
 
     private boolean isRunning = false;
 
+    // Топология, по которой строится фабрика
+    private final FactoryConfig config;
+
     public FactoryGUI() {
+        this(FactoryConfig.defaults());
+    }
+
+    public FactoryGUI(FactoryConfig config) {
         super("Tea Factory Simulator");
+        this.config = config;
         setUndecorated(true);
         setBackground(new Color(0, 0, 0, 0));
         initializeComponents();
         createFactory();
         setupTimer();
         startAnimations();
+        startLogFlushing();
     }
 
     private void initializeComponents() {
@@ -99,7 +118,10 @@ public class FactoryGUI extends JFrame {
         buttonPanel.setOpaque(false);
 
         JButton closeButton = createCircleButton(ACCENT_RED);
-        closeButton.addActionListener(e -> System.exit(0));
+        closeButton.addActionListener(e -> {
+            factory.close();
+            System.exit(0);
+        });
 
         buttonPanel.add(closeButton);
 
@@ -248,7 +270,7 @@ public class FactoryGUI extends JFrame {
 
         rawPanel.add(rawHeaderPanel);
         rawPanel.add(Box.createVerticalStrut(8));
-        rawProgress = new AnimatedProgressBar(5, ACCENT_GREEN);
+        rawProgress = new AnimatedProgressBar(totalCapacity(FactoryConfig.RAW), ACCENT_GREEN);
         rawPanel.add(rawProgress);
 
         // Создаём панель для промежуточного буфера
@@ -286,7 +308,7 @@ public class FactoryGUI extends JFrame {
 
         midPanel.add(midHeaderPanel);
         midPanel.add(Box.createVerticalStrut(8));
-        midProgress = new AnimatedProgressBar(3, ACCENT_ORANGE);
+        midProgress = new AnimatedProgressBar(totalCapacity(FactoryConfig.MID), ACCENT_ORANGE);
         midPanel.add(midProgress);
 
         // Создаём панель для буфера готовой продукции
@@ -324,7 +346,7 @@ public class FactoryGUI extends JFrame {
 
         readyPanel.add(readyHeaderPanel);
         readyPanel.add(Box.createVerticalStrut(8));
-        readyProgress = new AnimatedProgressBar(4, ACCENT_BLUE);
+        readyProgress = new AnimatedProgressBar(totalCapacity(FactoryConfig.READY), ACCENT_BLUE);
         readyPanel.add(readyProgress);
 
         panel.add(rawPanel);
@@ -350,10 +372,10 @@ public class FactoryGUI extends JFrame {
         panel.setBorder(new EmptyBorder(15, 15, 15, 15));
         panel.setPreferredSize(new Dimension(0, 250));
 
-        JLabel titleLabel = new JLabel("📋 ЛОГ СОБЫТИЙ");
-        titleLabel.setFont(new Font("Arial", Font.BOLD, 14));
-        titleLabel.setForeground(ACCENT_BLUE);
-        titleLabel.setBorder(new EmptyBorder(0, 0, 10, 0));
+        logTitleLabel = new JLabel("📋 ЛОГ СОБЫТИЙ");
+        logTitleLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        logTitleLabel.setForeground(ACCENT_BLUE);
+        logTitleLabel.setBorder(new EmptyBorder(0, 0, 10, 0));
 
         logArea = new JTextArea(10, 50);
         logArea.setEditable(false);
@@ -373,7 +395,7 @@ public class FactoryGUI extends JFrame {
         scrollPane.getViewport().setOpaque(false);
         scrollPane.setBorder(null);
 
-        panel.add(titleLabel, BorderLayout.NORTH);
+        panel.add(logTitleLabel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
         return panel;
@@ -445,8 +467,15 @@ public class FactoryGUI extends JFrame {
         return button;
     }
 
+    /**
+     * Суммарная вместимость буфера по всем линиям
+     */
+    private int totalCapacity(int buffer) {
+        return config.getCapacity(buffer) * config.getLineCount();
+    }
+
     private void createFactory() {
-        factory = new TeaFactory(this::log);
+        factory = new TeaFactory(this::log, config);
     }
 
     private void setupTimer() {
@@ -462,6 +491,49 @@ public class FactoryGUI extends JFrame {
         animationTimer.start();
     }
 
+    /**
+     * Раз в кадр переносим накопленные строки лога в JTextArea
+     */
+    private void startLogFlushing() {
+        Timer logTimer = new Timer(LOG_FRAME_MS, e -> flushLog());
+        logTimer.start();
+    }
+
+    private void flushLog() {
+        StringBuilder text = new StringBuilder();
+        Date date = new Date();
+        int count = logModel.drainTo((time, message) -> {
+            date.setTime(time);
+            text.append('[').append(timeFormat.format(date)).append("] ").append(message).append('\n');
+        });
+
+        if (count > 0) {
+            logArea.append(text.toString());
+            trimLog();
+        }
+
+        long dropped = logModel.getDroppedCount() + factory.getEvents().getDroppedCount();
+        if (dropped != shownDropped) {
+            shownDropped = dropped;
+            logTitleLabel.setText(String.format("📋 ЛОГ СОБЫТИЙ (пропущено: %d)", dropped));
+        }
+    }
+
+    /**
+     * Удаляем самые старые строки сверх MAX_LOG_LINES
+     */
+    private void trimLog() {
+        int excess = logArea.getLineCount() - MAX_LOG_LINES;
+        if (excess <= 0) {
+            return;
+        }
+        try {
+            logArea.replaceRange("", 0, logArea.getLineStartOffset(excess));
+        } catch (BadLocationException e) {
+            logArea.setText("");
+        }
+    }
+
     private void startFactory() {
         startButton.setEnabled(false);
         stopButton.setEnabled(true);
@@ -492,37 +564,36 @@ public class FactoryGUI extends JFrame {
     private void updateDisplay() {
         if (!isRunning) return;
 
-        int phase = factory.getCurrentPhase();
-        String phaseName = factory.getCurrentPhaseName();
-        phaseLabel.setText(String.format("Фаза %d - %s", phase, phaseName));
+        // Один снимок на кадр: без блокировок буферов
+        FactorySnapshot snapshot = factory.snapshot();
+
+        phaseLabel.setText(String.format("Фаза %d - %s", snapshot.getPhase(), snapshot.getPhaseName()));
 
         // Обновляем статистику
-        statisticsLabel.setText(factory.getCurrentStatistics());
+        statisticsLabel.setText(TeaFactory.formatStatistics(snapshot));
 
         // Обновляем буферы
-        updateBufferDisplay(rawBufferLabel, rawProgress, factory.getRawBuffer());
-        updateBufferDisplay(midBufferLabel, midProgress, factory.getMidBuffer());
-        updateBufferDisplay(readyBufferLabel, readyProgress, factory.getReadyBuffer());
+        updateBufferDisplay(rawBufferLabel, rawProgress, snapshot.getRaw());
+        updateBufferDisplay(midBufferLabel, midProgress, snapshot.getMid());
+        updateBufferDisplay(readyBufferLabel, readyProgress, snapshot.getReady());
     }
 
-    private void updateBufferDisplay(JLabel label, AnimatedProgressBar progress, com.teafactory.buffer.TeaBuffer buffer) {
-        int size = buffer.size();
-        int capacity = buffer.getCapacity();
-
-        label.setText(size + "/" + capacity);
-        progress.setValue(size);
+    private void updateBufferDisplay(JLabel label, AnimatedProgressBar progress, FactorySnapshot.BufferLevel level) {
+        label.setText(level.getSize() + "/" + level.getCapacity());
+        progress.setMaximum(level.getCapacity());
+        progress.setValue(level.getSize());
     }
 
+    /**
+     * Потокобезопасно: строка попадёт на экран в ближайшем кадре
+     */
     private void log(String message) {
-        SwingUtilities.invokeLater(() -> {
-            String timestamp = timeFormat.format(new Date());
-            logArea.append(String.format("[%s] %s\n", timestamp, message));
-        });
+        logModel.append(message);
     }
 
     static class AnimatedProgressBar extends JPanel {
         private int value;
-        private final int maximum;
+        private int maximum;
         private final Color color;
         private int animationFrame;
 
@@ -540,6 +611,13 @@ public class FactoryGUI extends JFrame {
             }
         }
 
+        public void setMaximum(int maximum) {
+            if (this.maximum != maximum && maximum > 0) {
+                this.maximum = maximum;
+                repaint();
+            }
+        }
+
         public void tick() {
             animationFrame++;
             if (value > 0) {
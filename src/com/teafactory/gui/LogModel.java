@@ -0,0 +1,114 @@
+package com.teafactory.gui;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная очередь строк лога для GUI.
+ * Любой поток добавляет сообщение за O(1) под короткой блокировкой,
+ * EDT раз в кадр забирает всё накопленное одним вызовом.
+ * Если за кадр пришло больше строк, чем вмещает кольцо,
+ * самые старые вытесняются и учитываются в счётчике dropped.
+ */
+public class LogModel {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] times;
+    private final String[] messages;
+    private final int capacity;
+
+    private int head;     // индекс самой старой строки
+    private int size;
+    private long dropped;
+
+    public LogModel(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Вместимость должна быть положительной");
+        }
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.messages = new String[capacity];
+    }
+
+    /**
+     * Добавление строки (из любого потока)
+     */
+    public void append(String message) {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            int tail = (head + size) % capacity;
+            times[tail] = now;
+            messages[tail] = message;
+
+            if (size < capacity) {
+                size++;
+            } else {
+                // Кольцо заполнено — вытесняем самую старую строку
+                head = (head + 1) % capacity;
+                dropped++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Забрать все накопленные строки (вызывается на EDT раз в кадр)
+     *
+     * @return количество строк в sink
+     */
+    public int drainTo(LineSink sink) {
+        long[] drainedTimes;
+        String[] drainedMessages;
+        int count;
+
+        lock.lock();
+        try {
+            count = size;
+            if (count == 0) {
+                return 0;
+            }
+            drainedTimes = new long[count];
+            drainedMessages = new String[count];
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % capacity;
+                drainedTimes[i] = times[index];
+                drainedMessages[i] = messages[index];
+                messages[index] = null;
+            }
+            head = 0;
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        // Форматирование — уже вне блокировки
+        for (int i = 0; i < count; i++) {
+            sink.accept(drainedTimes[i], drainedMessages[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Сколько строк вытеснено, не дойдя до экрана
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Получатель строк при выгрузке
+     */
+    @FunctionalInterface
+    public interface LineSink {
+        void accept(long timeMillis, String message);
+    }
+}
@@ -0,0 +1,200 @@
+package com.teafactory.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Бинарный журнал жизненного цикла партий на memory-mapped файлах.
+ * ✔ Записи фиксированного размера (16 байт): время, id партии, worker, тип чая, стадия
+ * ✔ Файлы-сегменты по recordsPerSegment записей, следующий создаётся при заполнении
+ * ✔ Workers не блокируются: каждый JournalWriter захватывает себе блок записей
+ *   одним getAndAdd и пишет в него без синхронизации
+ * ✔ Имена workers — в текстовом workers.txt рядом с сегментами
+ *
+ * Формат сегмента journal-NNNNNN.bin (little-endian):
+ * заголовок 64 байта — MAGIC, VERSION, RECORD_SIZE, recordsPerSegment, номер сегмента,
+ * номер первой записи, время открытия журнала (epoch ms); затем записи
+ * [long нс от открытия][int id партии][short worker][byte тип][byte стадия + 1].
+ * Нулевой последний байт — незаполненная запись (хвост блока), читатель её пропускает.
+ * Записи идут в порядке захвата блоков, а не строго по времени.
+ */
+public final class BatchJournal implements AutoCloseable {
+
+    static final long MAGIC = 0x314C4E524A414554L; // "TEAJRNL1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 16;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final String WORKERS_FILE = "workers.txt";
+
+    // Блок записей, который writer захватывает за раз
+    static final int BLOCK_RECORDS = 256;
+
+    // 1М записей = 16 МБ на сегмент
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long baseEpochMillis = System.currentTimeMillis();
+    private final long baseNanos = System.nanoTime();
+
+    // Следующая свободная запись (захватывается блоками)
+    private final AtomicLong nextRecord = new AtomicLong();
+    private final ConcurrentHashMap<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    // Реестр workers: меняется только при создании writer
+    private final ReentrantLock registryLock = new ReentrantLock();
+    private final List<String> workerNames = new ArrayList<>();
+
+    private BatchJournal(Path directory, int recordsPerSegment) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+    }
+
+    /**
+     * Открыть новый журнал в каталоге (старые сегменты в нём удаляются)
+     */
+    public static BatchJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    public static BatchJournal open(Path directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment < BLOCK_RECORDS || recordsPerSegment % BLOCK_RECORDS != 0) {
+            throw new IllegalArgumentException("Размер сегмента должен быть кратен " + BLOCK_RECORDS + " записям");
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(directory, "journal-*.bin")) {
+            for (Path file : old) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(directory.resolve(WORKERS_FILE));
+        return new BatchJournal(directory, recordsPerSegment);
+    }
+
+    /**
+     * Writer для одного worker. Сам writer не потокобезопасен — им пользуется один поток.
+     */
+    public JournalWriter newWriter(String workerName) {
+        registryLock.lock();
+        try {
+            if (workerNames.size() > Short.MAX_VALUE) {
+                throw new IllegalStateException("Слишком много workers для журнала");
+            }
+            int id = workerNames.size();
+            workerNames.add(workerName);
+            appendWorker(id, workerName);
+            return new JournalWriter(this, (short) id);
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+    /**
+     * Захватить следующий блок записей; блок никогда не пересекает границу сегмента
+     */
+    long claimBlock() {
+        return nextRecord.getAndAdd(BLOCK_RECORDS);
+    }
+
+    /**
+     * Сегмент с записью number: при первом обращении файл создаётся и отображается в память.
+     * Сегменты не выгружаются до close(): блоки захватываются getAndAdd, и writer с последним
+     * блоком сегмента может прийти за ним уже после того, как другой начал следующий.
+     */
+    MappedByteBuffer segmentOf(long record) {
+        return segments.computeIfAbsent(record / recordsPerSegment, this::createSegment);
+    }
+
+    int offsetOf(long record) {
+        return HEADER_SIZE + (int) (record % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    long getBaseNanos() {
+        return baseNanos;
+    }
+
+    private MappedByteBuffer createSegment(long index) {
+        Path file = directory.resolve(segmentName(index));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE);
+            buffer.order(ORDER);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, RECORD_SIZE);
+            buffer.putInt(16, recordsPerSegment);
+            buffer.putLong(20, index);
+            buffer.putLong(28, index * recordsPerSegment);
+            buffer.putLong(36, baseEpochMillis);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать сегмент журнала " + file, e);
+        }
+    }
+
+    static String segmentName(long index) {
+        return String.format("journal-%06d.bin", index);
+    }
+
+    /**
+     * Дописать одну строку реестра: файл не переписывается целиком на каждого worker
+     */
+    private void appendWorker(int id, String workerName) {
+        try (Writer writer = Files.newBufferedWriter(directory.resolve(WORKERS_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(id + "=" + workerName + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать " + WORKERS_FILE, e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Сколько записей захвачено (с хвостами незаполненных блоков)
+     */
+    public long getClaimedRecords() {
+        return nextRecord.get();
+    }
+
+    /**
+     * Сбросить на диск все сегменты журнала, не закрывая его: новые writers пишут дальше
+     */
+    public void flush() {
+        for (MappedByteBuffer segment : segments.values()) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Сбросить на диск все сегменты журнала. Вызывать после остановки writers.
+     */
+    @Override
+    public void close() {
+        flush();
+        segments.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "[Журнал " + directory + ": записей ≤ " + nextRecord.get() + "]";
+    }
+}
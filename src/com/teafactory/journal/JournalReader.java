@@ -0,0 +1,103 @@
+package com.teafactory.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтение журнала, записанного BatchJournal.
+ * Сегменты отображаются в память только на чтение и просматриваются подряд —
+ * без разбора текста и без объектов на запись (JournalRecord переиспользуется).
+ */
+public final class JournalReader {
+
+    private final List<Path> segments;
+    private final List<String> workerNames;
+
+    private JournalReader(List<Path> segments, List<String> workerNames) {
+        this.segments = segments;
+        this.workerNames = workerNames;
+    }
+
+    public static JournalReader open(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.bin")) {
+            files.forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            throw new IOException("В каталоге нет сегментов журнала: " + directory);
+        }
+        Collections.sort(segments);
+
+        List<String> names = new ArrayList<>();
+        Path workers = directory.resolve(BatchJournal.WORKERS_FILE);
+        if (Files.exists(workers)) {
+            for (String line : Files.readAllLines(workers, StandardCharsets.UTF_8)) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    names.add(line.substring(eq + 1));
+                }
+            }
+        }
+        return new JournalReader(segments, names);
+    }
+
+    /**
+     * Просмотреть все заполненные записи (в порядке сегментов и блоков, не строго по времени).
+     *
+     * @return число просмотренных записей
+     */
+    public long scan(Consumer<JournalRecord> visitor) throws IOException {
+        JournalRecord record = new JournalRecord();
+        long count = 0;
+        for (Path file : segments) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(BatchJournal.ORDER);
+                if (buffer.capacity() < BatchJournal.HEADER_SIZE
+                        || buffer.getLong(0) != BatchJournal.MAGIC
+                        || buffer.getInt(8) != BatchJournal.VERSION) {
+                    throw new IOException("Не сегмент журнала (или другая версия): " + file);
+                }
+                int recordSize = buffer.getInt(12);
+                long baseEpochMillis = buffer.getLong(36);
+                int end = buffer.capacity() - recordSize + 1;
+                for (int offset = BatchJournal.HEADER_SIZE; offset < end; offset += recordSize) {
+                    int stage = buffer.get(offset + 15);
+                    if (stage == 0) {
+                        continue; // незаполненный хвост блока
+                    }
+                    record.set(buffer.getLong(offset), buffer.getInt(offset + 8), buffer.getShort(offset + 12),
+                            buffer.get(offset + 14), stage - 1, baseEpochMillis);
+                    visitor.accept(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Имя worker по номеру из записи
+     */
+    public String workerName(int workerId) {
+        return workerId < workerNames.size() ? workerNames.get(workerId) : "#" + workerId;
+    }
+
+    public int getWorkerCount() {
+        return workerNames.size();
+    }
+}
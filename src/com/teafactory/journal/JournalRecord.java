@@ -0,0 +1,58 @@
+package com.teafactory.journal;
+
+import com.teafactory.model.TeaType;
+
+/**
+ * Одна запись журнала при чтении.
+ * Объект переиспользуется читателем для каждой записи — сохранять его нельзя, только значения.
+ */
+public final class JournalRecord {
+
+    private static final TeaType[] TYPES = TeaType.values();
+    private static final String[] STAGE_NAMES = {"CREATED", "PROCESSED", "PACKED", "PURCHASED"};
+
+    private long nanos;
+    private int batchId;
+    private int workerId;
+    private int type;
+    private int stage;
+    private long baseEpochMillis;
+
+    void set(long nanos, int batchId, int workerId, int type, int stage, long baseEpochMillis) {
+        this.nanos = nanos;
+        this.batchId = batchId;
+        this.workerId = workerId;
+        this.type = type;
+        this.stage = stage;
+        this.baseEpochMillis = baseEpochMillis;
+    }
+
+    /**
+     * Время от открытия журнала, нс
+     */
+    public long getNanos() { return nanos; }
+    public int getBatchId() { return batchId; }
+    public int getWorkerId() { return workerId; }
+    public TeaType getType() { return TYPES[type]; }
+
+    /**
+     * 0 — создана, 1 — обработана, 2 — упакована, 3 — куплена
+     */
+    public int getStage() { return stage; }
+
+    public String getStageName() {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * Время записи по часам (мс epoch)
+     */
+    public long getEpochMillis() {
+        return baseEpochMillis + nanos / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.6f #%d %s %s worker=%d", nanos / 1e9, batchId, getType().name(), getStageName(), workerId);
+    }
+}
@@ -0,0 +1,54 @@
+package com.teafactory.journal;
+
+import com.teafactory.model.TeaBatch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Писатель журнала одного worker.
+ * Пишет в свой захваченный блок записей без блокировок; не потокобезопасен.
+ */
+public final class JournalWriter {
+
+    private final BatchJournal journal;
+    private final short workerId;
+
+    private ByteBuffer segment;
+    private long position;
+    private long limit;
+
+    JournalWriter(BatchJournal journal, short workerId) {
+        this.journal = journal;
+        this.workerId = workerId;
+    }
+
+    /**
+     * Партия прошла стадию (0 — создана, 1 — обработана, 2 — упакована, 3 — куплена)
+     */
+    public void append(TeaBatch batch, int stage) {
+        append(System.nanoTime(), batch.getId(), batch.getType().ordinal(), stage);
+    }
+
+    public void append(long nanoTime, int batchId, int type, int stage) {
+        if (position == limit) {
+            claim();
+        }
+        int offset = journal.offsetOf(position++);
+        segment.putLong(offset, nanoTime - journal.getBaseNanos());
+        segment.putInt(offset + 8, batchId);
+        segment.putShort(offset + 12, workerId);
+        segment.put(offset + 14, (byte) type);
+        // Последним — ненулевой байт стадии: по нему читатель отличает заполненную запись
+        segment.put(offset + 15, (byte) (stage + 1));
+    }
+
+    private void claim() {
+        position = journal.claimBlock();
+        limit = position + BatchJournal.BLOCK_RECORDS;
+        segment = journal.segmentOf(position).duplicate().order(BatchJournal.ORDER);
+    }
+
+    public int getWorkerId() {
+        return workerId;
+    }
+}
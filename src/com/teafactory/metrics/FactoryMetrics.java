@@ -0,0 +1,295 @@
+package com.teafactory.metrics;
+
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Реестр метрик фабрики.
+ * ✔ Гистограммы: время партии в каждом буфере, время performWork() по стадиям,
+ *   длительность фаз, задержка партии от создания до покупки
+ * ✔ Счётчики партий по стадиям и по типам чая, пропущенных фаз
+ * ✔ Скорости стадий и типов чая за скользящие окна 1 / 10 / 60 секунд
+ * ✔ Заявки покупателей: время исполнения и доля исполненного
+ * ✔ Трассировка выборки партий: время в работе по стадиям, в очереди по буферам,
+ *   от создания до покупки по типам чая
+ * ✔ Все чтения работают на ходу, без остановки фабрики
+ */
+public class FactoryMetrics {
+
+    public static final int STAGES = 4;
+
+    /**
+     * Стандартные окна скоростей, секунды
+     */
+    public static final int[] RATE_WINDOWS = {1, 10, 60};
+
+    private static final TeaType[] TYPES = TeaType.values();
+
+    private final ConcurrentMap<String, LatencyHistogram> bufferWait = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] workTime = new LatencyHistogram[STAGES];
+    private final LatencyHistogram phaseDuration = new LatencyHistogram();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LatencyHistogram orderLatency = new LatencyHistogram();
+
+    // Трассировка: работа по стадиям, очередь после стадий 0..2, полный путь по типам
+    private final LatencyHistogram[] tracedService = new LatencyHistogram[STAGES];
+    private final LatencyHistogram[] tracedQueue = new LatencyHistogram[STAGES - 1];
+    private final LatencyHistogram[] tracedTotal = new LatencyHistogram[TYPES.length];
+
+    private final LongAdder[] stageCounts = new LongAdder[STAGES];
+    private final LongAdder skippedPhases = new LongAdder();
+
+    // Закрытые заявки: сколько подано, сколько партий запрошено и сколько досталось
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder orderedUnits = new LongAdder();
+    private final LongAdder filledUnits = new LongAdder();
+    private final LongAdder[][] typeCounts = new LongAdder[STAGES][TYPES.length];
+
+    // Скорости счётчиков партий за окна: по стадии — сначала итог стадии, затем её типы
+    private final RollingRates rates;
+
+    // Время работы фабрики для расчёта скоростей, мс
+    private final LongSupplier runtimeMillis;
+
+    public FactoryMetrics(LongSupplier runtimeMillis) {
+        this.runtimeMillis = runtimeMillis;
+        for (int stage = 0; stage < STAGES; stage++) {
+            workTime[stage] = new LatencyHistogram();
+            tracedService[stage] = new LatencyHistogram();
+            if (stage < STAGES - 1) {
+                tracedQueue[stage] = new LatencyHistogram();
+            }
+            stageCounts[stage] = new LongAdder();
+            for (int type = 0; type < TYPES.length; type++) {
+                typeCounts[stage][type] = new LongAdder();
+            }
+        }
+        for (int type = 0; type < TYPES.length; type++) {
+            tracedTotal[type] = new LatencyHistogram();
+        }
+        LongAdder[] counters = new LongAdder[STAGES * (TYPES.length + 1)];
+        for (int stage = 0; stage < STAGES; stage++) {
+            counters[rateIndex(stage)] = stageCounts[stage];
+            for (int type = 0; type < TYPES.length; type++) {
+                counters[rateIndex(stage) + 1 + type] = typeCounts[stage][type];
+            }
+        }
+        rates = new RollingRates(counters);
+    }
+
+    // ─────────── Запись ───────────
+
+    /**
+     * Сколько партия пролежала в буфере
+     */
+    public void recordBufferWait(String bufferName, long nanos) {
+        bufferWait(bufferName).record(nanos);
+    }
+
+    /**
+     * Длительность одного вызова работы worker стадии
+     */
+    public void recordWork(int stage, long nanos) {
+        workTime[stage].record(nanos);
+    }
+
+    public void recordPhase(long nanos) {
+        phaseDuration.record(nanos);
+    }
+
+    /**
+     * Фаза пропущена: у её стадии не было работы
+     */
+    public void recordPhaseSkipped() {
+        skippedPhases.increment();
+    }
+
+    /**
+     * Партия прошла стадию
+     */
+    public void recordStageDone(int stage, TeaType type) {
+        rates.advance(System.nanoTime());
+        stageCounts[stage].increment();
+        typeCounts[stage][type.ordinal()].increment();
+    }
+
+    /**
+     * Партия куплена: полная задержка от создания
+     */
+    public void recordPurchase(long createdNanos) {
+        batchLatency.record(System.nanoTime() - createdNanos);
+    }
+
+    /**
+     * Заявка закрыта (исполнена или отменена)
+     *
+     * @param latencyNanos от подачи до полного исполнения; < 0 — исполнена не полностью
+     */
+    public void recordOrder(int quantity, int filled, long latencyNanos) {
+        orders.increment();
+        orderedUnits.add(quantity);
+        filledUnits.add(filled);
+        if (latencyNanos >= 0) {
+            orderLatency.record(latencyNanos);
+        }
+    }
+
+    /**
+     * Купленная партия из выборки трассировки: разложение её пути по стадиям и буферам
+     */
+    public void recordTrace(TeaBatch batch) {
+        for (int stage = 0; stage < STAGES; stage++) {
+            tracedService[stage].record(batch.getServiceNanos(stage));
+        }
+        for (int stage = 0; stage < STAGES - 1; stage++) {
+            tracedQueue[stage].record(batch.getQueueNanos(stage));
+        }
+        tracedTotal[batch.getType().ordinal()].record(batch.getTracedNanos());
+    }
+
+    /**
+     * Заменить счётчики партий значениями из снимка [стадия][тип].
+     * Вызывается, когда рабочие потоки остановлены.
+     */
+    public void restoreCounts(long[][] counts) {
+        for (int stage = 0; stage < STAGES; stage++) {
+            stageCounts[stage].reset();
+            for (int type = 0; type < TYPES.length; type++) {
+                long count = stage < counts.length ? counts[stage][type] : 0;
+                typeCounts[stage][type].reset();
+                typeCounts[stage][type].add(count);
+                stageCounts[stage].add(count);
+            }
+        }
+        // Иначе восстановленные итоги попали бы в окна как всплеск скорости
+        rates.reset();
+    }
+
+    // ─────────── Чтение ───────────
+
+    public LatencyHistogram bufferWait(String bufferName) {
+        return bufferWait.computeIfAbsent(bufferName, name -> new LatencyHistogram());
+    }
+
+    public LatencyHistogram workTime(int stage) {
+        return workTime[stage];
+    }
+
+    public LatencyHistogram phaseDuration() {
+        return phaseDuration;
+    }
+
+    /**
+     * Сколько фаз пропущено без пробуждения workers
+     */
+    public long getSkippedPhases() {
+        return skippedPhases.sum();
+    }
+
+    public LatencyHistogram batchLatency() {
+        return batchLatency;
+    }
+
+    /**
+     * Время от подачи заявки до её полного исполнения
+     */
+    public LatencyHistogram orderLatency() {
+        return orderLatency;
+    }
+
+    /**
+     * Сколько заявок закрыто
+     */
+    public long getOrderCount() {
+        return orders.sum();
+    }
+
+    /**
+     * Доля запрошенных в закрытых заявках партий, которые им достались (0..1)
+     */
+    public double getFillRate() {
+        long ordered = orderedUnits.sum();
+        return ordered > 0 ? (double) filledUnits.sum() / ordered : 0;
+    }
+
+    /**
+     * Трассировка: время партии в работе на стадии (0..3)
+     */
+    public LatencyHistogram tracedService(int stage) {
+        return tracedService[stage];
+    }
+
+    /**
+     * Трассировка: время партии в буфере после стадии (0..2)
+     */
+    public LatencyHistogram tracedQueue(int stage) {
+        return tracedQueue[stage];
+    }
+
+    /**
+     * Трассировка: от создания до покупки для типа чая
+     */
+    public LatencyHistogram tracedTotal(TeaType type) {
+        return tracedTotal[type.ordinal()];
+    }
+
+    /**
+     * Сколько купленных партий попало в трассировку
+     */
+    public long getTracedCount() {
+        long count = 0;
+        for (LatencyHistogram histogram : tracedTotal) {
+            count += histogram.getCount();
+        }
+        return count;
+    }
+
+    public long getStageCount(int stage) {
+        return stageCounts[stage].sum();
+    }
+
+    public long getTypeCount(int stage, TeaType type) {
+        return typeCounts[stage][type.ordinal()].sum();
+    }
+
+    /**
+     * Средняя скорость стадии за всё время работы, партий/сек
+     */
+    public double getStageRate(int stage) {
+        long millis = runtimeMillis.getAsLong();
+        return millis > 0 ? getStageCount(stage) * 1000.0 / millis : 0;
+    }
+
+    public double getTypeRate(int stage, TeaType type) {
+        long millis = runtimeMillis.getAsLong();
+        return millis > 0 ? getTypeCount(stage, type) * 1000.0 / millis : 0;
+    }
+
+    /**
+     * Скорость стадии за последние windowSeconds (1..60), партий/сек
+     */
+    public double getStageRate(int stage, int windowSeconds) {
+        return rates.rate(rateIndex(stage), checkWindow(windowSeconds));
+    }
+
+    public double getTypeRate(int stage, TeaType type, int windowSeconds) {
+        return rates.rate(rateIndex(stage) + 1 + type.ordinal(), checkWindow(windowSeconds));
+    }
+
+    private static int rateIndex(int stage) {
+        return stage * (TYPES.length + 1);
+    }
+
+    private static int checkWindow(int windowSeconds) {
+        if (windowSeconds < 1 || windowSeconds > RollingRates.MAX_WINDOW_SECONDS) {
+            throw new IllegalArgumentException("Окно скорости должно быть от 1 до "
+                    + RollingRates.MAX_WINDOW_SECONDS + " секунд: " + windowSeconds);
+        }
+        return windowSeconds;
+    }
+}
@@ -0,0 +1,115 @@
+package com.teafactory.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек фиксированного размера (в стиле HdrHistogram).
+ * ✔ Лог-линейные корзины: 64 корзины на каждую степень двойки (~1.5% точности)
+ * ✔ Память постоянна (~30 КБ) при любом количестве записей
+ * ✔ Запись lock-free, чтение перцентилей не останавливает писателей
+ * Значения — в наносекундах.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;        // 64 на октаву
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;           // 0..127 — точно
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Запись одного значения (отрицательные считаются нулём)
+     */
+    public void record(long valueNanos) {
+        long value = Math.max(0, valueNanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalSum.sum() / count;
+    }
+
+    /**
+     * Значение перцентиля (0..100). Возвращает верхнюю границу корзины,
+     * то есть оценка не меньше реального значения.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public double getValueAtPercentile(double percentile, TimeUnit unit) {
+        return (double) getValueAtPercentile(percentile) / unit.toNanos(1);
+    }
+
+    /**
+     * Краткая сводка в миллисекундах: p50 / p99 / p99.9 / max
+     */
+    public String describeMillis() {
+        return String.format("p50=%.2f p99=%.2f p99.9=%.2f max=%.2f мс (n=%d)",
+                getValueAtPercentile(50, TimeUnit.MILLISECONDS),
+                getValueAtPercentile(99, TimeUnit.MILLISECONDS),
+                getValueAtPercentile(99.9, TimeUnit.MILLISECONDS),
+                getMax() / 1_000_000.0,
+                getCount());
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        // Сдвигаем так, чтобы остались старшие SUB_BUCKET_BITS+1 бит: [64..127]
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
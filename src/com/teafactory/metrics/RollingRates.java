@@ -0,0 +1,125 @@
+package com.teafactory.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Скорости счётчиков за скользящие окна до 60 секунд.
+ * ✔ Писатели только увеличивают свои LongAdder — общих ячеек и блокировок у них нет
+ * ✔ Каждые 100 мс итоги всех счётчиков записываются в кольцо отсчётов фиксированного размера
+ * ✔ Скорость за окно — разница двух отсчётов, делённая на окно: чтение O(1), корзины не суммируются
+ * ✔ Своего потока нет: отсчёт снимает тот, кто первым заметил, что шаг прошёл (писатель или читатель).
+ *   Пропущенные шаги заполняются тем же итогом — раз отсчёта не было, не было и записей
+ *
+ * Кольцо защищено StampedLock: отсчёт снимается под tryWriteLock (занято — значит, его уже снимают),
+ * читатели обходятся оптимистичным чтением.
+ */
+final class RollingRates {
+
+    static final int MAX_WINDOW_SECONDS = 60;
+
+    private static final long TICK_NANOS = 100_000_000L;
+    private static final int TICKS_PER_SECOND = 10;
+    private static final int SLOTS = MAX_WINDOW_SECONDS * TICKS_PER_SECOND + 1;
+
+    private final LongAdder[] counters;
+    private final long baseNanos;
+
+    // [шаг % SLOTS][счётчик] — итоги счётчиков на начало шага (под ring)
+    private final long[][] samples;
+    private final StampedLock ring = new StampedLock();
+
+    // Последний записанный шаг и первый, с которого отсчёты достоверны (под ring)
+    private long head;
+    private long firstTick;
+
+    // Когда снимать следующий отсчёт: писатели проверяют без блокировки
+    private volatile long nextTickNanos;
+
+    RollingRates(LongAdder[] counters) {
+        this.counters = counters;
+        this.samples = new long[SLOTS][counters.length];
+        this.baseNanos = System.nanoTime();
+        this.nextTickNanos = baseNanos + TICK_NANOS;
+    }
+
+    /**
+     * Снять отсчёт, если шаг прошёл. Вызывать до увеличения счётчика.
+     */
+    void advance(long now) {
+        if (now - nextTickNanos < 0) {
+            return;
+        }
+        long stamp = ring.tryWriteLock();
+        if (stamp == 0) {
+            return; // отсчёт снимает другой поток
+        }
+        try {
+            long tick = (now - baseNanos) / TICK_NANOS;
+            if (tick <= head) {
+                return;
+            }
+            long[] totals = totals();
+            // Старше самого длинного окна заполнять незачем
+            for (long t = Math.max(head + 1, tick - SLOTS + 1); t <= tick; t++) {
+                System.arraycopy(totals, 0, samples[(int) (t % SLOTS)], 0, totals.length);
+            }
+            head = tick;
+            nextTickNanos = baseNanos + (tick + 1) * TICK_NANOS;
+        } finally {
+            ring.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Начать окна заново (счётчики заменены, например, из снимка)
+     */
+    void reset() {
+        long stamp = ring.writeLock();
+        try {
+            long tick = Math.max(head, (System.nanoTime() - baseNanos) / TICK_NANOS);
+            System.arraycopy(totals(), 0, samples[(int) (tick % SLOTS)], 0, counters.length);
+            head = tick;
+            firstTick = tick;
+            nextTickNanos = baseNanos + (tick + 1) * TICK_NANOS;
+        } finally {
+            ring.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Событий в секунду за последние windowSeconds (в начале работы — за сколько есть отсчётов)
+     */
+    double rate(int counter, int windowSeconds) {
+        advance(System.nanoTime());
+        long stamp = ring.tryOptimisticRead();
+        double rate = compute(counter, windowSeconds);
+        if (!ring.validate(stamp)) {
+            stamp = ring.readLock();
+            try {
+                rate = compute(counter, windowSeconds);
+            } finally {
+                ring.unlockRead(stamp);
+            }
+        }
+        return rate;
+    }
+
+    private double compute(int counter, int windowSeconds) {
+        long last = head;
+        long from = Math.max(firstTick, last - (long) windowSeconds * TICKS_PER_SECOND);
+        if (from >= last) {
+            return 0;
+        }
+        long delta = samples[(int) (last % SLOTS)][counter] - samples[(int) (from % SLOTS)][counter];
+        return delta * (double) TICKS_PER_SECOND / (last - from);
+    }
+
+    private long[] totals() {
+        long[] totals = new long[counters.length];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = counters[i].sum();
+        }
+        return totals;
+    }
+}
@@ -8,9 +8,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class TeaBatch {
     private static final AtomicInteger counter = new AtomicInteger(0);
 
+    /**
+     * Отметки трассировки: начало и конец каждой из 4 стадий.
+     * Между концом стадии s и началом s + 1 партия лежит в буфере.
+     */
+    public static final int TRACE_POINTS = 8;
+
     private final int id;
     private final TeaType type;
+    private final long createdNanos; // момент создания (System.nanoTime)
     private volatile String stage; // RAW, PROCESSED, PACKED
+    private volatile long enqueuedNanos; // когда партия положена в текущий буфер
+
+    // Отметки трассировки (null — партия не попала в выборку). Пишут workers по очереди:
+    // передача через буфер упорядочивает записи разных потоков
+    private long[] trace;
 
     public TeaBatch(TeaType type) {
         if (type == null) {
@@ -19,6 +31,113 @@ public class TeaBatch {
         this.id = counter.incrementAndGet();
         this.type = type;
         this.stage = "RAW";
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * Партия из снимка фабрики: id сохраняется, счётчик не трогается
+     * (его продвигает advanceIdSequence)
+     */
+    public TeaBatch(int id, TeaType type, String stage, long createdNanos) {
+        if (type == null) {
+            throw new IllegalArgumentException("TeaType не может быть null");
+        }
+        this.id = id;
+        this.type = type;
+        setStage(stage);
+        this.createdNanos = createdNanos;
+    }
+
+    /**
+     * Последний выданный id
+     */
+    public static int getIdSequence() {
+        return counter.get();
+    }
+
+    /**
+     * Продолжить нумерацию не раньше lastId: новые партии не повторят id восстановленных
+     */
+    public static void advanceIdSequence(int lastId) {
+        counter.accumulateAndGet(lastId, Math::max);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TeaType getType() {
+        return type;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * Отметка момента помещения в буфер (для замера времени ожидания)
+     */
+    public void markEnqueued() {
+        this.enqueuedNanos = System.nanoTime();
+    }
+
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    /**
+     * Включить трассировку: первая отметка — момент создания
+     */
+    public void startTrace() {
+        trace = new long[TRACE_POINTS];
+        trace[0] = createdNanos;
+    }
+
+    public boolean isTraced() {
+        return trace != null;
+    }
+
+    /**
+     * Стадия (0..3) началась: партия взята из буфера
+     */
+    public void traceStart(int stage, long nanos) {
+        if (trace != null) {
+            trace[2 * stage] = nanos;
+        }
+    }
+
+    /**
+     * Стадия (0..3) завершена: партия отдана в буфер или куплена
+     */
+    public void traceDone(int stage, long nanos) {
+        if (trace != null) {
+            trace[2 * stage + 1] = nanos;
+        }
+    }
+
+    /**
+     * Время в работе на стадии, нс
+     */
+    public long getServiceNanos(int stage) {
+        return trace[2 * stage + 1] - trace[2 * stage];
+    }
+
+    /**
+     * Время в буфере после стадии (0..2), нс
+     */
+    public long getQueueNanos(int stage) {
+        return trace[2 * stage + 2] - trace[2 * stage + 1];
+    }
+
+    /**
+     * От создания до покупки, нс
+     */
+    public long getTracedNanos() {
+        return trace[TRACE_POINTS - 1] - trace[0];
     }
 
     // Этот метод НУЖЕН - вызывается в воркерах
@@ -31,6 +150,13 @@ public class TeaBatch {
 
     @Override
     public String toString() {
-        return String.format("Партия #%d [%s] (%s)", id, type.getDisplayName(), stage);
+        return describe(id, type, stage);
+    }
+
+    /**
+     * Текстовое описание партии (используется и при ленивом форматировании событий)
+     */
+    public static String describe(int id, TeaType type, String stage) {
+        return "Партия #" + id + " [" + type.getDisplayName() + "] (" + stage + ")";
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package com.teafactory.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Спрос покупателей: какие сорта чая хочет каждый покупатель.
+ * ✔ ANY — любой покупатель берёт любой сорт (как раньше)
+ * ✔ SINGLE — каждый покупатель хочет один сорт, сорта раздаются по кругу
+ * ✔ Свой список профилей: "GREEN+MATCHA,BLACK,PUER+OOLONG+WHITE" — профили
+ *   через запятую, сорта профиля через "+", покупатели получают профили по кругу
+ *
+ * Неизменяемый: один объект можно отдавать нескольким фабрикам.
+ */
+public final class TeaDemand {
+
+    public static final TeaDemand ANY = new TeaDemand(Collections.emptyList());
+
+    private static final Set<TeaType> ALL = Collections.unmodifiableSet(EnumSet.allOf(TeaType.class));
+
+    // Пустой список — ANY
+    private final List<Set<TeaType>> profiles;
+
+    private TeaDemand(List<Set<TeaType>> profiles) {
+        this.profiles = profiles;
+    }
+
+    /**
+     * Профили в порядке раздачи покупателям
+     */
+    public static TeaDemand of(List<? extends Set<TeaType>> profiles) {
+        if (profiles.isEmpty()) {
+            return ANY;
+        }
+        List<Set<TeaType>> copy = new ArrayList<>(profiles.size());
+        for (Set<TeaType> profile : profiles) {
+            if (profile == null || profile.isEmpty()) {
+                throw new IllegalArgumentException("Профиль спроса не может быть пустым");
+            }
+            copy.add(Collections.unmodifiableSet(EnumSet.copyOf(profile)));
+        }
+        return new TeaDemand(Collections.unmodifiableList(copy));
+    }
+
+    /**
+     * По одному сорту на покупателя, по порядку TeaType
+     */
+    public static TeaDemand single() {
+        List<Set<TeaType>> profiles = new ArrayList<>();
+        for (TeaType type : TeaType.values()) {
+            profiles.add(EnumSet.of(type));
+        }
+        return of(profiles);
+    }
+
+    /**
+     * "ANY", "SINGLE" или список профилей "GREEN+MATCHA,BLACK"
+     */
+    public static TeaDemand parse(String value) {
+        String trimmed = value.trim().toUpperCase(Locale.ROOT);
+        if (trimmed.isEmpty() || "ANY".equals(trimmed)) {
+            return ANY;
+        }
+        if ("SINGLE".equals(trimmed)) {
+            return single();
+        }
+        List<Set<TeaType>> profiles = new ArrayList<>();
+        for (String profile : trimmed.split(",")) {
+            Set<TeaType> types = EnumSet.noneOf(TeaType.class);
+            for (String type : profile.split("\\+")) {
+                try {
+                    types.add(TeaType.valueOf(type.trim()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Неизвестный сорт чая в спросе: " + type.trim());
+                }
+            }
+            profiles.add(types);
+        }
+        return of(profiles);
+    }
+
+    public boolean isAny() {
+        return profiles.isEmpty();
+    }
+
+    public int getProfileCount() {
+        return profiles.size();
+    }
+
+    /**
+     * Профиль покупателя с номером index (с 0): профили раздаются по кругу
+     */
+    public Set<TeaType> profileFor(int index) {
+        return profiles.isEmpty() ? ALL : profiles.get(index % profiles.size());
+    }
+
+    /**
+     * Сорта, которых не хочет ни один из первых buyers покупателей:
+     * такие партии копились бы на складе, пока он не переполнится
+     */
+    public Set<TeaType> uncovered(int buyers) {
+        Set<TeaType> uncovered = EnumSet.allOf(TeaType.class);
+        for (int i = 0; i < buyers && !uncovered.isEmpty(); i++) {
+            uncovered.removeAll(profileFor(i));
+        }
+        return uncovered;
+    }
+
+    @Override
+    public String toString() {
+        if (profiles.isEmpty()) {
+            return "ANY";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Set<TeaType> profile : profiles) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            boolean first = true;
+            for (TeaType type : profile) {
+                if (!first) {
+                    sb.append('+');
+                }
+                sb.append(type.name());
+                first = false;
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -1,6 +1,6 @@
 package com.teafactory.model;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 
 /**
  * Перечисление типов чая, производимых на фабрике
@@ -27,10 +27,9 @@ public enum TeaType {
     }
 
     /**
-     * Получить случайный тип чая
+     * Случайный тип из собственного потока worker (воспроизводимо при заданном seed)
      */
-    public static TeaType random() {
-        int index = ThreadLocalRandom.current().nextInt(VALUES.length);
-        return VALUES[index];
+    public static TeaType random(SplittableRandom random) {
+        return VALUES[random.nextInt(VALUES.length)];
     }
 }
\ No newline at end of file
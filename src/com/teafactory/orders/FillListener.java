@@ -0,0 +1,14 @@
+package com.teafactory.orders;
+
+import com.teafactory.model.TeaBatch;
+
+/**
+ * Уведомление об исполнении заявки.
+ * Вызывается вне блокировки книги, в потоке, который вызвал исполнение:
+ * у фасовщика — при поступлении партии, у покупателя — при подаче заявки на товар со склада.
+ */
+@FunctionalInterface
+public interface FillListener {
+
+    void onFill(TeaOrder order, TeaBatch batch);
+}
@@ -0,0 +1,543 @@
+package com.teafactory.orders;
+
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Книга заявок на месте ReadyBuffer: покупатели подают заявки (сорта + количество),
+ * упакованные партии сводятся с ними.
+ * ✔ Подача заявки: сначала забирает подходящие партии со склада (самые давние),
+ *   остаток ждёт в очередях заявок своих сортов
+ * ✔ Поступившая партия (put/offer) сразу отдаётся самой ранней заявке её сорта —
+ *   приоритет по времени подачи (FIFO); заявок нет — партия ложится на склад
+ * ✔ Партия будит только владельца заявки: у каждой заявки свой Condition
+ * ✔ Открытые заявки видны (getRestingOrders): неудовлетворённый спрос не прячется
+ * ✔ Обычные операции TeaBuffer: take()/takeUpTo() — анонимная заявка на любой сорт,
+ *   poll()/drainTo() — прямо со склада
+ *
+ * Вместимость ограничивает только склад. Партии, доставшиеся заявкам, принадлежат
+ * покупателям и место не занимают. Отменённая заявка возвращает незабранные партии
+ * в книгу: другим заявкам или на склад (в этом случае склад может ненадолго превысить вместимость).
+ */
+public class OrderBook implements TeaBuffer {
+
+    private static final Set<TeaType> ALL = Collections.unmodifiableSet(EnumSet.allOf(TeaType.class));
+
+    private final EnumMap<TeaType, ArrayDeque<TeaBatch>> stock = new EnumMap<>(TeaType.class);
+    // Открытые заявки по сортам в порядке подачи; заявка на несколько сортов стоит в каждой
+    // своей очереди, закрытые убираются, когда оказываются в голове
+    private final EnumMap<TeaType, ArrayDeque<TeaOrder>> bids = new EnumMap<>(TeaType.class);
+    private final ReentrantLock lock;
+    private final Condition notFull;
+
+    private final int capacity;
+    private final String name;
+
+    // Под lock
+    private int stockSize;
+    private long lastOrderId;
+
+    // Для чтения без блокировки (пишутся только под lock)
+    private volatile int count;
+    private volatile int restingOrders;
+    private volatile int undelivered;
+    private final AtomicIntegerArray typeCounts = new AtomicIntegerArray(TeaType.values().length);
+
+    public OrderBook(int capacity, String name) {
+        this(capacity, name, false);
+    }
+
+    /**
+     * @param fair честная блокировка книги; по умолчанию нет — каждый держит её
+     *             на O(1) операций, а ждут не на ней, а на Condition своей заявки
+     */
+    public OrderBook(int capacity, String name, boolean fair) {
+        this.capacity = capacity;
+        this.name = name;
+        this.lock = new ReentrantLock(fair);
+        this.notFull = lock.newCondition();
+        for (TeaType type : TeaType.values()) {
+            stock.put(type, new ArrayDeque<>());
+            bids.put(type, new ArrayDeque<>());
+        }
+    }
+
+    // ─────────── Заявки ───────────
+
+    /**
+     * Подать заявку: quantity партий любого из сортов types.
+     * Подходящие партии со склада достаются ей сразу, остаток ждёт поступлений.
+     *
+     * @param listener уведомление о каждом исполнении (null — без уведомлений)
+     */
+    public TeaOrder submit(String owner, Set<TeaType> types, int quantity, FillListener listener) {
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("В заявке нужен хотя бы один сорт");
+        }
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Количество в заявке должно быть >= 1");
+        }
+        Set<TeaType> wanted = types.size() == ALL.size() ? ALL : Collections.unmodifiableSet(EnumSet.copyOf(types));
+
+        TeaOrder order;
+        List<TeaBatch> filled = null;
+        lock.lock();
+        try {
+            order = new TeaOrder(++lastOrderId, owner, wanted, quantity, listener, lock.newCondition());
+            TeaBatch batch;
+            while (!order.isComplete() && (batch = removeOldest(wanted)) != null) {
+                deliver(order, batch);
+                if (listener != null) {
+                    if (filled == null) {
+                        filled = new ArrayList<>();
+                    }
+                    filled.add(batch);
+                }
+            }
+            if (order.getFilled() > 0) {
+                notFull.signalAll();
+            }
+            if (!order.isComplete()) {
+                rest(order);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (filled != null) {
+            for (TeaBatch batch : filled) {
+                listener.onFill(order, batch);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Забрать доставленные заявке партии, дождавшись хотя бы одной.
+     * Пустой список — заявка закрыта, а партий в ней не осталось.
+     * Закрыта ли заявка, смотреть по TeaOrder.isSettled(), а не isClosed():
+     * последняя партия могла прийти уже после того, как доставленное забрали.
+     */
+    public List<TeaBatch> awaitFills(TeaOrder order) throws InterruptedException {
+        lock.lock();
+        try {
+            while (order.deliveries.isEmpty() && !order.isClosed()) {
+                order.filledCondition.await();
+            }
+            return collect(order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Забрать доставленные заявке партии без ожидания
+     */
+    public List<TeaBatch> collectFills(TeaOrder order) {
+        lock.lock();
+        try {
+            return collect(order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отменить заявку. Доставленные, но не забранные партии возвращаются в книгу:
+     * сначала другим заявкам, иначе в голову склада.
+     */
+    public void cancel(TeaOrder order) {
+        List<TeaOrder> orders = new ArrayList<>(0);
+        List<TeaBatch> batches = new ArrayList<>(0);
+        lock.lock();
+        try {
+            closeLocked(order);
+            for (TeaBatch batch : collect(order)) {
+                TeaOrder other = match(batch);
+                if (other != null) {
+                    orders.add(other);
+                    batches.add(batch);
+                } else {
+                    addStock(batch, true);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyFills(orders, batches);
+    }
+
+    /**
+     * Открытых заявок (неудовлетворённый спрос), без блокировки
+     */
+    public int getRestingOrders() {
+        return restingOrders;
+    }
+
+    /**
+     * Есть ли партии, доставленные заявкам и ещё не забранные покупателями
+     */
+    public boolean hasUndeliveredFills() {
+        return undelivered > 0;
+    }
+
+    // ─────────── Поступление партий ───────────
+
+    /**
+     * Партия отдаётся открытой заявке; если заявок на её сорт нет — ложится на склад
+     * (ожидая места, если склад полон)
+     */
+    @Override
+    public void put(TeaBatch batch) throws InterruptedException {
+        TeaOrder order;
+        lock.lock();
+        try {
+            while ((order = match(batch)) == null && stockSize >= capacity) {
+                notFull.await();
+            }
+            if (order == null) {
+                addStock(batch, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyFill(order, batch);
+    }
+
+    @Override
+    public boolean offer(TeaBatch batch) {
+        TeaOrder order;
+        lock.lock();
+        try {
+            order = match(batch);
+            if (order == null) {
+                if (stockSize >= capacity) {
+                    return false;
+                }
+                addStock(batch, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyFill(order, batch);
+        return true;
+    }
+
+    @Override
+    public int putAll(Collection<TeaBatch> batches) {
+        if (batches.isEmpty()) {
+            return 0;
+        }
+        int added = 0;
+        List<TeaOrder> orders = new ArrayList<>(batches.size());
+        List<TeaBatch> matched = new ArrayList<>(batches.size());
+        lock.lock();
+        try {
+            for (TeaBatch batch : batches) {
+                TeaOrder order;
+                while ((order = match(batch)) == null && stockSize >= capacity) {
+                    notFull.await();
+                }
+                if (order != null) {
+                    orders.add(order);
+                    matched.add(batch);
+                } else {
+                    addStock(batch, false);
+                }
+                added++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+            notifyFills(orders, matched);
+        }
+        return added;
+    }
+
+    // ─────────── Операции TeaBuffer со стороны покупателя ───────────
+
+    /**
+     * Анонимная заявка на одну партию любого сорта
+     */
+    @Override
+    public TeaBatch take() throws InterruptedException {
+        return takeUpTo(1).get(0);
+    }
+
+    /**
+     * Со склада, без заявки
+     */
+    @Override
+    public TeaBatch poll() {
+        lock.lock();
+        try {
+            TeaBatch batch = removeOldest(ALL);
+            if (batch != null) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Со склада, без заявки (давние — первыми)
+     */
+    @Override
+    public int drainTo(Collection<? super TeaBatch> target, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("drainTo: max должно быть >= 1, получено " + max);
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            TeaBatch batch;
+            while (drained < max && (batch = removeOldest(ALL)) != null) {
+                target.add(batch);
+                drained++;
+            }
+            if (drained > 0) {
+                notFull.signalAll();
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Анонимная заявка на n партий любого сорта: ждёт первую, остаток заявки отменяется
+     */
+    @Override
+    public List<TeaBatch> takeUpTo(int n) throws InterruptedException {
+        if (n < 1) {
+            throw new IllegalArgumentException("takeUpTo: n должно быть >= 1, получено " + n);
+        }
+        TeaOrder order;
+        List<TeaBatch> batches;
+        do {
+            // Пусто — заявку закрыл clear(): подаём новую
+            order = submit(name, ALL, n, null);
+            try {
+                batches = awaitFills(order);
+            } catch (InterruptedException e) {
+                cancel(order);
+                throw e;
+            }
+        } while (batches.isEmpty());
+        if (!order.isClosed()) {
+            lock.lock();
+            try {
+                closeLocked(order);
+                // Могли прийти, пока мы выходили из ожидания
+                batches.addAll(collect(order));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return batches;
+    }
+
+    // ─────────── Размеры ───────────
+
+    /**
+     * Партий на складе (доставленные заявкам не считаются)
+     */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return stockSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int peekSizeUnsafe() {
+        return count;
+    }
+
+    /**
+     * Партий нужных сортов на складе, без блокировки
+     */
+    public int peekSizeUnsafe(Set<TeaType> types) {
+        int total = 0;
+        for (TeaType type : types) {
+            total += typeCounts.get(type.ordinal());
+        }
+        return total;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + name + ": " + count + "/" + capacity + ", заявок: " + restingOrders + "]";
+    }
+
+    /**
+     * Очистить склад и забыть открытые заявки (перед новым запуском, когда покупателей нет)
+     */
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            for (ArrayDeque<TeaBatch> queue : stock.values()) {
+                queue.clear();
+            }
+            for (ArrayDeque<TeaOrder> queue : bids.values()) {
+                for (TeaOrder order : queue) {
+                    closeLocked(order);
+                }
+                queue.clear();
+            }
+            for (int i = 0; i < typeCounts.length(); i++) {
+                typeCounts.set(i, 0);
+            }
+            stockSize = 0;
+            count = 0;
+            undelivered = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ─────────── Под lock ───────────
+
+    /**
+     * Отдать партию самой ранней открытой заявке её сорта
+     *
+     * @return заявка, которой досталась партия; null — открытых заявок на сорт нет
+     */
+    private TeaOrder match(TeaBatch batch) {
+        ArrayDeque<TeaOrder> queue = bids.get(batch.getType());
+        TeaOrder order;
+        while ((order = queue.peekFirst()) != null && order.isClosed()) {
+            queue.pollFirst();
+        }
+        if (order != null) {
+            deliver(order, batch);
+        }
+        return order;
+    }
+
+    private void deliver(TeaOrder order, TeaBatch batch) {
+        order.fill(batch);
+        undelivered++;
+        if (order.isComplete() && order.resting) {
+            order.resting = false;
+            restingOrders--;
+        }
+        order.filledCondition.signal();
+    }
+
+    private void rest(TeaOrder order) {
+        for (TeaType type : order.getTypes()) {
+            bids.get(type).addLast(order);
+        }
+        order.resting = true;
+        restingOrders++;
+        // Фасовщик, ждущий места на складе, может отдать партию этой заявке
+        notFull.signalAll();
+    }
+
+    /**
+     * Заявка больше не принимает партии; из очередей сортов она уйдёт сама
+     */
+    private void closeLocked(TeaOrder order) {
+        if (!order.isClosed()) {
+            order.cancel();
+        }
+        if (order.resting) {
+            order.resting = false;
+            restingOrders--;
+        }
+        order.filledCondition.signalAll();
+    }
+
+    /**
+     * Забрать доставленное; закрытая заявка после этого рассчитана — партий в ней больше не будет
+     */
+    private List<TeaBatch> collect(TeaOrder order) {
+        List<TeaBatch> batches = new ArrayList<>(order.deliveries);
+        order.deliveries.clear();
+        undelivered -= batches.size();
+        if (order.isClosed()) {
+            order.settle();
+        }
+        return batches;
+    }
+
+    private void addStock(TeaBatch batch, boolean first) {
+        ArrayDeque<TeaBatch> queue = stock.get(batch.getType());
+        if (first) {
+            queue.addFirst(batch);
+        } else {
+            queue.addLast(batch);
+        }
+        typeCounts.set(batch.getType().ordinal(), queue.size());
+        count = ++stockSize;
+    }
+
+    /**
+     * Самая давняя партия склада среди нужных сортов; null — таких нет
+     */
+    private TeaBatch removeOldest(Set<TeaType> types) {
+        ArrayDeque<TeaBatch> oldest = null;
+        for (TeaType type : types) {
+            ArrayDeque<TeaBatch> queue = stock.get(type);
+            TeaBatch head = queue.peekFirst();
+            if (head != null && (oldest == null || head.getEnqueuedNanos() < oldest.peekFirst().getEnqueuedNanos())) {
+                oldest = queue;
+            }
+        }
+        if (oldest == null) {
+            return null;
+        }
+        TeaBatch batch = oldest.removeFirst();
+        typeCounts.set(batch.getType().ordinal(), oldest.size());
+        count = --stockSize;
+        return batch;
+    }
+
+    // ─────────── Вне lock ───────────
+
+    private void notifyFills(List<TeaOrder> orders, List<TeaBatch> batches) {
+        for (int i = 0; i < orders.size(); i++) {
+            notifyFill(orders.get(i), batches.get(i));
+        }
+    }
+
+    /**
+     * @param order заявка, которой досталась партия; null — партия ушла на склад
+     */
+    private static void notifyFill(TeaOrder order, TeaBatch batch) {
+        if (order != null && order.getListener() != null) {
+            order.getListener().onFill(order, batch);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.teafactory.orders;
+
+import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * Заявка покупателя в книге заявок: quantity партий любого из сортов types.
+ * ✔ Исполняется частями: каждая подходящая партия — одно исполнение (fill)
+ * ✔ Исполненные партии ждут в заявке, пока владелец их не заберёт
+ * ✔ Свой Condition у каждой заявки: партия будит только владельца своей заявки
+ *
+ * Изменяемое состояние меняет только OrderBook под своей блокировкой;
+ * снаружи заявка читается без блокировки (filled, статус).
+ */
+public final class TeaOrder {
+
+    private final long id;
+    private final String owner;
+    private final Set<TeaType> types;
+    private final int quantity;
+    private final long submittedNanos;
+    private final FillListener listener;
+
+    // Под блокировкой книги
+    final ArrayDeque<TeaBatch> deliveries = new ArrayDeque<>();
+    final Condition filledCondition;
+    boolean resting;
+
+    private volatile int filled;
+    private volatile boolean cancelled;
+    private volatile long completedNanos;
+    private volatile boolean settled;
+
+    TeaOrder(long id, String owner, Set<TeaType> types, int quantity, FillListener listener, Condition filledCondition) {
+        this.id = id;
+        this.owner = owner;
+        this.types = types;
+        this.quantity = quantity;
+        this.listener = listener;
+        this.filledCondition = filledCondition;
+        this.submittedNanos = System.nanoTime();
+    }
+
+    /**
+     * Партия досталась заявке (под блокировкой книги)
+     */
+    void fill(TeaBatch batch) {
+        deliveries.addLast(batch);
+        int count = filled + 1;
+        filled = count;
+        if (count == quantity) {
+            completedNanos = System.nanoTime();
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    void settle() {
+        settled = true;
+    }
+
+    FillListener getListener() {
+        return listener;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Set<TeaType> getTypes() {
+        return types;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Сколько партий уже досталось заявке (включая ещё не забранные)
+     */
+    public int getFilled() {
+        return filled;
+    }
+
+    public boolean isComplete() {
+        return filled == quantity;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Заявка больше не ждёт партий: исполнена полностью или отменена
+     */
+    public boolean isClosed() {
+        return cancelled || filled == quantity;
+    }
+
+    /**
+     * Заявка закрыта, и владелец забрал всё, что ей досталось
+     */
+    public boolean isSettled() {
+        return settled;
+    }
+
+    public long getSubmittedNanos() {
+        return submittedNanos;
+    }
+
+    /**
+     * От подачи до полного исполнения, нс; -1 — заявка не исполнена полностью
+     */
+    public long getLatencyNanos() {
+        return isComplete() ? completedNanos - submittedNanos : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "Заявка #" + id + " " + owner + " " + types + " " + filled + "/" + quantity
+                + (cancelled ? " (отменена)" : "");
+    }
+}
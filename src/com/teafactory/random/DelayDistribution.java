@@ -0,0 +1,169 @@
+package com.teafactory.random;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Распределение времени работы стадии. Параметры — в миллисекундах.
+ * ✔ CONSTANT — всегда одно значение
+ * ✔ UNIFORM — равномерно от min до max (как раньше)
+ * ✔ EXPONENTIAL — с заданным средним (случайные поступления)
+ * ✔ LOG_NORMAL — с заданной медианой и разбросом sigma (длинный хвост)
+ *
+ * Текстовая форма (для .properties и CLI): "500", "300-900", "exp:500", "lognormal:400:0.6".
+ * Объект неизменяемый; случайный поток передаётся снаружи.
+ */
+public final class DelayDistribution {
+
+    public enum Kind {
+        CONSTANT, UNIFORM, EXPONENTIAL, LOG_NORMAL
+    }
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final Kind kind;
+    private final double first;   // constant / min / mean / median
+    private final double second;  // max / sigma
+
+    private DelayDistribution(Kind kind, double first, double second) {
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+    }
+
+    public static DelayDistribution constant(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Задержка не может быть отрицательной");
+        }
+        return new DelayDistribution(Kind.CONSTANT, millis, millis);
+    }
+
+    public static DelayDistribution uniform(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Некорректный диапазон задержки");
+        }
+        return minMillis == maxMillis
+                ? constant(minMillis)
+                : new DelayDistribution(Kind.UNIFORM, minMillis, maxMillis);
+    }
+
+    public static DelayDistribution exponential(double meanMillis) {
+        if (!(meanMillis > 0)) {
+            throw new IllegalArgumentException("Среднее экспоненциальной задержки должно быть положительным");
+        }
+        return new DelayDistribution(Kind.EXPONENTIAL, meanMillis, 0);
+    }
+
+    /**
+     * @param medianMillis медиана (e^mu)
+     * @param sigma        стандартное отклонение логарифма
+     */
+    public static DelayDistribution logNormal(double medianMillis, double sigma) {
+        if (!(medianMillis > 0) || !(sigma >= 0)) {
+            throw new IllegalArgumentException("Некорректные параметры логнормальной задержки");
+        }
+        return new DelayDistribution(Kind.LOG_NORMAL, medianMillis, sigma);
+    }
+
+    /**
+     * Разбор текстовой формы: "N", "MIN-MAX", "exp:MEAN", "lognormal:MEDIAN:SIGMA"
+     */
+    public static DelayDistribution parse(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (value.startsWith("exp:")) {
+                return exponential(Double.parseDouble(value.substring(4)));
+            }
+            if (value.startsWith("lognormal:")) {
+                String[] parts = value.substring(10).split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Ожидается lognormal:MEDIAN:SIGMA: " + text);
+                }
+                return logNormal(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]));
+            }
+            int dash = value.indexOf('-');
+            if (dash < 0) {
+                return constant(Long.parseLong(value));
+            }
+            return uniform(Long.parseLong(value.substring(0, dash).trim()),
+                    Long.parseLong(value.substring(dash + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректная задержка: " + text);
+        }
+    }
+
+    /**
+     * Одна задержка, нс
+     */
+    public long sampleNanos(SplittableRandom random) {
+        switch (kind) {
+            case CONSTANT:
+                return (long) (first * NANOS_PER_MILLI);
+            case UNIFORM: {
+                long min = (long) (first * NANOS_PER_MILLI);
+                long max = (long) (second * NANOS_PER_MILLI);
+                return min + (long) (random.nextDouble() * (max - min));
+            }
+            case EXPONENTIAL:
+                return (long) (-first * Math.log(1.0 - random.nextDouble()) * NANOS_PER_MILLI);
+            case LOG_NORMAL:
+                return (long) (first * Math.exp(second * random.nextGaussian()) * NANOS_PER_MILLI);
+            default:
+                throw new IllegalStateException(kind.name());
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Среднее значение, мс
+     */
+    public double getMeanMillis() {
+        switch (kind) {
+            case UNIFORM: return (first + second) / 2;
+            case LOG_NORMAL: return first * Math.exp(second * second / 2);
+            default: return first;
+        }
+    }
+
+    /**
+     * Задержка всегда нулевая
+     */
+    public boolean isZero() {
+        return kind == Kind.CONSTANT && first == 0;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CONSTANT: return format(first);
+            case UNIFORM: return format(first) + "-" + format(second);
+            case EXPONENTIAL: return "exp:" + format(first);
+            default: return "lognormal:" + format(first) + ":" + format(second);
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DelayDistribution)) {
+            return false;
+        }
+        DelayDistribution other = (DelayDistribution) o;
+        return kind == other.kind && first == other.first && second == other.second;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, first, second);
+    }
+}
@@ -0,0 +1,39 @@
+package com.teafactory.random;
+
+import java.util.SplittableRandom;
+
+/**
+ * Источник случайности одного запуска: главный seed и независимые потоки для workers.
+ * ✔ У каждого worker свой SplittableRandom — никакого общего состояния между потоками
+ * ✔ Потоки выдаются split() по порядку создания workers: тот же seed — та же нагрузка
+ *
+ * split() не потокобезопасен: его вызывает только тот, кто создаёт workers.
+ */
+public final class RandomSource {
+
+    private final long seed;
+    private final SplittableRandom master;
+
+    public RandomSource(long seed) {
+        this.seed = seed;
+        this.master = new SplittableRandom(seed);
+    }
+
+    /**
+     * Случайный seed для запуска без явно заданного
+     */
+    public static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Независимый поток для следующего worker
+     */
+    public SplittableRandom split() {
+        return master.split();
+    }
+}
@@ -0,0 +1,518 @@
+package com.teafactory.sim;
+
+import com.teafactory.core.FactoryConfig;
+import com.teafactory.core.LineMode;
+import com.teafactory.core.RunMode;
+import com.teafactory.metrics.LatencyHistogram;
+import com.teafactory.model.TeaType;
+import com.teafactory.random.DelayDistribution;
+import com.teafactory.random.RandomSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дискретно-событийная симуляция фабрики в виртуальном времени.
+ * ✔ Вместо Thread.sleep — виртуальные часы и очередь событий "worker закончил работу"
+ * ✔ Один поток, фиксированный seed — прогон полностью воспроизводим
+ * ✔ Случайные потоки workers выдаются в том же порядке, что у TeaFactory:
+ *   при одном seed каждый worker получает те же задержки и типы чая
+ * ✔ Та же топология (FactoryConfig) и те же правила стадий, что у потоковой фабрики:
+ *   фазы PHASED по очереди (фаза без работы пропускается), в PIPELINED все стадии сразу
+ *   с ожиданием на буферах
+ * ✔ Партии — числа в кольцевых буферах, на партию не создаётся ни одного объекта
+ *
+ * Поток-worker становится автоматом с тремя состояниями: ждёт вход, работает, ждёт место на выходе.
+ * Симуляция не использует TeaFactory, EventBus и Phaser и не публикует событий.
+ * Спрос покупателей (buyer.demand) не моделируется: покупатель берёт партию любого сорта.
+ */
+public class DiscreteEventSimulator {
+
+    private static final int SUPPLY = 0;
+    private static final int PROCESS = 1;
+    private static final int PACK = 2;
+    private static final int CONSUME = 3;
+    private static final int STAGES = 4;
+
+    private static final int TYPE_COUNT = TeaType.values().length;
+
+    // Состояния worker
+    private static final byte IDLE = 0;         // готов взять следующую работу
+    private static final byte WAIT_INPUT = 1;   // входной буфер пуст
+    private static final byte WORKING = 2;      // ждёт своего события в очереди
+    private static final byte WAIT_OUTPUT = 3;  // не всё поместилось в выходной буфер
+
+    private final FactoryConfig config;
+    private final long seed;
+    private final boolean phased;
+    private final int batchSize;
+
+    private SplittableRandom[] randoms;
+    private final EventQueue queue = new EventQueue();
+    private final SimBuffer.IntQueue wakeups = new SimBuffer.IntQueue();
+
+    // Виртуальные часы, нс от начала прогона
+    private long now;
+
+    // Буферы линий: [линия][RAW|MID|READY]; при LineMode.SHARED READY общий
+    private SimBuffer[][] buffers;
+
+    // Workers в параллельных массивах по номеру
+    private int[] stageOf;
+    private int[] lineOf;
+    private byte[] state;
+    private long[][] hand;
+    private int[] handStart;
+    private int[] handCount;
+    private int[][] stageWorkers;
+    private final DelayDistribution[] delays = new DelayDistribution[STAGES];
+
+    // Фазовый режим
+    private int phase;
+    private int arrived;
+    private long phaseStart;
+
+    // Итоги
+    private long events;
+    private long purchases;
+    private int cycles;
+    private final long[] stageCounts = new long[STAGES];
+    private final long[] stageBusy = new long[STAGES];
+    private final long[] typePurchases = new long[TYPE_COUNT];
+    private long[] lineProduced;
+    private LatencyHistogram batchLatency;
+    private LatencyHistogram phaseDuration;
+
+    /**
+     * Seed берётся из конфигурации, а если он не задан — выбирается случайно (см. SimulationResult.getSeed())
+     */
+    public DiscreteEventSimulator(FactoryConfig config) {
+        this(config, config.getSeed() != null ? config.getSeed() : RandomSource.newSeed());
+    }
+
+    public DiscreteEventSimulator(FactoryConfig config, long seed) {
+        this.config = config;
+        this.seed = seed;
+        this.phased = config.getRunMode() == RunMode.PHASED;
+        this.batchSize = config.getBatchSize();
+        for (int stage = 0; stage < STAGES; stage++) {
+            delays[stage] = config.getDelay(stage);
+        }
+    }
+
+    /**
+     * Прогнать симуляцию с нуля.
+     *
+     * @param duration     виртуальная длительность
+     * @param maxPurchases остановиться после стольких покупок (Long.MAX_VALUE — без ограничения)
+     */
+    public SimulationResult run(long duration, TimeUnit unit, long maxPurchases) {
+        long horizon = unit.toNanos(duration);
+        if (horizon <= 0) {
+            throw new IllegalArgumentException("Длительность симуляции должна быть положительной");
+        }
+        if (maxPurchases == Long.MAX_VALUE && allDelaysZero()) {
+            throw new IllegalArgumentException("При нулевых задержках время не идёт: задайте предел покупок");
+        }
+
+        long wallStart = System.nanoTime();
+        reset();
+
+        if (phased) {
+            startPhase();
+        } else {
+            for (int worker = 0; worker < state.length; worker++) {
+                step(worker);
+            }
+            drainWakeups();
+        }
+
+        while (!queue.isEmpty() && queue.peekTime() <= horizon && purchases < maxPurchases) {
+            now = queue.peekTime();
+            int worker = queue.poll();
+            events++;
+            finish(worker);
+            if (phased) {
+                phasedAttempt(worker);
+                advancePhases();
+            } else {
+                drainWakeups();
+            }
+        }
+
+        long virtualNanos = purchases >= maxPurchases ? now : horizon;
+        return new SimulationResult(config, seed, virtualNanos, System.nanoTime() - wallStart, events,
+                purchases, cycles, stageCounts, stageBusy, workerCounts(), typePurchases,
+                lineProduced, batchLatency, phaseDuration);
+    }
+
+    private boolean allDelaysZero() {
+        for (int stage = 0; stage < STAGES; stage++) {
+            if (!delays[stage].isZero()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ─────────── Построение ───────────
+
+    private void reset() {
+        now = 0;
+        events = 0;
+        purchases = 0;
+        cycles = 0;
+        phase = 0;
+        arrived = 0;
+        phaseStart = 0;
+        Arrays.fill(stageCounts, 0);
+        Arrays.fill(stageBusy, 0);
+        Arrays.fill(typePurchases, 0);
+        batchLatency = new LatencyHistogram();
+        phaseDuration = new LatencyHistogram();
+
+        int lines = config.getLineCount();
+        lineProduced = new long[lines];
+        buffers = new SimBuffer[lines][3];
+        SimBuffer sharedReady = config.getLineMode() == LineMode.SHARED
+                ? new SimBuffer("ReadyBuffer", config.getCapacity(FactoryConfig.READY) * lines)
+                : null;
+        for (int line = 0; line < lines; line++) {
+            String suffix = lines == 1 ? "" : "-" + (line + 1);
+            buffers[line][FactoryConfig.RAW] = new SimBuffer("RawBuffer" + suffix, config.getCapacity(FactoryConfig.RAW));
+            buffers[line][FactoryConfig.MID] = new SimBuffer("MidBuffer" + suffix, config.getCapacity(FactoryConfig.MID));
+            buffers[line][FactoryConfig.READY] = sharedReady != null
+                    ? sharedReady
+                    : new SimBuffer("ReadyBuffer" + suffix, config.getCapacity(FactoryConfig.READY));
+        }
+
+        // Workers в порядке TeaFactory: цепочки линий, затем покупатели по линиям по кругу
+        List<int[]> created = new ArrayList<>();
+        for (int line = 0; line < lines; line++) {
+            for (int stage = 0; stage < CONSUME; stage++) {
+                for (int i = 0; i < config.getWorkerCount(stage); i++) {
+                    created.add(new int[] {stage, line});
+                }
+            }
+        }
+        for (int i = 0; i < config.getWorkerCount(CONSUME); i++) {
+            created.add(new int[] {CONSUME, i % lines});
+        }
+
+        int total = created.size();
+        RandomSource source = new RandomSource(seed);
+        randoms = new SplittableRandom[total];
+        int[] filled = new int[STAGES];
+        stageWorkers = new int[STAGES][];
+        for (int stage = 0; stage < STAGES; stage++) {
+            int count = stage == CONSUME ? config.getWorkerCount(stage) : config.getWorkerCount(stage) * lines;
+            stageWorkers[stage] = new int[count];
+        }
+        stageOf = new int[total];
+        lineOf = new int[total];
+        state = new byte[total];
+        hand = new long[total][batchSize];
+        handStart = new int[total];
+        handCount = new int[total];
+        for (int worker = 0; worker < total; worker++) {
+            int stage = created.get(worker)[0];
+            stageOf[worker] = stage;
+            lineOf[worker] = created.get(worker)[1];
+            stageWorkers[stage][filled[stage]++] = worker;
+            randoms[worker] = source.split();
+        }
+    }
+
+    private int[] workerCounts() {
+        int[] counts = new int[STAGES];
+        for (int stage = 0; stage < STAGES; stage++) {
+            counts[stage] = stageWorkers[stage].length;
+        }
+        return counts;
+    }
+
+    private SimBuffer inputOf(int worker) {
+        return buffers[lineOf[worker]][stageOf[worker] - 1];
+    }
+
+    private SimBuffer outputOf(int worker) {
+        return buffers[lineOf[worker]][stageOf[worker]];
+    }
+
+    // ─────────── Конвейерный режим ───────────
+
+    /**
+     * Worker свободен: взять вход (или создать сырьё) и начать работу, иначе встать в ожидание
+     */
+    private void step(int worker) {
+        int stage = stageOf[worker];
+        if (stage == SUPPLY) {
+            int count = batchSize > 1 ? Math.max(1, Math.min(batchSize, outputOf(worker).free())) : 1;
+            produce(worker, count);
+            return;
+        }
+
+        SimBuffer source = stage == CONSUME ? pickSource(worker) : inputOf(worker);
+        if (source == null || source.isEmpty()) {
+            SimBuffer home = stage == CONSUME ? buffers[lineOf[worker]][FactoryConfig.READY] : source;
+            state[worker] = WAIT_INPUT;
+            home.takeWaiters.add(worker);
+            return;
+        }
+        take(worker, source, portion(worker));
+        startWork(worker);
+    }
+
+    /**
+     * Работа закончена: покупатель сразу свободен, остальные отдают партии в выходной буфер
+     */
+    private void finish(int worker) {
+        int stage = stageOf[worker];
+        int count = handCount[worker];
+        stageCounts[stage] += count;
+        if (stage == PACK) {
+            lineProduced[lineOf[worker]] += count;
+        }
+        if (stage == CONSUME) {
+            for (int i = 0; i < count; i++) {
+                long code = hand[worker][i];
+                batchLatency.record(now - SimBuffer.createdOf(code));
+                typePurchases[SimBuffer.typeOf(code)]++;
+            }
+            purchases += count;
+            handCount[worker] = 0;
+            state[worker] = IDLE;
+            if (!phased) {
+                wakeups.add(worker);
+            }
+            return;
+        }
+        if (phased) {
+            // Место зарезервировано при взятии работы — всё помещается
+            SimBuffer output = outputOf(worker);
+            output.release(count);
+            deliver(worker, output);
+            state[worker] = IDLE;
+            return;
+        }
+        state[worker] = WAIT_OUTPUT;
+        wakeups.add(worker);
+    }
+
+    /**
+     * Разбудить ожидающих по очереди, пока никто больше не продвигается
+     */
+    private void drainWakeups() {
+        while (!wakeups.isEmpty()) {
+            int worker = wakeups.poll();
+            switch (state[worker]) {
+                case IDLE:
+                case WAIT_INPUT:
+                    step(worker);
+                    break;
+                case WAIT_OUTPUT: {
+                    SimBuffer output = outputOf(worker);
+                    deliver(worker, output);
+                    if (handCount[worker] == 0) {
+                        state[worker] = IDLE;
+                        step(worker);
+                    } else {
+                        output.putWaiters.add(worker);
+                    }
+                    break;
+                }
+                default:
+                    break; // уже работает
+            }
+        }
+    }
+
+    // ─────────── Фазовый режим ───────────
+
+    private void startPhase() {
+        skipIdlePhases();
+        arrived = 0;
+        phaseStart = now;
+        for (int worker : stageWorkers[phase % STAGES]) {
+            phasedAttempt(worker);
+        }
+        advancePhases();
+    }
+
+    /**
+     * Как performWork(): работаем, пока есть вход и место на выходе, иначе отмечаемся в фазе
+     */
+    private void phasedAttempt(int worker) {
+        int stage = stageOf[worker];
+        if (stage == SUPPLY) {
+            SimBuffer output = outputOf(worker);
+            if (output.isFull()) {
+                arrived++;
+                return;
+            }
+            int count = batchSize > 1 ? Math.max(1, Math.min(batchSize, output.free())) : 1;
+            output.reserve(count);
+            produce(worker, count);
+            return;
+        }
+
+        SimBuffer source = stage == CONSUME ? pickSource(worker) : inputOf(worker);
+        if (source == null || source.isEmpty() || (stage != CONSUME && outputOf(worker).isFull())) {
+            arrived++;
+            return;
+        }
+        int taken = take(worker, source, portion(worker));
+        if (stage != CONSUME) {
+            outputOf(worker).reserve(taken);
+        }
+        startWork(worker);
+    }
+
+    /**
+     * Сменить фазу, когда отметились все workers её стадии (пустые фазы проходят сразу)
+     */
+    private void advancePhases() {
+        while (arrived == stageWorkers[phase % STAGES].length) {
+            phaseDuration.record(now - phaseStart);
+            if (phase % STAGES == CONSUME) {
+                cycles++;
+            }
+            phase++;
+            skipIdlePhases();
+            arrived = 0;
+            phaseStart = now;
+            for (int worker : stageWorkers[phase % STAGES]) {
+                phasedAttempt(worker);
+            }
+        }
+    }
+
+    /**
+     * Как очередь стадий фабрики: фазы без работы пропускаются (и не попадают в длительность фаз),
+     * цикл засчитывается при переходе через CONSUME. Если работы нет ни у одной стадии — фаза идёт как есть.
+     */
+    private void skipIdlePhases() {
+        boolean any = false;
+        for (int stage = 0; stage < STAGES && !any; stage++) {
+            any = stageHasWork(stage);
+        }
+        if (!any) {
+            return;
+        }
+        while (!stageHasWork(phase % STAGES)) {
+            if (phase % STAGES == CONSUME) {
+                cycles++;
+            }
+            phase++;
+        }
+    }
+
+    /**
+     * То же правило, что у TeaFactory: есть вход (для SUPPLY не нужен) и место на выходе;
+     * для CONSUME — товар хотя бы у одной линии
+     */
+    private boolean stageHasWork(int stage) {
+        for (SimBuffer[] line : buffers) {
+            if (stage == CONSUME) {
+                if (!line[FactoryConfig.READY].isEmpty()) {
+                    return true;
+                }
+                continue;
+            }
+            if (!line[stage].isFull() && (stage == SUPPLY || !line[stage - 1].isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ─────────── Общие шаги ───────────
+
+    private void produce(int worker, int count) {
+        for (int i = 0; i < count; i++) {
+            hand[worker][i] = SimBuffer.encode(now, TeaType.random(randoms[worker]).ordinal());
+        }
+        handStart[worker] = 0;
+        handCount[worker] = count;
+        startWork(worker);
+    }
+
+    /**
+     * Сколько партий брать за раз: в пакетном режиме — не больше свободного места на выходе
+     */
+    private int portion(int worker) {
+        if (batchSize == 1) {
+            return 1;
+        }
+        if (stageOf[worker] == CONSUME) {
+            return batchSize;
+        }
+        return Math.max(1, Math.min(batchSize, outputOf(worker).free()));
+    }
+
+    /**
+     * Забрать до max партий; освободившиеся места будят ждущих производителей
+     */
+    private int take(int worker, SimBuffer source, int max) {
+        int count = Math.min(max, source.size());
+        for (int i = 0; i < count; i++) {
+            hand[worker][i] = source.remove();
+        }
+        handStart[worker] = 0;
+        handCount[worker] = count;
+        for (int i = 0; i < count && !source.putWaiters.isEmpty(); i++) {
+            wakeups.add(source.putWaiters.poll());
+        }
+        return count;
+    }
+
+    /**
+     * Положить в буфер сколько поместится; каждая партия будит одного ждущего потребителя
+     */
+    private void deliver(int worker, SimBuffer output) {
+        int start = handStart[worker];
+        int count = handCount[worker];
+        int moved = 0;
+        while (moved < count && output.free() > 0) {
+            output.add(hand[worker][start + moved]);
+            moved++;
+        }
+        handStart[worker] = start + moved;
+        handCount[worker] = count - moved;
+        for (int i = 0; i < moved && !output.takeWaiters.isEmpty(); i++) {
+            wakeups.add(output.takeWaiters.poll());
+        }
+    }
+
+    /**
+     * Покупатель: свой буфер, если в нём есть товар, иначе самый заполненный у соседних линий
+     */
+    private SimBuffer pickSource(int worker) {
+        SimBuffer home = buffers[lineOf[worker]][FactoryConfig.READY];
+        if (!home.isEmpty() || config.getLineMode() == LineMode.SHARED) {
+            return home;
+        }
+        SimBuffer best = null;
+        for (SimBuffer[] line : buffers) {
+            SimBuffer ready = line[FactoryConfig.READY];
+            if (ready != home && ready.size() > 0 && (best == null || ready.size() > best.size())) {
+                best = ready;
+            }
+        }
+        return best;
+    }
+
+    private void startWork(int worker) {
+        int stage = stageOf[worker];
+        long delay = 0;
+        for (int i = 0; i < handCount[worker]; i++) {
+            delay += delays[stage].sampleNanos(randoms[worker]);
+        }
+        stageBusy[stage] += delay;
+        state[worker] = WORKING;
+        queue.schedule(now + delay, worker);
+    }
+}
@@ -0,0 +1,101 @@
+package com.teafactory.sim;
+
+import java.util.Arrays;
+
+/**
+ * Очередь событий симуляции: двоичная куча по виртуальному времени.
+ * ✔ Событие — "worker закончил работу": время + номер worker, без объектов на событие
+ * ✔ При равном времени раньше идёт событие, запланированное раньше (детерминизм)
+ */
+final class EventQueue {
+
+    private long[] times = new long[64];
+    private long[] seqs = new long[64];
+    private int[] workers = new int[64];
+    private int size;
+    private long nextSeq;
+
+    void schedule(long time, int worker) {
+        if (size == times.length) {
+            grow();
+        }
+        long seq = nextSeq++;
+        int i = size++;
+        // Просеивание вверх
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, seq, times[parent], seqs[parent])) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, seq, worker);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Время ближайшего события (очередь не пуста)
+     */
+    long peekTime() {
+        return times[0];
+    }
+
+    /**
+     * Забрать ближайшее событие: возвращает номер worker, время — peekTime() до вызова
+     */
+    int poll() {
+        int worker = workers[0];
+        int last = --size;
+        if (last > 0) {
+            long time = times[last];
+            long seq = seqs[last];
+            int lastWorker = workers[last];
+            // Просеивание вниз
+            int i = 0;
+            int half = last >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < last && before(times[right], seqs[right], times[child], seqs[child])) {
+                    child = right;
+                }
+                if (!before(times[child], seqs[child], time, seq)) {
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            set(i, time, seq, lastWorker);
+        }
+        return worker;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static boolean before(long time, long seq, long otherTime, long otherSeq) {
+        return time < otherTime || (time == otherTime && seq < otherSeq);
+    }
+
+    private void move(int from, int to) {
+        set(to, times[from], seqs[from], workers[from]);
+    }
+
+    private void set(int i, long time, long seq, int worker) {
+        times[i] = time;
+        seqs[i] = seq;
+        workers[i] = worker;
+    }
+
+    private void grow() {
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        seqs = Arrays.copyOf(seqs, capacity);
+        workers = Arrays.copyOf(workers, capacity);
+    }
+}
@@ -0,0 +1,122 @@
+package com.teafactory.sim;
+
+/**
+ * Буфер в симуляции: кольцо из кодов партий без блокировок (всё в одном потоке).
+ * Партия кодируется одним long: (момент создания << 3) | тип чая.
+ * Ожидающие workers стоят в очередях takeWaiters / putWaiters — аналог Condition.
+ */
+final class SimBuffer {
+
+    static final int TYPE_BITS = 3;
+    static final long TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final String name;
+    private final int capacity;
+    private final long[] items;
+    private int head;
+    private int size;
+
+    // Места, обещанные workers фазового режима, которые ещё работают над партиями
+    private int reserved;
+
+    final IntQueue takeWaiters = new IntQueue();
+    final IntQueue putWaiters = new IntQueue();
+
+    SimBuffer(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.items = new long[capacity];
+    }
+
+    static long encode(long createdNanos, int type) {
+        return (createdNanos << TYPE_BITS) | type;
+    }
+
+    static long createdOf(long code) {
+        return code >>> TYPE_BITS;
+    }
+
+    static int typeOf(long code) {
+        return (int) (code & TYPE_MASK);
+    }
+
+    void add(long code) {
+        items[(head + size) % capacity] = code;
+        size++;
+    }
+
+    long remove() {
+        long code = items[head];
+        head = (head + 1) % capacity;
+        size--;
+        return code;
+    }
+
+    void reserve(int count) {
+        reserved += count;
+    }
+
+    void release(int count) {
+        reserved -= count;
+    }
+
+    /**
+     * Свободные места с учётом обещанных
+     */
+    int free() {
+        return capacity - size - reserved;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size + reserved >= capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Очередь номеров workers (FIFO) на растущем кольце
+     */
+    static final class IntQueue {
+        private int[] values = new int[8];
+        private int head;
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[values.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = values[(head + i) % values.length];
+                }
+                values = grown;
+                head = 0;
+            }
+            values[(head + size) % values.length] = value;
+            size++;
+        }
+
+        int poll() {
+            int value = values[head];
+            head = (head + 1) % values.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.teafactory.sim;
+
+import com.teafactory.core.FactoryConfig;
+import com.teafactory.metrics.LatencyHistogram;
+import com.teafactory.model.TeaType;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Итоги одного прогона симуляции. Все времена — виртуальные, кроме wall-clock.
+ */
+public final class SimulationResult {
+
+    private final FactoryConfig config;
+    private final long seed;
+    private final long virtualNanos;
+    private final long wallNanos;
+    private final long events;
+    private final long purchases;
+    private final int cycles;
+    private final long[] stageCounts;
+    private final long[] stageBusyNanos;
+    private final int[] stageWorkers;
+    private final long[] typePurchases;
+    private final long[] lineProduced;
+    private final LatencyHistogram batchLatency;
+    private final LatencyHistogram phaseDuration;
+
+    SimulationResult(FactoryConfig config, long seed, long virtualNanos, long wallNanos, long events,
+                     long purchases, int cycles, long[] stageCounts, long[] stageBusyNanos, int[] stageWorkers,
+                     long[] typePurchases, long[] lineProduced,
+                     LatencyHistogram batchLatency, LatencyHistogram phaseDuration) {
+        this.config = config;
+        this.seed = seed;
+        this.virtualNanos = virtualNanos;
+        this.wallNanos = wallNanos;
+        this.events = events;
+        this.purchases = purchases;
+        this.cycles = cycles;
+        this.stageCounts = stageCounts.clone();
+        this.stageBusyNanos = stageBusyNanos.clone();
+        this.stageWorkers = stageWorkers.clone();
+        this.typePurchases = typePurchases.clone();
+        this.lineProduced = lineProduced.clone();
+        this.batchLatency = batchLatency;
+        this.phaseDuration = phaseDuration;
+    }
+
+    public FactoryConfig getConfig() { return config; }
+    public long getSeed() { return seed; }
+    public long getVirtualNanos() { return virtualNanos; }
+    public long getWallNanos() { return wallNanos; }
+
+    /**
+     * Сколько событий "worker закончил работу" обработано
+     */
+    public long getEvents() { return events; }
+    public long getPurchases() { return purchases; }
+    public int getCyclesCompleted() { return cycles; }
+    public long getStageCount(int stage) { return stageCounts[stage]; }
+    public int getWorkerCount(int stage) { return stageWorkers[stage]; }
+    public long getPurchases(TeaType type) { return typePurchases[type.ordinal()]; }
+
+    /**
+     * Сколько партий упаковала каждая линия
+     */
+    public long[] getLineProduced() { return lineProduced.clone(); }
+
+    /**
+     * Задержка партии от создания до покупки, виртуальные нс
+     */
+    public LatencyHistogram batchLatency() { return batchLatency; }
+
+    /**
+     * Длительность фаз (только PHASED), виртуальные нс
+     */
+    public LatencyHistogram phaseDuration() { return phaseDuration; }
+
+    /**
+     * Покупок в виртуальную секунду
+     */
+    public double getThroughput() {
+        return virtualNanos > 0 ? purchases * 1e9 / virtualNanos : 0;
+    }
+
+    /**
+     * Доля виртуального времени, которое workers стадии работали
+     */
+    public double getUtilization(int stage) {
+        return virtualNanos > 0 && stageWorkers[stage] > 0
+                ? (double) stageBusyNanos[stage] / ((double) virtualNanos * stageWorkers[stage])
+                : 0;
+    }
+
+    /**
+     * Во сколько раз симуляция быстрее реального времени
+     */
+    public double getSpeedup() {
+        return wallNanos > 0 ? (double) virtualNanos / wallNanos : 0;
+    }
+
+    /**
+     * Полных жизненных циклов партий (создание → покупка) в секунду реального времени
+     */
+    public double getPurchasesPerWallSecond() {
+        return wallNanos > 0 ? purchases * 1e9 / wallNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "SimulationResult{seed=%d, virtual=%.3fs, wall=%.3fs, events=%d, purchases=%d, cycles=%d, "
+                        + "throughput=%.3f/s, stages=%s, speedup=%.0fx}",
+                seed, virtualNanos / 1e9, wallNanos / 1e9, events, purchases, cycles,
+                getThroughput(), Arrays.toString(stageCounts), getSpeedup());
+    }
+}
@@ -1,61 +1,209 @@
 package com.teafactory.workers;
 
+import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
+import com.teafactory.journal.JournalWriter;
+import com.teafactory.metrics.FactoryMetrics;
+import com.teafactory.model.TeaBatch;
+import com.teafactory.random.DelayDistribution;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
 import java.util.concurrent.Phaser;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Абстрактный базовый класс для всех рабочих потоков.
- * Инкапсулирует общую логику работы с Phaser и логированием.
+ * Инкапсулирует общую логику работы с Phaser и публикацией событий.
  */
 public abstract class AbstractWorker implements Runnable {
     protected final Phaser phaser;
-    protected final Consumer<String> logger;
+    protected final EventBus events;
     protected final String workerName;
     protected final int workPhase;
     protected volatile boolean running = true;
 
-    public AbstractWorker(String workerName, int workPhase, Phaser phaser, Consumer<String> logger) {
+    // Сколько партий переносится за одну операцию с буфером (1 — поштучно)
+    protected int batchSize = 1;
+
+    // Конвейерный режим: работаем без фаз, синхронизация только через буферы
+    protected boolean pipelined = false;
+
+    // Распределение задержки имитации работы
+    protected DelayDistribution delay = DelayDistribution.uniform(300, 900);
+
+    // Собственный случайный поток worker (пишет только свой поток)
+    protected SplittableRandom random = new SplittableRandom();
+
+    // Суммарное время полезной работы (пишет только свой поток)
+    private volatile long busyNanos;
+
+    // Сколько партий прошло стадию этого worker (пишет только свой поток)
+    private volatile long doneCount;
+
+    // Метрики фабрики (null — не собираются)
+    protected FactoryMetrics metrics;
+
+    // Бинарный журнал партий (null — не пишется)
+    protected JournalWriter journal;
+
+    // Трассируется каждая traceEvery-я партия по id (0 — трассировка выключена)
+    protected int traceEvery;
+
+    // Очередь стадий фазового режима (null — ждём каждую фазу общего Phaser)
+    private StageGate gate;
+
+    // Партии, не поместившиеся в выходной буфер: ждут следующей своей фазы
+    protected final ArrayDeque<TeaBatch> pending = new ArrayDeque<>();
+
+    // Партии на руках: взяты из буфера (или созданы), но ещё не переданы дальше.
+    // После остановки потока их забирает снимок фабрики (пишет только свой поток)
+    private final List<TeaBatch> inHand = new ArrayList<>();
+
+    public AbstractWorker(String workerName, int workPhase, Phaser phaser, EventBus events) {
         this.workerName = workerName;
         this.workPhase = workPhase;
         this.phaser = phaser;
-        this.logger = logger;
+        this.events = events;
     }
 
     @Override
     public void run() {
         Thread.currentThread().setName(workerName);
-        phaser.register(); // Регистрируемся в фазере
-        log("🟢 Поток запущен");
+
+        if (pipelined) {
+            runPipelined();
+        } else if (gate != null) {
+            runGated();
+        } else {
+            runPhased();
+        }
+    }
+
+    /**
+     * Фазовый режим: работа только в своей фазе Phaser.
+     * Регистрирует worker в Phaser фабрика — до старта потока,
+     * иначе фаза может смениться раньше, чем поток успеет зарегистрироваться.
+     * Снимает регистрацию сам поток при выходе.
+     */
+    private void runPhased() {
+        event(EventKind.WORKER_STARTED, "🟢 Поток запущен");
 
         try {
-            while (running && !Thread.currentThread().isInterrupted()) {
+            while ((running || !pending.isEmpty()) && !Thread.currentThread().isInterrupted()) {
                 int currentPhase = phaser.getPhase() % 4;
 
-                // Работаем только в своей фазе
+                // Работаем только в своей фазе; остановленный только отдаёт отложенное
                 if (currentPhase == workPhase) {
-                    // Выполняем работу многократно в нашей фазе
-                    boolean canContinue = true;
-                    while (canContinue && running && !Thread.currentThread().isInterrupted()) {
-                        try {
-                            canContinue = performWork();
-                        } catch (InterruptedException e) {
-                            log("⚠️ Работа прервана");
-                            throw e;
-                        }
+                    if (running) {
+                        workInPhase();
+                    } else {
+                        flushPending(outputBuffer());
                     }
-
-                    log("✅ Работа в фазе завершена");
                 }
 
                 // Сообщаем фазеру, что готовы к переходу
                 phaser.arriveAndAwaitAdvance();
             }
         } catch (InterruptedException e) {
-            log("⚠️ Поток прерван");
+            event(EventKind.WORKER_INTERRUPTED, "⚠️ Поток прерван");
+            Thread.currentThread().interrupt();
+        } finally {
+            phaser.arriveAndDeregister();
+            beforeExit();
+            event(EventKind.WORKER_STOPPED, "🔴 Поток остановлен");
+        }
+    }
+
+    /**
+     * Фазовый режим с очередью стадий: поток спит, пока ход не дойдёт до его стадии,
+     * и не просыпается в чужих фазах. Отметившись в Phaser стадии, остальных
+     * workers стадии не ждёт — раунд закроет последний из них.
+     */
+    private void runGated() {
+        event(EventKind.WORKER_STARTED, "🟢 Поток запущен");
+
+        int round = phaser.getPhase();
+        // Раунд, в котором уже отметились, а следующий ещё не начался (-1 — такого нет)
+        int arrivedRound = -1;
+        try {
+            while ((running || !pending.isEmpty()) && !Thread.currentThread().isInterrupted()) {
+                gate.awaitTurn(workPhase, round);
+                if (arrivedRound >= 0) {
+                    // Ход дают из onAdvance, а фазу Phaser меняет уже после него — дожидаемся смены
+                    phaser.awaitAdvance(arrivedRound);
+                    arrivedRound = -1;
+                }
+                if (running) {
+                    workInPhase();
+                } else if (pending.isEmpty()) {
+                    break; // остановлен автомасштабированием, пока ждал хода
+                } else {
+                    // Остановлен, но отложенное отдаём в свой ход, как и раньше
+                    flushPending(outputBuffer());
+                }
+                arrivedRound = phaser.arrive();
+                round = (arrivedRound + 1) & Integer.MAX_VALUE;
+            }
+        } catch (InterruptedException e) {
+            event(EventKind.WORKER_INTERRUPTED, "⚠️ Поток прерван");
             Thread.currentThread().interrupt();
         } finally {
+            if (arrivedRound >= 0) {
+                // Вторая отметка в том же раунде засчиталась бы за другого worker
+                phaser.awaitAdvance(arrivedRound);
+            }
             phaser.arriveAndDeregister();
-            log("🔴 Поток остановлен");
+            beforeExit();
+            event(EventKind.WORKER_STOPPED, "🔴 Поток остановлен");
+        }
+    }
+
+    /**
+     * Работа в своей фазе, пока performWork() не скажет, что работы больше нет
+     */
+    private void workInPhase() throws InterruptedException {
+        boolean canContinue = true;
+        while (canContinue && running && !Thread.currentThread().isInterrupted()) {
+            long start = System.nanoTime();
+            try {
+                canContinue = performWork();
+            } catch (InterruptedException e) {
+                event(EventKind.WORKER_INTERRUPTED, "⚠️ Работа прервана");
+                throw e;
+            }
+            recordWork(start);
+        }
+
+        event(EventKind.PHASE_WORK_DONE, "✅ Работа в фазе завершена");
+    }
+
+    /**
+     * Конвейерный режим: все стадии работают одновременно,
+     * потоки блокируются только на буферах (полон/пуст).
+     */
+    private void runPipelined() {
+        event(EventKind.WORKER_STARTED, "🟢 Поток запущен (конвейер)");
+
+        try {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                performStep();
+                recordWork(start);
+            }
+            // Остановлен автомасштабированием: отложенное (из снимка) не бросаем
+            if (!pending.isEmpty()) {
+                putPending(outputBuffer());
+            }
+        } catch (InterruptedException e) {
+            event(EventKind.WORKER_INTERRUPTED, "⚠️ Поток прерван");
+            Thread.currentThread().interrupt();
+        } finally {
+            beforeExit();
+            event(EventKind.WORKER_STOPPED, "🔴 Поток остановлен");
         }
     }
 
@@ -68,23 +216,402 @@ public abstract class AbstractWorker implements Runnable {
     protected abstract boolean performWork() throws InterruptedException;
 
     /**
-     * Остановка worker
+     * Один шаг работы без проверок фазы: блокируется на буферах,
+     * если брать нечего или класть некуда.
+     */
+    protected abstract void performStep() throws InterruptedException;
+
+    /**
+     * Поток завершается (остановка, прерывание или автомасштабирование) —
+     * отпустить то, что worker держит вне буферов
+     */
+    protected void beforeExit() {
+    }
+
+    /**
+     * Буфер, в который worker кладёт партии (null — не кладёт, например покупатель)
+     */
+    protected TeaBuffer outputBuffer() {
+        return null;
+    }
+
+    /**
+     * Размер пакета для операций с буфером.
+     * Задаётся до запуска потока.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Размер пакета должен быть >= 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Включение конвейерного режима. Задаётся до запуска потока.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Диапазон задержки имитации работы. Задаётся до запуска потока.
+     * min == max — постоянная задержка, 0 — без задержки.
+     */
+    public void setDelayRange(long minDelay, long maxDelay) {
+        setDelay(DelayDistribution.uniform(minDelay, maxDelay));
+    }
+
+    /**
+     * Распределение задержки имитации работы. Задаётся до запуска потока.
+     */
+    public void setDelay(DelayDistribution delay) {
+        if (delay == null) {
+            throw new IllegalArgumentException("Распределение задержки не может быть null");
+        }
+        this.delay = delay;
+    }
+
+    /**
+     * Случайный поток worker (обычно RandomSource.split()). Задаётся до запуска потока.
+     */
+    public void setRandom(SplittableRandom random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Случайный поток не может быть null");
+        }
+        this.random = random;
+    }
+
+    /**
+     * Реестр метрик. Задаётся до запуска потока.
+     */
+    public void setMetrics(FactoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Писатель журнала партий. Задаётся до запуска потока.
+     */
+    public void setJournal(JournalWriter journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Трассировать каждую N-ю создаваемую партию (0 — не трассировать). Задаётся до запуска потока.
+     */
+    public void setTraceEvery(int traceEvery) {
+        if (traceEvery < 0) {
+            throw new IllegalArgumentException("Шаг выборки трассировки должен быть >= 0");
+        }
+        this.traceEvery = traceEvery;
+    }
+
+    /**
+     * Очередь стадий фазового режима: worker спит, пока его стадии не дадут ход.
+     * Задаётся до запуска потока.
+     */
+    public void setStageGate(StageGate gate) {
+        this.gate = gate;
+    }
+
+    public String getWorkerName() {
+        return workerName;
+    }
+
+    public int getWorkPhase() {
+        return workPhase;
+    }
+
+    /**
+     * Время, потраченное на работу (без ожидания буферов и фаз)
+     */
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+
+    /**
+     * Сколько партий этот worker передал дальше (для покупателя — купил)
+     */
+    public long getDoneCount() {
+        return doneCount;
+    }
+
+    /**
+     * Есть ли отложенные партии (в том числе у остановленного, ещё не отдавшего их worker).
+     * Читать, пока поток ждёт хода своей стадии.
+     */
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Партии, которые worker держал при остановке: на руках и отложенные.
+     * Вызывать только после завершения потока.
+     */
+    public List<TeaBatch> getHeldBatches() {
+        List<TeaBatch> held = new ArrayList<>(inHand.size() + pending.size());
+        held.addAll(inHand);
+        held.addAll(pending);
+        return held;
+    }
+
+    /**
+     * Партии из снимка, не поместившиеся в выходной буфер: worker отдаст их первыми.
+     * Задаётся до запуска потока.
+     */
+    public void restorePending(Collection<TeaBatch> batches) {
+        pending.addAll(batches);
+    }
+
+    /**
+     * Остановка worker: новой работы он не берёт, отложенные партии отдаёт
+     * в выходной буфер (в фазовом режиме — в свои фазы) и выходит.
+     * Партии на руках бывают только у прерванного потока — их забирает снимок фабрики.
      */
     public void stop() {
         running = false;
     }
 
     /**
-     * Логирование с префиксом имени worker
+     * Работает ли worker (не остановлен)
+     */
+    public boolean isActive() {
+        return running;
+    }
+
+    /**
+     * Публикация события от имени worker.
+     * template — строковая константа, форматирование откладывается до подписчика.
+     */
+    protected void event(EventKind kind, String template) {
+        events.publish(workerName, kind, template);
+    }
+
+    protected void event(EventKind kind, String template, TeaBatch batch) {
+        events.publish(workerName, kind, template, batch);
+    }
+
+    protected void event(EventKind kind, String template, int count) {
+        events.publish(workerName, kind, template, count);
+    }
+
+    protected void event(EventKind kind, String template, TeaBatch batch, int count) {
+        events.publish(workerName, kind, template, batch, count, 0, 0);
+    }
+
+    /**
+     * Событие с заполненностью буфера. Размер буфера читается
+     * только если событие кому-то нужно.
      */
-    protected void log(String message) {
-        logger.accept(String.format("[%s] %s", workerName, message));
+    protected void bufferEvent(EventKind kind, String template, TeaBatch batch, int count, TeaBuffer buffer) {
+        if (events.isEnabled(kind)) {
+            events.publish(workerName, kind, template, batch, count, buffer.size(), buffer.getCapacity());
+        }
+    }
+
+    // ─────────── Операции с буферами (с учётом метрик) ───────────
+
+    protected void putBatch(TeaBuffer buffer, TeaBatch batch) throws InterruptedException {
+        markEnqueued(batch);
+        buffer.put(batch);
+        inHand.remove(batch);
+        recordStageDone(batch);
+    }
+
+    protected boolean offerBatch(TeaBuffer buffer, TeaBatch batch) {
+        markEnqueued(batch);
+        if (!buffer.offer(batch)) {
+            return false;
+        }
+        inHand.remove(batch);
+        recordStageDone(batch);
+        return true;
+    }
+
+    protected void putBatches(TeaBuffer buffer, List<TeaBatch> batches) throws InterruptedException {
+        for (TeaBatch batch : batches) {
+            markEnqueued(batch);
+        }
+        // При прерывании на руках остаются только не добавленные: добавленные
+        // могли уже забрать (и купить) следующие стадии
+        int added = buffer.putAll(batches);
+        for (TeaBatch batch : batches.subList(0, added)) {
+            inHand.remove(batch);
+            recordStageDone(batch);
+        }
+        if (added < batches.size()) {
+            Thread.interrupted(); // как у блокирующих вызовов: флаг сбрасывается вместе с исключением
+            throw new InterruptedException();
+        }
+    }
+
+    protected TeaBatch takeBatch(TeaBuffer buffer) throws InterruptedException {
+        TeaBatch batch = buffer.take();
+        recordTaken(buffer, batch);
+        return batch;
+    }
+
+    protected TeaBatch pollBatch(TeaBuffer buffer) {
+        TeaBatch batch = buffer.poll();
+        if (batch != null) {
+            recordTaken(buffer, batch);
+        }
+        return batch;
+    }
+
+    protected List<TeaBatch> takeBatches(TeaBuffer buffer, int n) throws InterruptedException {
+        List<TeaBatch> batches = buffer.takeUpTo(n);
+        for (TeaBatch batch : batches) {
+            recordTaken(buffer, batch);
+        }
+        return batches;
+    }
+
+    protected List<TeaBatch> drainBatches(TeaBuffer buffer, int max) {
+        List<TeaBatch> batches = new ArrayList<>(max);
+        buffer.drainTo(batches, max);
+        for (TeaBatch batch : batches) {
+            recordTaken(buffer, batch);
+        }
+        return batches;
     }
 
     /**
-     * Случайная задержка для имитации работы
+     * Отдать отложенные партии без ожидания.
+     *
+     * @return false если буфер снова заполнился
+     */
+    protected boolean flushPending(TeaBuffer buffer) {
+        while (!pending.isEmpty()) {
+            if (!offerBatch(buffer, pending.peekFirst())) {
+                return false;
+            }
+            pending.pollFirst();
+        }
+        return true;
+    }
+
+    /**
+     * Отдать отложенные партии с ожиданием (конвейер: партии из снимка фабрики)
+     */
+    protected void putPending(TeaBuffer buffer) throws InterruptedException {
+        while (!pending.isEmpty()) {
+            putBatch(buffer, pending.peekFirst());
+            pending.pollFirst();
+        }
+    }
+
+    /**
+     * Положить партии без ожидания. В фазе конкуренты могли занять место
+     * после нашей проверки — не поместившееся откладывается в pending.
+     *
+     * @return сколько партий положено
+     */
+    protected int offerOrDefer(TeaBuffer buffer, List<TeaBatch> batches) {
+        int added = 0;
+        for (TeaBatch batch : batches) {
+            if (pending.isEmpty() && offerBatch(buffer, batch)) {
+                added++;
+            } else {
+                inHand.remove(batch);
+                pending.addLast(batch);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Партия прошла стадию этого worker
+     */
+    protected void recordStageDone(TeaBatch batch) {
+        doneCount++;
+        if (metrics != null) {
+            metrics.recordStageDone(workPhase, batch.getType());
+        }
+        if (journal != null) {
+            journal.append(batch, workPhase);
+        }
+    }
+
+    /**
+     * Отметка перед помещением в буфер: до put(), пока партию не видит следующая стадия
+     */
+    private void markEnqueued(TeaBatch batch) {
+        batch.markEnqueued();
+        batch.traceDone(workPhase, batch.getEnqueuedNanos());
+    }
+
+    /**
+     * Новая партия попадает в выборку трассировки, если её id кратен traceEvery
+     */
+    protected void maybeTrace(TeaBatch batch) {
+        if (traceEvery > 0 && batch.getId() % traceEvery == 0) {
+            batch.startTrace();
+        }
+    }
+
+    /**
+     * Партия создана этим worker и ещё не передана дальше
+     */
+    protected void hold(TeaBatch batch) {
+        inHand.add(batch);
+    }
+
+    /**
+     * Партия ушла из рук worker не через буфер (например, куплена)
+     */
+    protected void release(TeaBatch batch) {
+        inHand.remove(batch);
+    }
+
+    /**
+     * Партия взята из буфера: теперь она на руках у worker
+     */
+    protected void recordTaken(TeaBuffer buffer, TeaBatch batch) {
+        inHand.add(batch);
+        long now = System.nanoTime();
+        batch.traceStart(workPhase, now);
+        if (metrics != null) {
+            metrics.recordBufferWait(buffer.getName(), now - batch.getEnqueuedNanos());
+        }
+    }
+
+    private void recordWork(long startNanos) {
+        if (metrics != null) {
+            metrics.recordWork(workPhase, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Случайная задержка для имитации работы, нс
      */
     protected long randomDelay() {
-        return 300 + (long)(Math.random() * 600);
+        return delay.sampleNanos(random);
+    }
+
+    /**
+     * Имитация работы с учётом занятости worker
+     */
+    protected void simulateWork(long delayNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        } finally {
+            busyNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Суммарная задержка на обработку нескольких партий, нс
+     */
+    protected long randomDelay(int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += randomDelay();
+        }
+        return total;
     }
 }
\ No newline at end of file
@@ -1,47 +1,314 @@
 package com.teafactory.workers;
 
 import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.buffer.TypedTeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
 import com.teafactory.model.TeaBatch;
+import com.teafactory.model.TeaType;
+import com.teafactory.orders.OrderBook;
+import com.teafactory.orders.TeaOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Phaser;
 import java.util.function.Consumer;
 
 /**
  * Покупатель - работает в фазе 3 (CONSUME)
- * Несколько покупателей конкурируют за товар
+ * Несколько покупателей конкурируют за товар.
+ * Покупатель со спросом (setDemand) берёт со склада TypedTeaBuffer только нужные сорта;
+ * из обычного буфера — любую партию, как и без спроса.
+ * Если ReadyBuffer — книга заявок (OrderBook), покупатель не выбирает партии сам,
+ * а подаёт заявку на batchSize партий своих сортов и забирает то, что ей досталось;
+ * буферы других линий при этом не используются.
  */
 public class Buyer extends AbstractWorker {
     private final TeaBuffer readyBuffer;
-    private int purchaseCount = 0;
+    // Пишет только поток покупателя, читают мониторы
+    private volatile int purchaseCount = 0;
 
-    public Buyer(String workerName, TeaBuffer readyBuffer, Phaser phaser, Consumer<String> logger) {
-        super(workerName, 3, phaser, logger);
+    // Сорта, которые покупатель хочет (по умолчанию — все)
+    private Set<TeaType> demand = EnumSet.allOf(TeaType.class);
+
+    // Буферы других линий: покупатель берёт из самого заполненного, свой — лишь один из них
+    private List<TeaBuffer> otherLines = Collections.emptyList();
+
+    // Откуда покупатель на самом деле берёт: свой буфер и буферы других линий с учётом спроса
+    private TeaBuffer home;
+    private List<TeaBuffer> otherSources = Collections.emptyList();
+
+    // С какого буфера начинать выбор источника (только поток покупателя)
+    private int sourceCursor;
+
+    // Книга заявок своей линии (null — ReadyBuffer обычный) и заявка, ждущая партий
+    private final OrderBook orderBook;
+    private TeaOrder openOrder;
+
+    // Уведомление о каждой купленной партии (например, для замера задержек)
+    private Consumer<TeaBatch> purchaseListener = batch -> { };
+
+    public Buyer(String workerName, TeaBuffer readyBuffer, Phaser phaser, EventBus events) {
+        super(workerName, 3, phaser, events);
         this.readyBuffer = readyBuffer;
+        this.home = readyBuffer;
+        this.orderBook = readyBuffer instanceof OrderBook ? (OrderBook) readyBuffer : null;
     }
 
     @Override
     protected boolean performWork() throws InterruptedException {
-        // Проверяем, есть ли товар
-        if (readyBuffer.size() == 0) {
-            log("ℹ️ Буфер готовой продукции пуст, завершаем фазу");
+        if (orderBook != null) {
+            return tradeInPhase();
+        }
+
+        // Проверяем, есть ли товар (у своей линии или у соседних)
+        TeaBuffer source = pickSource();
+        if (source == null) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер готовой продукции пуст, завершаем фазу");
+            return false;
+        }
+
+        if (batchSize > 1) {
+            // В фазе забираем без ожидания: остальные покупатели могут успеть разобрать товар раньше
+            List<TeaBatch> batches = drainBatches(source, batchSize);
+            if (batches.isEmpty()) {
+                event(EventKind.STAGE_IDLE, "ℹ️ Товар разобрали другие покупатели, завершаем фазу");
+                return false;
+            }
+            purchaseBatch(batches);
+        } else {
+            // poll, а не take: партию мог забрать другой покупатель после проверки
+            TeaBatch batch = pollBatch(source);
+            if (batch == null) {
+                event(EventKind.STAGE_IDLE, "ℹ️ Товар разобрали другие покупатели, завершаем фазу");
+                return false;
+            }
+            purchase(batch);
+        }
+
+        // Продолжаем покупать, если есть ещё товар
+        return pickSource() != null;
+    }
+
+    @Override
+    protected void performStep() throws InterruptedException {
+        if (orderBook != null) {
+            tradeStep();
+            return;
+        }
+
+        // У соседней линии товара больше — забираем у неё без ожидания
+        TeaBuffer other = pickSource();
+        if (other != null && other != home) {
+            if (batchSize > 1) {
+                List<TeaBatch> batches = drainBatches(other, batchSize);
+                if (!batches.isEmpty()) {
+                    purchaseBatch(batches);
+                    return;
+                }
+            } else {
+                TeaBatch batch = pollBatch(other);
+                if (batch != null) {
+                    purchase(batch);
+                    return;
+                }
+            }
+        }
+
+        // Ждём у своей линии; проснувшись, следующий шаг снова выберет самый заполненный буфер
+        if (batchSize > 1) {
+            purchaseBatch(takeBatches(home, batchSize));
+            return;
+        }
+
+        purchase(takeBatch(home));
+    }
+
+    /**
+     * Фаза с книгой заявок: забрать доставленное; открытая заявка, которой ничего
+     * не досталось, остаётся в книге — её исполнят партии следующей фазы PACK
+     */
+    private boolean tradeInPhase() throws InterruptedException {
+        if (openOrder == null) {
+            openOrder = orderBook.submit(workerName, demand, batchSize, null);
+        }
+        List<TeaBatch> batches = orderBook.collectFills(openOrder);
+        if (batches.isEmpty()) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Заявка ждёт товар, завершаем фазу");
             return false;
         }
+        receive(batches);
+        return true;
+    }
 
-        // Пробуем купить
-        TeaBatch batch = readyBuffer.take();
+    /**
+     * Конвейер с книгой заявок: ждать, пока заявке достанется хотя бы одна партия
+     */
+    private void tradeStep() throws InterruptedException {
+        if (openOrder == null) {
+            openOrder = orderBook.submit(workerName, demand, batchSize, null);
+        }
+        List<TeaBatch> batches = orderBook.awaitFills(openOrder);
+        if (batches.isEmpty()) {
+            closeOrder(); // заявку закрыла книга (clear)
+            return;
+        }
+        receive(batches);
+    }
 
-        log(String.format("🛒 Куплена партия: %s", batch));
+    private void receive(List<TeaBatch> batches) throws InterruptedException {
+        for (TeaBatch batch : batches) {
+            recordTaken(orderBook, batch);
+        }
+        // Не isClosed(): последняя партия могла прийти уже после того, как забрали доставленное
+        if (openOrder.isSettled()) {
+            closeOrder();
+        }
+        if (batches.size() == 1) {
+            purchase(batches.get(0));
+        } else {
+            purchaseBatch(batches);
+        }
+    }
+
+    private void closeOrder() {
+        if (metrics != null) {
+            metrics.recordOrder(openOrder.getQuantity(), openOrder.getFilled(), openOrder.getLatencyNanos());
+        }
+        openOrder = null;
+    }
+
+    /**
+     * Уходя, покупатель отменяет заявку: незабранные партии возвращаются в книгу
+     */
+    @Override
+    protected void beforeExit() {
+        if (openOrder != null) {
+            orderBook.cancel(openOrder);
+            closeOrder();
+        }
+    }
+
+    /**
+     * Откуда покупать: самый заполненный нужным товаром буфер (свой или другой линии);
+     * null — товара нет нигде. Равные — по кругу, иначе при полных буферах всегда побеждал бы свой.
+     * Так разбираются и линии, у которых покупателей меньше (или нет совсем).
+     */
+    private TeaBuffer pickSource() {
+        int count = otherSources.size() + 1;
+        int start = sourceCursor;
+        sourceCursor = (start + 1) % count;
+        TeaBuffer best = null;
+        int bestSize = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (start + i) % count;
+            TeaBuffer buffer = index == 0 ? home : otherSources.get(index - 1);
+            int size = buffer.peekSizeUnsafe();
+            if (size > bestSize) {
+                best = buffer;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+
+    private void purchase(TeaBatch batch) throws InterruptedException {
+        event(EventKind.BATCH_TAKEN, "🛒 Куплена партия: {batch}", batch);
 
         // Имитация времени покупки
-        Thread.sleep(randomDelay());
+        simulateWork(randomDelay());
 
         purchaseCount++;
-        log(String.format("💰 Покупка завершена: %s (Всего покупок: %d)", batch, purchaseCount));
+        recordPurchase(batch);
+        purchaseListener.accept(batch);
+        event(EventKind.BATCH_PURCHASED, "💰 Покупка завершена: {batch} (Всего покупок: {count})", batch, purchaseCount);
+    }
 
-        // Продолжаем покупать, если есть ещё товар
-        return readyBuffer.size() > 0;
+    /**
+     * Пакетный режим: покупка нескольких партий за раз
+     */
+    private void purchaseBatch(List<TeaBatch> batches) throws InterruptedException {
+        int count = batches.size();
+        event(EventKind.BATCH_TAKEN, "🛒 Куплено партий: {count}", count);
+
+        simulateWork(randomDelay(count));
+
+        purchaseCount += count;
+        for (TeaBatch batch : batches) {
+            recordPurchase(batch);
+            purchaseListener.accept(batch);
+        }
+        event(EventKind.BATCH_PURCHASED, "💰 Покупка завершена (Всего покупок: {count})", purchaseCount);
+    }
+
+    private void recordPurchase(TeaBatch batch) {
+        release(batch);
+        recordStageDone(batch);
+        if (metrics != null) {
+            metrics.recordPurchase(batch.getCreatedNanos());
+            if (batch.isTraced()) {
+                batch.traceDone(workPhase, System.nanoTime());
+                metrics.recordTrace(batch);
+            }
+        }
+    }
+
+    /**
+     * Буферы готовой продукции других линий (балансировка между линиями).
+     * Задаётся до запуска потока.
+     */
+    public void setOtherLines(List<TeaBuffer> otherLines) {
+        this.otherLines = otherLines;
+        updateSources();
+    }
+
+    /**
+     * Сорта, которые хочет покупатель. Учитываются только у складов TypedTeaBuffer.
+     * Задаётся до запуска потока.
+     */
+    public void setDemand(Set<TeaType> demand) {
+        if (demand == null || demand.isEmpty()) {
+            throw new IllegalArgumentException("Спрос покупателя должен включать хотя бы один сорт");
+        }
+        this.demand = EnumSet.copyOf(demand);
+        updateSources();
+    }
+
+    public Set<TeaType> getDemand() {
+        return Collections.unmodifiableSet(demand);
+    }
+
+    private void updateSources() {
+        home = forDemand(readyBuffer);
+        List<TeaBuffer> sources = new ArrayList<>(otherLines.size());
+        for (TeaBuffer buffer : otherLines) {
+            sources.add(forDemand(buffer));
+        }
+        otherSources = sources;
+    }
+
+    private TeaBuffer forDemand(TeaBuffer buffer) {
+        return buffer instanceof TypedTeaBuffer ? ((TypedTeaBuffer) buffer).forTypes(demand) : buffer;
+    }
+
+    public void setPurchaseListener(Consumer<TeaBatch> purchaseListener) {
+        this.purchaseListener = purchaseListener;
+    }
+
+    public TeaBuffer getReadyBuffer() {
+        return readyBuffer;
+    }
+
+    /**
+     * Есть ли у покупателя заявка в книге. Читать, пока поток ждёт хода своей стадии.
+     */
+    public boolean hasOpenOrder() {
+        return openOrder != null;
     }
 
     public int getPurchaseCount() {
         return purchaseCount;
     }
-}
\ No newline at end of file
+}
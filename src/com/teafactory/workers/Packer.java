@@ -1,9 +1,12 @@
 package com.teafactory.workers;
 
 import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
 import com.teafactory.model.TeaBatch;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Phaser;
-import java.util.function.Consumer;
 
 /**
  * Фасовщик - работает в фазе 2 (PACK)
@@ -12,43 +15,117 @@ public class Packer extends AbstractWorker {
     private final TeaBuffer midBuffer;
     private final TeaBuffer readyBuffer;
 
-    public Packer(TeaBuffer midBuffer, TeaBuffer readyBuffer, Phaser phaser, Consumer<String> logger) {
-        super("ФАСОВЩИК", 2, phaser, logger);
+    public Packer(TeaBuffer midBuffer, TeaBuffer readyBuffer, Phaser phaser, EventBus events) {
+        this("ФАСОВЩИК", midBuffer, readyBuffer, phaser, events);
+    }
+
+    public Packer(String workerName, TeaBuffer midBuffer, TeaBuffer readyBuffer, Phaser phaser, EventBus events) {
+        super(workerName, 2, phaser, events);
         this.midBuffer = midBuffer;
         this.readyBuffer = readyBuffer;
     }
 
     @Override
     protected boolean performWork() throws InterruptedException {
+        // Сначала отдаём то, что не поместилось в прошлый раз
+        if (!flushPending(readyBuffer)) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер готовой продукции полон, завершаем фазу");
+            return false;
+        }
+
         // Проверяем, есть ли что упаковывать
         if (midBuffer.size() == 0) {
-            log("ℹ️ Промежуточный буфер пуст, завершаем фазу");
+            event(EventKind.STAGE_IDLE, "ℹ️ Промежуточный буфер пуст, завершаем фазу");
             return false;
         }
 
         // Проверяем, есть ли место куда положить
         if (readyBuffer.size() >= readyBuffer.getCapacity()) {
-            log("ℹ️ Буфер готовой продукции полон, завершаем фазу");
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер готовой продукции полон, завершаем фазу");
             return false;
         }
 
-        // Берём из промежуточного буфера
-        TeaBatch batch = midBuffer.take();
-        log(String.format("📦 Взята партия на упаковку: %s", batch));
+        // В фазе не блокируемся: другие фасовщики могли успеть раньше нас
+        List<TeaBatch> batches = drainBatches(midBuffer, portion());
+        if (batches.isEmpty()) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Товар разобрали другие фасовщики, завершаем фазу");
+            return false;
+        }
+
+        pack(batches);
+        logPut(offerOrDefer(readyBuffer, batches), batches);
+
+        // Продолжаем, если есть ещё товар для упаковки И есть место в выходном буфере
+        return pending.isEmpty() && midBuffer.size() > 0 && readyBuffer.size() < readyBuffer.getCapacity();
+    }
+
+    @Override
+    protected TeaBuffer outputBuffer() {
+        return readyBuffer;
+    }
+
+    @Override
+    protected void performStep() throws InterruptedException {
+        // Сначала — партии из снимка, не поместившиеся в буфер при восстановлении
+        putPending(readyBuffer);
 
-        // Упаковка
-        Thread.sleep(randomDelay());
-        batch.setStage("PACKED");
+        // Берём из промежуточного буфера
+        List<TeaBatch> batches = batchSize > 1
+                ? takeBatches(midBuffer, portion())
+                : Collections.singletonList(takeBatch(midBuffer));
 
-        log(String.format("🎁 Упаковка завершена: %s", batch));
+        pack(batches);
 
         // Кладём в буфер готовой продукции
-        readyBuffer.put(batch);
+        if (batches.size() == 1) {
+            putBatch(readyBuffer, batches.get(0));
+        } else {
+            putBatches(readyBuffer, batches);
+        }
+        logPut(batches.size(), batches);
+    }
 
-        int newSize = readyBuffer.size();
-        log(String.format("✅ Партия %s готова к продаже [%d/%d]", batch, newSize, readyBuffer.getCapacity()));
+    /**
+     * Сколько партий брать за раз: в пакетном режиме — не больше свободного места
+     */
+    private int portion() {
+        if (batchSize == 1) {
+            return 1;
+        }
+        int free = readyBuffer.getCapacity() - readyBuffer.size();
+        return Math.max(1, Math.min(batchSize, free));
+    }
 
-        // Продолжаем, если есть ещё товар для упаковки И есть место в выходном буфере
-        return midBuffer.size() > 0 && readyBuffer.size() < readyBuffer.getCapacity();
+    /**
+     * Упаковка (в пакетном режиме — несколько партий за один заход)
+     */
+    private void pack(List<TeaBatch> batches) throws InterruptedException {
+        if (batches.size() == 1) {
+            event(EventKind.BATCH_TAKEN, "📦 Взята партия на упаковку: {batch}", batches.get(0));
+        } else {
+            event(EventKind.BATCH_TAKEN, "📦 Взято партий на упаковку: {count}", batches.size());
+        }
+
+        simulateWork(randomDelay(batches.size()));
+        for (TeaBatch batch : batches) {
+            batch.setStage("PACKED");
+        }
+
+        if (batches.size() == 1) {
+            event(EventKind.BATCH_DONE, "🎁 Упаковка завершена: {batch}", batches.get(0));
+        } else {
+            event(EventKind.BATCH_DONE, "🎁 Упаковка завершена, партий: {count}", batches.size());
+        }
+    }
+
+    private void logPut(int count, List<TeaBatch> batches) {
+        if (count <= 0) {
+            return;
+        }
+        if (batches.size() == 1) {
+            bufferEvent(EventKind.BATCH_PUT, "✅ Партия {batch} готова к продаже [{size}/{capacity}]", batches.get(0), 1, readyBuffer);
+        } else {
+            bufferEvent(EventKind.BATCH_PUT, "✅ Партий готово к продаже: {count} [{size}/{capacity}]", null, count, readyBuffer);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,48 +1,107 @@
 package com.teafactory.workers;
 
 import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
 import com.teafactory.model.TeaBatch;
 import com.teafactory.model.TeaType;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Phaser;
-import java.util.function.Consumer;
 
 /**
  * Поставщик сырья - работает в фазе 0 (SUPPLY)
+ * Поставщиков может быть несколько, они конкурируют за место в буфере
  */
 public class RawSupplier extends AbstractWorker {
     private final TeaBuffer rawBuffer;
 
-    public RawSupplier(TeaBuffer rawBuffer, Phaser phaser, Consumer<String> logger) {
-        super("ПОСТАВЩИК", 0, phaser, logger);
+    public RawSupplier(TeaBuffer rawBuffer, Phaser phaser, EventBus events) {
+        this("ПОСТАВЩИК", rawBuffer, phaser, events);
+    }
+
+    public RawSupplier(String workerName, TeaBuffer rawBuffer, Phaser phaser, EventBus events) {
+        super(workerName, 0, phaser, events);
         this.rawBuffer = rawBuffer;
     }
 
     @Override
     protected boolean performWork() throws InterruptedException {
+        // Сначала отдаём то, что не поместилось в прошлый раз
+        if (!flushPending(rawBuffer)) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер сырья полон, завершаем фазу");
+            return false;
+        }
+
         // Проверяем, есть ли место в буфере
         if (rawBuffer.size() >= rawBuffer.getCapacity()) {
-            log("ℹ️ Буфер сырья полон, завершаем фазу");
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер сырья полон, завершаем фазу");
             return false; // Буфер полон, завершаем фазу
         }
 
-        log("📦 Подготовка новой партии сырья...");
+        // В фазе не блокируемся: другие поставщики могли занять место раньше нас
+        logAdded(offerOrDefer(rawBuffer, prepareBatches()));
+
+        // Продолжаем работу, если буфер не полон
+        return pending.isEmpty() && rawBuffer.size() < rawBuffer.getCapacity();
+    }
 
-        // Создаём партию
-        TeaBatch batch = new TeaBatch(TeaType.random());
-        batch.setStage("RAW");
+    @Override
+    protected TeaBuffer outputBuffer() {
+        return rawBuffer;
+    }
 
-        log(String.format("✨ Создана партия: %s", batch));
+    @Override
+    protected void performStep() throws InterruptedException {
+        // Сначала — партии из снимка, не поместившиеся в буфер при восстановлении
+        putPending(rawBuffer);
 
-        // Имитация времени подготовки
-        Thread.sleep(randomDelay());
+        List<TeaBatch> batches = prepareBatches();
+        if (batches.size() == 1) {
+            putBatch(rawBuffer, batches.get(0));
+        } else {
+            putBatches(rawBuffer, batches);
+        }
+        logAdded(batches.size());
+    }
 
-        // Добавляем в буфер
-        rawBuffer.put(batch);
+    /**
+     * Создание партий с имитацией времени подготовки.
+     * В пакетном режиме партий сразу несколько, по числу свободных мест.
+     */
+    private List<TeaBatch> prepareBatches() throws InterruptedException {
+        int free = rawBuffer.getCapacity() - rawBuffer.size();
+        int count = batchSize > 1 ? Math.max(1, Math.min(batchSize, free)) : 1;
 
-        int newSize = rawBuffer.size();
-        log(String.format("✅ Партия %s добавлена в буфер [%d/%d]", batch, newSize, rawBuffer.getCapacity()));
+        if (count == 1) {
+            event(EventKind.BATCH_CREATED, "📦 Подготовка новой партии сырья...");
+        }
 
-        // Продолжаем работу, если буфер не полон
-        return rawBuffer.size() < rawBuffer.getCapacity();
+        List<TeaBatch> batches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TeaBatch batch = new TeaBatch(TeaType.random(random));
+            batch.setStage("RAW");
+            maybeTrace(batch);
+            hold(batch);
+            batches.add(batch);
+        }
+
+        if (count == 1) {
+            event(EventKind.BATCH_CREATED, "✨ Создана партия: {batch}", batches.get(0));
+        } else {
+            event(EventKind.BATCH_CREATED, "✨ Создано партий: {count}", count);
+        }
+
+        // Имитация времени подготовки
+        simulateWork(randomDelay(count));
+
+        return batches;
+    }
+
+    private void logAdded(int count) {
+        if (count <= 0) {
+            return;
+        }
+        bufferEvent(EventKind.BATCH_PUT, "✅ Партий добавлено в буфер: {count} [{size}/{capacity}]", null, count, rawBuffer);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,14 @@
+package com.teafactory.workers;
+
+/**
+ * Очередь стадий фазового режима: worker ждёт, пока его стадии не дадут ход.
+ * Стадия без работы пропускается — её workers не просыпаются впустую.
+ */
+public interface StageGate {
+
+    /**
+     * Ждать хода стадии stage в раунде round (фаза Phaser стадии).
+     * Возвращается сразу, если этот раунд уже идёт.
+     */
+    void awaitTurn(int stage, int round) throws InterruptedException;
+}
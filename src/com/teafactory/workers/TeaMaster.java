@@ -1,9 +1,12 @@
 package com.teafactory.workers;
 
 import com.teafactory.buffer.TeaBuffer;
+import com.teafactory.events.EventBus;
+import com.teafactory.events.EventKind;
 import com.teafactory.model.TeaBatch;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Phaser;
-import java.util.function.Consumer;
 
 /**
  * Мастер чайного производства - работает в фазе 1 (PROCESS)
@@ -12,43 +15,117 @@ public class TeaMaster extends AbstractWorker {
     private final TeaBuffer rawBuffer;
     private final TeaBuffer midBuffer;
 
-    public TeaMaster(TeaBuffer rawBuffer, TeaBuffer midBuffer, Phaser phaser, Consumer<String> logger) {
-        super("МАСТЕР", 1, phaser, logger);
+    public TeaMaster(TeaBuffer rawBuffer, TeaBuffer midBuffer, Phaser phaser, EventBus events) {
+        this("МАСТЕР", rawBuffer, midBuffer, phaser, events);
+    }
+
+    public TeaMaster(String workerName, TeaBuffer rawBuffer, TeaBuffer midBuffer, Phaser phaser, EventBus events) {
+        super(workerName, 1, phaser, events);
         this.rawBuffer = rawBuffer;
         this.midBuffer = midBuffer;
     }
 
     @Override
     protected boolean performWork() throws InterruptedException {
+        // Сначала отдаём то, что не поместилось в прошлый раз
+        if (!flushPending(midBuffer)) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Промежуточный буфер полон, завершаем фазу");
+            return false;
+        }
+
         // Проверяем, есть ли что обрабатывать
         if (rawBuffer.size() == 0) {
-            log("ℹ️ Буфер сырья пуст, завершаем фазу");
+            event(EventKind.STAGE_IDLE, "ℹ️ Буфер сырья пуст, завершаем фазу");
             return false;
         }
 
         // Проверяем, есть ли место куда положить
         if (midBuffer.size() >= midBuffer.getCapacity()) {
-            log("ℹ️ Промежуточный буфер полон, завершаем фазу");
+            event(EventKind.STAGE_IDLE, "ℹ️ Промежуточный буфер полон, завершаем фазу");
             return false;
         }
 
-        // Берём из буфера сырья
-        TeaBatch batch = rawBuffer.take();
-        log(String.format("🔧 Взята партия на обработку: %s", batch));
+        // В фазе не блокируемся: другие мастера могли успеть раньше нас
+        List<TeaBatch> batches = drainBatches(rawBuffer, portion());
+        if (batches.isEmpty()) {
+            event(EventKind.STAGE_IDLE, "ℹ️ Сырьё разобрали другие мастера, завершаем фазу");
+            return false;
+        }
+
+        process(batches);
+        logPut(offerOrDefer(midBuffer, batches), batches);
+
+        // Продолжаем, если есть ещё сырьё И есть место в выходном буфере
+        return pending.isEmpty() && rawBuffer.size() > 0 && midBuffer.size() < midBuffer.getCapacity();
+    }
+
+    @Override
+    protected TeaBuffer outputBuffer() {
+        return midBuffer;
+    }
+
+    @Override
+    protected void performStep() throws InterruptedException {
+        // Сначала — партии из снимка, не поместившиеся в буфер при восстановлении
+        putPending(midBuffer);
 
-        // Обработка
-        Thread.sleep(randomDelay());
-        batch.setStage("PROCESSED");
+        // Берём из буфера сырья
+        List<TeaBatch> batches = batchSize > 1
+                ? takeBatches(rawBuffer, portion())
+                : Collections.singletonList(takeBatch(rawBuffer));
 
-        log(String.format("⚙️ Обработка завершена: %s", batch));
+        process(batches);
 
         // Кладём в промежуточный буфер
-        midBuffer.put(batch);
+        if (batches.size() == 1) {
+            putBatch(midBuffer, batches.get(0));
+        } else {
+            putBatches(midBuffer, batches);
+        }
+        logPut(batches.size(), batches);
+    }
 
-        int newSize = midBuffer.size();
-        log(String.format("✅ Партия %s помещена в промежуточный буфер [%d/%d]", batch, newSize, midBuffer.getCapacity()));
+    /**
+     * Сколько партий брать за раз: в пакетном режиме — не больше свободного места
+     */
+    private int portion() {
+        if (batchSize == 1) {
+            return 1;
+        }
+        int free = midBuffer.getCapacity() - midBuffer.size();
+        return Math.max(1, Math.min(batchSize, free));
+    }
 
-        // Продолжаем, если есть ещё сырьё И есть место в выходном буфере
-        return rawBuffer.size() > 0 && midBuffer.size() < midBuffer.getCapacity();
+    /**
+     * Обработка (в пакетном режиме — несколько партий за один заход)
+     */
+    private void process(List<TeaBatch> batches) throws InterruptedException {
+        if (batches.size() == 1) {
+            event(EventKind.BATCH_TAKEN, "🔧 Взята партия на обработку: {batch}", batches.get(0));
+        } else {
+            event(EventKind.BATCH_TAKEN, "🔧 Взято партий на обработку: {count}", batches.size());
+        }
+
+        simulateWork(randomDelay(batches.size()));
+        for (TeaBatch batch : batches) {
+            batch.setStage("PROCESSED");
+        }
+
+        if (batches.size() == 1) {
+            event(EventKind.BATCH_DONE, "⚙️ Обработка завершена: {batch}", batches.get(0));
+        } else {
+            event(EventKind.BATCH_DONE, "⚙️ Обработка завершена, партий: {count}", batches.size());
+        }
+    }
+
+    private void logPut(int count, List<TeaBatch> batches) {
+        if (count <= 0) {
+            return;
+        }
+        if (batches.size() == 1) {
+            bufferEvent(EventKind.BATCH_PUT, "✅ Партия {batch} помещена в промежуточный буфер [{size}/{capacity}]", batches.get(0), 1, midBuffer);
+        } else {
+            bufferEvent(EventKind.BATCH_PUT, "✅ Партий помещено в промежуточный буфер: {count} [{size}/{capacity}]", null, count, midBuffer);
+        }
     }
-}
\ No newline at end of file
+}